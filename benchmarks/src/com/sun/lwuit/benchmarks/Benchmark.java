@@ -0,0 +1,135 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import java.util.Vector;
+
+/**
+ * A microbenchmark measuring the average time of a single operation. The runner
+ * invokes setUp() once, then run() repeatedly for the warmup and measurement
+ * iterations and finally tearDown(), all of them on the EDT. Benchmarks that
+ * measure the same code with different settings are separate instances with
+ * different parameters.
+ */
+public abstract class Benchmark {
+    private String name;
+    private Vector params = new Vector();
+
+    /**
+     * Creates a benchmark
+     *
+     * @param name the name of the benchmark, e.g. the class and method measured
+     */
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a parameter describing this instance of the benchmark
+     *
+     * @param key the name of the parameter
+     * @param value the value of the parameter
+     * @return this benchmark
+     */
+    protected Benchmark param(String key, Object value) {
+        params.addElement(new String[] {key, String.valueOf(value)});
+        return this;
+    }
+
+    /**
+     * Returns the name of the benchmark
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the parameters of this instance as key/value pairs
+     *
+     * @return array of two element arrays
+     */
+    public String[][] getParams() {
+        String[][] result = new String[params.size()][];
+        params.copyInto(result);
+        return result;
+    }
+
+    /**
+     * Returns the name followed by the parameters, e.g. "Image.scaled:cached=true"
+     *
+     * @return a unique identifier of this instance
+     */
+    public String getId() {
+        StringBuffer b = new StringBuffer(name);
+        int size = params.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            String[] p = (String[])params.elementAt(iter);
+            b.append(iter == 0 ? ':' : ',');
+            b.append(p[0]);
+            b.append('=');
+            b.append(p[1]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Prepares the state used by run(), this is not measured
+     *
+     * @throws Exception on failure
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Performs the measured operation once
+     *
+     * @throws Exception on failure
+     */
+    public abstract void run() throws Exception;
+
+    /**
+     * Releases the state created by setUp()
+     *
+     * @throws Exception on failure
+     */
+    public void tearDown() throws Exception {
+    }
+
+    /**
+     * Fails the benchmark when a precondition of the measurement doesn't hold,
+     * e.g. when the cache a variant is supposed to measure isn't used
+     *
+     * @param condition the condition that must hold
+     * @param message describes the failure
+     * @throws IllegalStateException if the condition doesn't hold
+     */
+    protected static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Display;
+import com.sun.lwuit.impl.headless.HeadlessImplementation;
+import com.sun.lwuit.impl.headless.HeadlessImplementationFactory;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Vector;
+
+/**
+ * Runs the LWUIT microbenchmarks on the headless implementation and writes the
+ * results in the JSON or CSV format of JMH so runs of different builds can be
+ * compared with the existing JMH tooling. Every benchmark runs in the average
+ * time mode on the EDT, the score is the mean time of an operation over the
+ * measurement iterations and the error is the half width of its 99.9% confidence
+ * interval.
+ * <p>Usage: BenchmarkRunner [options] where the options are
+ * <pre>
+ * -wi count     warmup iterations, 3 by default
+ * -i count      measurement iterations, 5 by default
+ * -r millis     duration of an iteration, 1000 by default
+ * -f format     json, csv or text, json by default
+ * -o file       file the results are written to, standard output by default
+ * -b substring  only runs the benchmarks whose id contains the substring
+ * -l            lists the benchmark ids and exits
+ * </pre>
+ */
+public class BenchmarkRunner {
+    /**
+     * Two sided Student t values for a 99.9% confidence interval by degrees of freedom
+     */
+    private static final double[] T_999 = {
+        636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646
+    };
+
+    private static final int SCREEN_WIDTH = 240;
+    private static final int SCREEN_HEIGHT = 320;
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private int iterationTime = 1000;
+
+    /**
+     * Creates every benchmark of the suite
+     *
+     * @param impl the implementation the display was initialized with
+     * @return vector of benchmarks
+     */
+    static Vector createBenchmarks(HeadlessImplementation impl) {
+        Vector v = new Vector();
+        int[] dirty = {1, 10, 50};
+        for(int iter = 0 ; iter < dirty.length ; iter++) {
+            v.addElement(new PaintDirtyBenchmark(impl, dirty[iter]));
+        }
+        String[] layouts = LayoutBenchmark.LAYOUTS;
+        int[] counts = {10, 100, 500};
+        for(int iter = 0 ; iter < layouts.length ; iter++) {
+            for(int c = 0 ; c < counts.length ; c++) {
+                v.addElement(new LayoutBenchmark(layouts[iter], counts[c]));
+            }
+        }
+        v.addElement(new TextAreaBenchmark(2000, false));
+        v.addElement(new TextAreaBenchmark(20000, false));
+        v.addElement(new TextAreaBenchmark(20000, true));
+        v.addElement(new CustomFontBenchmark(16));
+        v.addElement(new CustomFontBenchmark(256));
+        v.addElement(new ImageScaleBenchmark(false));
+        v.addElement(new ImageScaleBenchmark(true));
+        v.addElement(new IndexedImageBenchmark(64, false));
+        v.addElement(new IndexedImageBenchmark(64, true));
+        v.addElement(new IndexedImageBenchmark(160, false));
+        v.addElement(new IndexedImageBenchmark(160, true));
+        v.addElement(new ResourcesBenchmark());
+        v.addElement(new ListScrollBenchmark(false));
+        v.addElement(new ListScrollBenchmark(true));
+        return v;
+    }
+
+    /**
+     * Runs the benchmarks
+     *
+     * @param args the command line options
+     * @throws Exception on failure
+     */
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String format = "json";
+        String output = null;
+        String filter = null;
+        boolean list = false;
+        for(int iter = 0 ; iter < args.length ; iter++) {
+            String a = args[iter];
+            if(a.equals("-l")) {
+                list = true;
+                continue;
+            }
+            if(iter + 1 >= args.length) {
+                usage("Missing value for " + a);
+            }
+            String value = args[++iter];
+            if(a.equals("-wi")) {
+                runner.warmupIterations = Integer.parseInt(value);
+            } else if(a.equals("-i")) {
+                runner.iterations = Math.max(1, Integer.parseInt(value));
+            } else if(a.equals("-r")) {
+                runner.iterationTime = Math.max(1, Integer.parseInt(value));
+            } else if(a.equals("-f")) {
+                format = value;
+            } else if(a.equals("-o")) {
+                output = value;
+            } else if(a.equals("-b")) {
+                filter = value;
+            } else {
+                usage("Unknown option " + a);
+            }
+        }
+        if(!format.equals("json") && !format.equals("csv") && !format.equals("text")) {
+            usage("Unknown format " + format);
+        }
+
+        HeadlessImplementation impl = HeadlessImplementationFactory.install(SCREEN_WIDTH, SCREEN_HEIGHT);
+        Vector benchmarks = createBenchmarks(impl);
+        Vector results = new Vector();
+        int size = benchmarks.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            Benchmark b = (Benchmark)benchmarks.elementAt(iter);
+            if(filter != null && b.getId().indexOf(filter) < 0) {
+                continue;
+            }
+            if(list) {
+                System.out.println(b.getId());
+                continue;
+            }
+            try {
+                results.addElement(runner.run(b));
+            } catch(Exception err) {
+                System.err.println("Benchmark " + b.getId() + " failed");
+                err.printStackTrace();
+                System.exit(1);
+            }
+        }
+        if(!list) {
+            PrintWriter out;
+            if(output == null) {
+                out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            } else {
+                out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+            }
+            if(format.equals("json")) {
+                runner.writeJSON(results, out);
+            } else if(format.equals("csv")) {
+                writeCSV(results, out);
+            } else {
+                writeText(results, out);
+            }
+            out.flush();
+            if(output != null) {
+                out.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: BenchmarkRunner [-wi count] [-i count] [-r millis] [-f json|csv|text] [-o file] [-b substring] [-l]");
+        System.exit(1);
+    }
+
+    /**
+     * Runs a single benchmark and returns its result
+     */
+    Result run(final Benchmark b) throws Exception {
+        System.err.println("# " + b.getId());
+        onEDT(new Task() {
+            public void run() throws Exception {
+                b.setUp();
+            }
+        });
+        try {
+            for(int iter = 0 ; iter < warmupIterations ; iter++) {
+                System.err.println("  warmup " + (iter + 1) + ": " + format(iteration(b)) + " ns/op");
+            }
+            Result r = new Result(b);
+            for(int iter = 0 ; iter < iterations ; iter++) {
+                r.samples[iter] = iteration(b);
+                System.err.println("  iteration " + (iter + 1) + ": " + format(r.samples[iter]) + " ns/op");
+            }
+            r.compute();
+            return r;
+        } finally {
+            onEDT(new Task() {
+                public void run() throws Exception {
+                    b.tearDown();
+                }
+            });
+            System.gc();
+        }
+    }
+
+    /**
+     * Invokes the operation repeatedly for the duration of an iteration and
+     * returns the average time of an operation in nanoseconds
+     */
+    private double iteration(final Benchmark b) throws Exception {
+        final double[] result = new double[1];
+        onEDT(new Task() {
+            public void run() throws Exception {
+                long ops = 0;
+                long start = System.nanoTime();
+                long end = start + iterationTime * 1000000L;
+                long now;
+                do {
+                    b.run();
+                    ops++;
+                    now = System.nanoTime();
+                } while(now < end);
+                result[0] = (now - start) / (double)ops;
+            }
+        });
+        return result[0];
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the task on the EDT and rethrows its exception on the calling thread
+     */
+    private static void onEDT(final Task t) throws Exception {
+        final Exception[] err = new Exception[1];
+        Display.getInstance().callSeriallyAndWait(new Runnable() {
+            public void run() {
+                try {
+                    t.run();
+                } catch(Exception e) {
+                    err[0] = e;
+                }
+            }
+        });
+        if(err[0] != null) {
+            throw err[0];
+        }
+    }
+
+    private void writeJSON(Vector results, PrintWriter out) {
+        out.println("[");
+        int size = results.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            Result r = (Result)results.elementAt(iter);
+            out.println("    {");
+            out.println("        \"benchmark\" : " + quote(r.benchmark.getName()) + ",");
+            out.println("        \"mode\" : \"avgt\",");
+            out.println("        \"threads\" : 1,");
+            out.println("        \"forks\" : 1,");
+            out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+            out.println("        \"warmupTime\" : \"" + iterationTime + " ms\",");
+            out.println("        \"measurementIterations\" : " + iterations + ",");
+            out.println("        \"measurementTime\" : \"" + iterationTime + " ms\",");
+            String[][] params = r.benchmark.getParams();
+            if(params.length > 0) {
+                out.println("        \"params\" : {");
+                for(int p = 0 ; p < params.length ; p++) {
+                    out.println("            " + quote(params[p][0]) + " : " + quote(params[p][1]) + (p < params.length - 1 ? "," : ""));
+                }
+                out.println("        },");
+            }
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + number(r.score) + ",");
+            out.println("            \"scoreError\" : " + number(r.error) + ",");
+            out.println("            \"scoreConfidence\" : [" + number(r.score - r.error) + ", " + number(r.score + r.error) + "],");
+            out.println("            \"scoreUnit\" : \"ns/op\",");
+            StringBuffer raw = new StringBuffer();
+            for(int s = 0 ; s < r.samples.length ; s++) {
+                if(s > 0) {
+                    raw.append(", ");
+                }
+                raw.append(r.samples[s]);
+            }
+            out.println("            \"rawData\" : [[" + raw + "]]");
+            out.println("        },");
+            out.println("        \"secondaryMetrics\" : {}");
+            out.println(iter < size - 1 ? "    }," : "    }");
+        }
+        out.println("]");
+    }
+
+    private static void writeCSV(Vector results, PrintWriter out) {
+        Vector paramNames = paramNames(results);
+        StringBuffer header = new StringBuffer("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\"");
+        for(int iter = 0 ; iter < paramNames.size() ; iter++) {
+            header.append(",\"Param: " + paramNames.elementAt(iter) + "\"");
+        }
+        out.println(header);
+        int size = results.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            Result r = (Result)results.elementAt(iter);
+            StringBuffer line = new StringBuffer();
+            line.append("\"" + r.benchmark.getName() + "\",\"avgt\",1," + r.samples.length + "," + r.score + "," + r.error + ",\"ns/op\"");
+            for(int p = 0 ; p < paramNames.size() ; p++) {
+                line.append(',');
+                String value = paramValue(r.benchmark, (String)paramNames.elementAt(p));
+                if(value != null) {
+                    line.append(value);
+                }
+            }
+            out.println(line);
+        }
+    }
+
+    private static void writeText(Vector results, PrintWriter out) {
+        int size = results.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            Result r = (Result)results.elementAt(iter);
+            out.println(r.benchmark.getId() + "  " + format(r.score) + " +- " + format(r.error) + " ns/op");
+        }
+    }
+
+    private static Vector paramNames(Vector results) {
+        Vector names = new Vector();
+        for(int iter = 0 ; iter < results.size() ; iter++) {
+            String[][] params = ((Result)results.elementAt(iter)).benchmark.getParams();
+            for(int p = 0 ; p < params.length ; p++) {
+                if(!names.contains(params[p][0])) {
+                    names.addElement(params[p][0]);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String paramValue(Benchmark b, String name) {
+        String[][] params = b.getParams();
+        for(int iter = 0 ; iter < params.length ; iter++) {
+            if(params[iter][0].equals(name)) {
+                return params[iter][1];
+            }
+        }
+        return null;
+    }
+
+    private static String quote(String s) {
+        StringBuffer b = new StringBuffer("\"");
+        for(int iter = 0 ; iter < s.length() ; iter++) {
+            char c = s.charAt(iter);
+            if(c == '"' || c == '\\') {
+                b.append('\\');
+            }
+            b.append(c);
+        }
+        b.append('"');
+        return b.toString();
+    }
+
+    /**
+     * JSON has no literal for NaN, like JMH it is written as a string
+     */
+    private static String number(double d) {
+        if(Double.isNaN(d)) {
+            return "\"NaN\"";
+        }
+        return String.valueOf(d);
+    }
+
+    private static String format(double d) {
+        return String.valueOf(Math.round(d * 100) / 100.0);
+    }
+
+    /**
+     * The measurements of a single benchmark
+     */
+    class Result {
+        Benchmark benchmark;
+        double[] samples = new double[iterations];
+        double score;
+        double error;
+
+        Result(Benchmark benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        void compute() {
+            double sum = 0;
+            for(int iter = 0 ; iter < samples.length ; iter++) {
+                sum += samples[iter];
+            }
+            score = sum / samples.length;
+            if(samples.length < 2) {
+                error = Double.NaN;
+                return;
+            }
+            double variance = 0;
+            for(int iter = 0 ; iter < samples.length ; iter++) {
+                double d = samples[iter] - score;
+                variance += d * d;
+            }
+            variance /= samples.length - 1;
+            int df = samples.length - 1;
+            double t = df <= T_999.length ? T_999[df - 1] : 3.291;
+            error = t * Math.sqrt(variance / samples.length);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Font;
+import com.sun.lwuit.Graphics;
+import com.sun.lwuit.Image;
+
+/**
+ * Measures drawing a run of characters with a bitmap font, bitmap fonts are
+ * implemented by CustomFont
+ */
+class CustomFontBenchmark extends Benchmark {
+    private static final int FIRST_CHAR = 32;
+    private static final int CHAR_COUNT = 95;
+    private static final int GLYPH_WIDTH = 6;
+    private static final int GLYPH_HEIGHT = 12;
+
+    private int length;
+    private char[] text;
+    private Graphics graphics;
+
+    CustomFontBenchmark(int length) {
+        super("CustomFont.drawChars");
+        param("chars", new Integer(length));
+        this.length = length;
+    }
+
+    public void setUp() {
+        // a bitmap of the printable ASCII characters where every glyph is a
+        // distinct pattern in the red channel
+        int width = CHAR_COUNT * GLYPH_WIDTH;
+        int[] rgb = new int[width * GLYPH_HEIGHT];
+        int[] cutOffsets = new int[CHAR_COUNT];
+        int[] charWidth = new int[CHAR_COUNT];
+        StringBuffer charset = new StringBuffer();
+        for(int c = 0 ; c < CHAR_COUNT ; c++) {
+            cutOffsets[c] = c * GLYPH_WIDTH;
+            charWidth[c] = GLYPH_WIDTH;
+            charset.append((char)(FIRST_CHAR + c));
+            for(int y = 2 ; y < GLYPH_HEIGHT - 2 ; y++) {
+                for(int x = 0 ; x < GLYPH_WIDTH - 1 ; x++) {
+                    if(((x + y + c) & 3) != 0) {
+                        rgb[y * width + c * GLYPH_WIDTH + x] = 0xffff0000;
+                    }
+                }
+            }
+        }
+        Font font = Font.createBitmapFont(Image.createImage(rgb, width, GLYPH_HEIGHT), cutOffsets, charWidth, charset.toString());
+        text = new char[length];
+        for(int iter = 0 ; iter < length ; iter++) {
+            text[iter] = (char)(FIRST_CHAR + 1 + iter % (CHAR_COUNT - 1));
+        }
+        Image target = Image.createImage(length * GLYPH_WIDTH, GLYPH_HEIGHT);
+        graphics = target.getGraphics();
+        graphics.setFont(font);
+        graphics.setColor(0x202020);
+    }
+
+    public void run() {
+        graphics.drawChars(text, 0, length, 0, 0);
+    }
+}
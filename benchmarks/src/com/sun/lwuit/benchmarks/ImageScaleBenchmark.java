@@ -0,0 +1,74 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Image;
+import com.sun.lwuit.ImageCache;
+
+/**
+ * Measures scaling an ARGB image, without the cache every operation scales the
+ * image again while with the cache operations return the cached scaled image
+ */
+class ImageScaleBenchmark extends Benchmark {
+    private static final int SIZE = 200;
+
+    private boolean cached;
+    private Image image;
+
+    ImageScaleBenchmark(boolean cached) {
+        super("Image.scaled");
+        param("cached", cached ? "true" : "false");
+        this.cached = cached;
+    }
+
+    public void setUp() {
+        int[] rgb = new int[SIZE * SIZE];
+        for(int y = 0 ; y < SIZE ; y++) {
+            for(int x = 0 ; x < SIZE ; x++) {
+                rgb[y * SIZE + x] = ((x * 255 / SIZE) << 24) | (x << 16) | (y << 8) | ((x + y) & 0xff);
+            }
+        }
+        image = Image.createImage(rgb, SIZE, SIZE);
+
+        ImageCache.getInstance().clear();
+        Image first = image.scaled(120, 90);
+        if(!cached) {
+            ImageCache.getInstance().clear();
+        }
+        boolean hit = image.scaled(120, 90) == first;
+        check(hit == cached, cached ? "The scaled image isn't cached" : "The scaled image wasn't scaled again");
+    }
+
+    public void run() {
+        if(!cached) {
+            ImageCache.getInstance().clear();
+        }
+        image.scaled(120, 90);
+    }
+
+    public void tearDown() {
+        ImageCache.getInstance().clear();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Graphics;
+import com.sun.lwuit.Image;
+import com.sun.lwuit.ImageCache;
+import com.sun.lwuit.IndexedImage;
+import java.util.Random;
+
+/**
+ * Measures drawing a palette image of the given size with and without the
+ * cache of expanded tiles, the sizes must fit within the quarter of the image
+ * cache budget that tile caching is limited to
+ */
+class IndexedImageBenchmark extends Benchmark {
+    private int size;
+    private boolean tileCaching;
+    private IndexedImage image;
+    private Graphics graphics;
+
+    IndexedImageBenchmark(int size, boolean tileCaching) {
+        super("IndexedImage.drawImage");
+        param("size", new Integer(size));
+        param("tileCaching", tileCaching ? "true" : "false");
+        this.size = size;
+        this.tileCaching = tileCaching;
+    }
+
+    public void setUp() {
+        int[] palette = new int[16];
+        for(int iter = 0 ; iter < palette.length ; iter++) {
+            palette[iter] = 0xff000000 | (iter * 0x111111);
+        }
+        palette[0] = 0;
+        byte[] data = new byte[size * size];
+        Random r = new Random(size);
+        for(int iter = 0 ; iter < data.length ; iter++) {
+            data[iter] = (byte)r.nextInt(palette.length);
+        }
+        image = new IndexedImage(size, size, palette, data);
+        graphics = Image.createImage(size, size).getGraphics();
+        IndexedImage.setTileCaching(tileCaching);
+
+        ImageCache cache = ImageCache.getInstance();
+        cache.clear();
+        graphics.drawImage(image, 0, 0);
+        cache.resetStatistics();
+        graphics.drawImage(image, 0, 0);
+        check((cache.getHits() > 0) == tileCaching, tileCaching ?
+            "The tiles aren't drawn from the image cache" : "The tiles are drawn from the image cache");
+    }
+
+    public void run() {
+        graphics.drawImage(image, 0, 0);
+    }
+
+    public void tearDown() {
+        IndexedImage.setTileCaching(true);
+        ImageCache.getInstance().clear();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Button;
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Container;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.layouts.FlowLayout;
+import com.sun.lwuit.layouts.GridLayout;
+import com.sun.lwuit.layouts.GroupLayout;
+import com.sun.lwuit.table.TableLayout;
+
+/**
+ * Measures laying out a container of the given number of components with one
+ * of the layout managers, every operation invalidates the container so its
+ * preferred size is calculated and doLayout() runs again
+ */
+class LayoutBenchmark extends Benchmark {
+    static final String[] LAYOUTS = {"box", "flow", "grid", "table", "group"};
+    private static final int COLUMNS = 4;
+
+    private String layout;
+    private int count;
+    private Container container;
+
+    LayoutBenchmark(String layout, int count) {
+        super("Container.doLayout");
+        param("layout", layout);
+        param("components", new Integer(count));
+        this.layout = layout;
+        this.count = count;
+    }
+
+    public void setUp() {
+        container = new Container();
+        int rows = (count + COLUMNS - 1) / COLUMNS;
+        if(layout.equals("box")) {
+            container.setLayout(new BoxLayout(BoxLayout.Y_AXIS));
+            addComponents(null);
+        } else if(layout.equals("flow")) {
+            container.setLayout(new FlowLayout());
+            addComponents(null);
+        } else if(layout.equals("grid")) {
+            container.setLayout(new GridLayout(rows, COLUMNS));
+            addComponents(null);
+        } else if(layout.equals("table")) {
+            TableLayout t = new TableLayout(rows, COLUMNS);
+            container.setLayout(t);
+            addComponents(t);
+        } else {
+            // a form of label/button rows, the group adds the components to the container
+            GroupLayout g = new GroupLayout(container);
+            container.setLayout(g);
+            GroupLayout.ParallelGroup labels = g.createParallelGroup();
+            GroupLayout.ParallelGroup values = g.createParallelGroup();
+            GroupLayout.SequentialGroup vertical = g.createSequentialGroup();
+            for(int iter = 0 ; iter < count ; iter += 2) {
+                Component label = new Label("Label " + iter);
+                Component value = new Button("Value " + iter);
+                labels.add(label);
+                values.add(value);
+                vertical.add(g.createParallelGroup(GroupLayout.LEADING).add(label).add(value));
+            }
+            g.setHorizontalGroup(g.createSequentialGroup().add(labels).add(values));
+            g.setVerticalGroup(vertical);
+        }
+        container.setSize(new Dimension(240, 320));
+        container.revalidate();
+    }
+
+    private void addComponents(TableLayout t) {
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component c = iter % 2 == 0 ? (Component)new Label("Label " + iter) : new Button("Button " + iter);
+            if(t != null) {
+                container.addComponent(t.createConstraint(), c);
+            } else {
+                container.addComponent(c);
+            }
+        }
+    }
+
+    public void run() {
+        container.revalidate();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Form;
+import com.sun.lwuit.Graphics;
+import com.sun.lwuit.Image;
+import com.sun.lwuit.ImageCache;
+import com.sun.lwuit.List;
+import com.sun.lwuit.layouts.BorderLayout;
+
+/**
+ * Measures painting a list while moving the selection through a long model one
+ * row at a time so the list scrolls, with and without the cache of rendered rows.
+ * The renderer is made opaque in both variants since rows with a transparent
+ * background aren't cached.
+ */
+class ListScrollBenchmark extends Benchmark {
+    private static final int ITEMS = 1000;
+
+    private boolean rowCache;
+    private List list;
+    private Graphics graphics;
+
+    ListScrollBenchmark(boolean rowCache) {
+        super("List.paint");
+        param("rowCache", rowCache ? "true" : "false");
+        this.rowCache = rowCache;
+    }
+
+    public void setUp() {
+        String[] items = new String[ITEMS];
+        for(int iter = 0 ; iter < ITEMS ; iter++) {
+            items[iter] = "Item number " + iter;
+        }
+        list = new List(items);
+        list.setSmoothScrolling(false);
+        Component renderer = (Component)list.getRenderer();
+        renderer.getStyle().setBgTransparency(0xff);
+        renderer.getSelectedStyle().setBgTransparency(0xff);
+        ImageCache cache = ImageCache.getInstance();
+        if(rowCache) {
+            list.setRowCacheSize(cache.getMaxBytes() / 2);
+        }
+        Form f = new Form("List");
+        f.setLayout(new BorderLayout());
+        f.addComponent(BorderLayout.CENTER, list);
+        f.show();
+        Display d = Display.getInstance();
+        graphics = Image.createImage(d.getDisplayWidth(), d.getDisplayHeight()).getGraphics();
+
+        cache.clear();
+        list.paintComponent(graphics);
+        cache.resetStatistics();
+        list.paintComponent(graphics);
+        check((cache.getHits() > 0) == rowCache, rowCache ?
+            "The rows aren't drawn from the row cache" : "The rows are drawn from the row cache");
+    }
+
+    public void run() {
+        list.setSelectedIndex((list.getSelectedIndex() + 1) % ITEMS);
+        list.paintComponent(graphics);
+    }
+
+    public void tearDown() {
+        ImageCache.getInstance().clear();
+    }
+}
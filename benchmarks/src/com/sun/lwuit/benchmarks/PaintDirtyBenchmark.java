@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.Form;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.impl.headless.HeadlessImplementation;
+import com.sun.lwuit.layouts.FlowLayout;
+
+/**
+ * Measures LWUITImplementation.paintDirty() painting and flushing the given
+ * number of dirty components of the current form
+ */
+class PaintDirtyBenchmark extends Benchmark {
+    private HeadlessImplementation impl;
+    private int count;
+    private Label[] labels;
+
+    PaintDirtyBenchmark(HeadlessImplementation impl, int count) {
+        super("LWUITImplementation.paintDirty");
+        param("components", new Integer(count));
+        this.impl = impl;
+        this.count = count;
+    }
+
+    public void setUp() {
+        Form f = new Form("Paint");
+        f.setLayout(new FlowLayout());
+        labels = new Label[count];
+        for(int iter = 0 ; iter < count ; iter++) {
+            labels[iter] = new Label(iter < 10 ? "0" + iter : "" + iter);
+            f.addComponent(labels[iter]);
+        }
+        f.show();
+    }
+
+    public void run() {
+        for(int iter = 0 ; iter < count ; iter++) {
+            impl.repaint(labels[iter]);
+        }
+        impl.paintDirty();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.util.Resources;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Measures opening a sample resource bundle with images, a theme, localization
+ * bundles and data. The bundle is generated in memory in the resource file format
+ * so the benchmark doesn't depend on a file produced by the resource editor.
+ */
+class ResourcesBenchmark extends Benchmark {
+    private static final String[] UIIDS = {
+        "Form", "Title", "Label", "Button", "TextField", "TextArea", "List", "ListRenderer",
+        "ComboBox", "CheckBox", "RadioButton", "Tab", "TabbedPane", "Menu", "SoftButton",
+        "Dialog", "DialogTitle", "DialogBody", "Container", "Scroll"
+    };
+    private static final int INDEXED_IMAGES = 8;
+    private static final int L10N_KEYS = 200;
+    private static final String[] LOCALES = {"en", "fr", "de"};
+
+    private byte[] bundle;
+
+    ResourcesBenchmark() {
+        super("Resources.open");
+    }
+
+    public void setUp() throws IOException {
+        bundle = createBundle();
+    }
+
+    public void run() throws IOException {
+        Resources.open(new ByteArrayInputStream(bundle));
+    }
+
+    private static byte[] createBundle() throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bo);
+        out.writeShort(1 + INDEXED_IMAGES + 4);
+
+        // header declaring version 1.0 of the format
+        out.writeByte(0xff);
+        out.writeUTF("");
+        out.writeShort(6);
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        for(int iter = 0 ; iter < INDEXED_IMAGES ; iter++) {
+            out.writeByte(0xfd);
+            out.writeUTF("indexed" + iter);
+            out.writeByte(0xf3);
+            out.writeByte(16);
+            for(int c = 0 ; c < 16 ; c++) {
+                out.writeInt(0xff000000 | (c * 0x100f01 + iter));
+            }
+            out.writeShort(32);
+            out.writeShort(32);
+            for(int p = 0 ; p < 32 * 32 ; p++) {
+                out.writeByte((p + iter) & 15);
+            }
+        }
+
+        BufferedImage img = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for(int y = 0 ; y < 64 ; y++) {
+            for(int x = 0 ; x < 64 ; x++) {
+                img.setRGB(x, y, ((x * 4) << 24) | (y << 18) | (x << 10) | 0x40);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", png);
+        out.writeByte(0xfd);
+        out.writeUTF("background");
+        out.writeByte(0xf1);
+        out.writeInt(png.size());
+        out.write(png.toByteArray());
+
+        out.writeByte(0xf9);
+        out.writeUTF("strings");
+        out.writeShort(L10N_KEYS);
+        out.writeShort(LOCALES.length);
+        for(int iter = 0 ; iter < L10N_KEYS ; iter++) {
+            out.writeUTF("key" + iter);
+        }
+        for(int l = 0 ; l < LOCALES.length ; l++) {
+            out.writeUTF(LOCALES[l]);
+            for(int iter = 0 ; iter < L10N_KEYS ; iter++) {
+                out.writeUTF("Localized value " + iter + " (" + LOCALES[l] + ")");
+            }
+        }
+
+        out.writeByte(0xfa);
+        out.writeUTF("data");
+        out.writeInt(4096);
+        out.write(new byte[4096]);
+
+        // theme entries for every component with the value encoding implied by the key
+        out.writeByte(0xf2);
+        out.writeUTF("Theme");
+        out.writeShort(UIIDS.length * 8);
+        for(int iter = 0 ; iter < UIIDS.length ; iter++) {
+            String id = UIIDS[iter];
+            out.writeUTF(id + ".fgColor");
+            out.writeInt(0x101010 * (iter % 8));
+            out.writeUTF(id + ".bgColor");
+            out.writeInt(0xffffff - iter);
+            out.writeUTF(id + ".sel#fgColor");
+            out.writeInt(0xffffff);
+            out.writeUTF(id + ".sel#bgColor");
+            out.writeInt(0x3050a0);
+            out.writeUTF(id + ".transparency");
+            out.writeByte(0xff);
+            out.writeUTF(id + ".padding");
+            out.write(new byte[] {2, 2, 3, 3});
+            out.writeUTF(id + ".margin");
+            out.write(new byte[] {1, 1, 1, 1});
+            out.writeUTF(id + ".font");
+            out.writeBoolean(false);
+            out.writeByte(0);
+            out.writeByte(iter % 2);
+            out.writeByte(iter % 3 == 0 ? 8 : 0);
+        }
+        out.close();
+        return bo.toByteArray();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.benchmarks;
+
+import com.sun.lwuit.TextArea;
+import java.util.Random;
+
+/**
+ * Measures breaking a long text into rows. Without edits every operation changes
+ * the width of the text area so the whole text is wrapped again, with edits every
+ * operation alternates between two texts that differ by a character in the middle
+ * as happens while typing.
+ */
+class TextAreaBenchmark extends Benchmark {
+    private int length;
+    private boolean edit;
+    private TextArea area;
+    private String[] texts;
+    private int counter;
+
+    TextAreaBenchmark(int length, boolean edit) {
+        super("TextArea.initRowString");
+        param("chars", new Integer(length));
+        param("edit", edit ? "true" : "false");
+        this.length = length;
+        this.edit = edit;
+    }
+
+    public void setUp() {
+        // deterministic words and paragraphs of varying length
+        Random r = new Random(length);
+        StringBuffer b = new StringBuffer();
+        while(b.length() < length) {
+            int word = 1 + r.nextInt(10);
+            for(int iter = 0 ; iter < word ; iter++) {
+                b.append((char)('a' + r.nextInt(26)));
+            }
+            b.append(r.nextInt(40) == 0 ? '\n' : ' ');
+        }
+        b.setLength(length);
+        String text = b.toString();
+        int middle = length / 2;
+        texts = new String[] {text, text.substring(0, middle) + "x" + text.substring(middle)};
+        area = new TextArea(text, 5, 20);
+        area.setWidth(220);
+        area.setHeight(320);
+        area.getLines();
+    }
+
+    public void run() {
+        counter++;
+        if(edit) {
+            area.setText(texts[counter % 2]);
+        } else {
+            area.setWidth(220 - counter % 2);
+        }
+        area.getLines();
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+
+/**
+ * A sequence of key and pointer events played into a {@link HeadlessImplementation}.
+ * Scripts are built with the methods of this class or parsed from text with one
+ * step per line, blank lines and lines starting with # are ignored:
+ * <pre>
+ * key down            press and release a key, by code or by name
+ * keydown fire        press a key
+ * keyup fire          release a key
+ * tap 120 200         press and release the pointer
+ * pointerdown 10 20   press the pointer
+ * drag 10 80          drag the pointer
+ * pointerup 10 80     release the pointer
+ * swipe 120 280 120 40 10   drag from point to point in the given number of steps
+ * sleep 500           pause for the given milliseconds
+ * idle 5000           wait until the display is idle with the given timeout
+ * </pre>
+ * Key names are up, down, left, right, fire, softleft, softright, clear and back.
+ */
+public class EventScript {
+    private static final int KEY = 0;
+    private static final int KEY_DOWN = 1;
+    private static final int KEY_UP = 2;
+    private static final int POINTER_DOWN = 3;
+    private static final int POINTER_DRAG = 4;
+    private static final int POINTER_UP = 5;
+    private static final int SLEEP = 6;
+    private static final int IDLE = 7;
+
+    private static final String[] KEY_NAMES = {
+        "up", "down", "left", "right", "fire", "softleft", "softright", "clear", "back"
+    };
+    private static final int[] KEY_CODES = {
+        HeadlessImplementation.KEY_UP, HeadlessImplementation.KEY_DOWN,
+        HeadlessImplementation.KEY_LEFT, HeadlessImplementation.KEY_RIGHT,
+        HeadlessImplementation.KEY_FIRE, HeadlessImplementation.KEY_SOFT_LEFT,
+        HeadlessImplementation.KEY_SOFT_RIGHT, HeadlessImplementation.KEY_CLEAR,
+        HeadlessImplementation.KEY_BACK
+    };
+
+    /**
+     * Steps are stored as int arrays of the step type followed by its arguments
+     */
+    private Vector steps = new Vector();
+
+    private EventScript add(int type, int a, int b) {
+        steps.addElement(new int[] {type, a, b});
+        return this;
+    }
+
+    /**
+     * Adds a key press followed by a key release
+     *
+     * @param keyCode the key code
+     * @return this script
+     */
+    public EventScript key(int keyCode) {
+        return add(KEY, keyCode, 0);
+    }
+
+    /**
+     * Adds a key press
+     *
+     * @param keyCode the key code
+     * @return this script
+     */
+    public EventScript keyDown(int keyCode) {
+        return add(KEY_DOWN, keyCode, 0);
+    }
+
+    /**
+     * Adds a key release
+     *
+     * @param keyCode the key code
+     * @return this script
+     */
+    public EventScript keyUp(int keyCode) {
+        return add(KEY_UP, keyCode, 0);
+    }
+
+    /**
+     * Adds a pointer press followed by a pointer release at the same position
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     * @return this script
+     */
+    public EventScript tap(int x, int y) {
+        return pointerDown(x, y).pointerUp(x, y);
+    }
+
+    /**
+     * Adds a pointer press
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     * @return this script
+     */
+    public EventScript pointerDown(int x, int y) {
+        return add(POINTER_DOWN, x, y);
+    }
+
+    /**
+     * Adds a pointer drag
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     * @return this script
+     */
+    public EventScript drag(int x, int y) {
+        return add(POINTER_DRAG, x, y);
+    }
+
+    /**
+     * Adds a pointer release
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     * @return this script
+     */
+    public EventScript pointerUp(int x, int y) {
+        return add(POINTER_UP, x, y);
+    }
+
+    /**
+     * Adds a pointer press at the start point, drags in equal steps to the end
+     * point and releases the pointer there
+     *
+     * @param x1 the start position
+     * @param y1 the start position
+     * @param x2 the end position
+     * @param y2 the end position
+     * @param count the number of drag events, at least 1
+     * @return this script
+     */
+    public EventScript swipe(int x1, int y1, int x2, int y2, int count) {
+        count = Math.max(1, count);
+        pointerDown(x1, y1);
+        for(int iter = 1 ; iter <= count ; iter++) {
+            drag(x1 + (x2 - x1) * iter / count, y1 + (y2 - y1) * iter / count);
+        }
+        return pointerUp(x2, y2);
+    }
+
+    /**
+     * Adds a pause
+     *
+     * @param millis the time to pause in milliseconds
+     * @return this script
+     */
+    public EventScript sleep(int millis) {
+        return add(SLEEP, millis, 0);
+    }
+
+    /**
+     * Adds a wait until the display is idle
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return this script
+     */
+    public EventScript idle(int timeout) {
+        return add(IDLE, timeout, 0);
+    }
+
+    /**
+     * Returns the number of steps in the script
+     *
+     * @return number of steps
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Plays the script into the given implementation, this method blocks and must
+     * not be invoked on the EDT
+     *
+     * @param impl the implementation receiving the events
+     * @return false if waiting for the display to become idle timed out in any
+     * of the steps
+     */
+    public boolean play(HeadlessImplementation impl) {
+        boolean settled = true;
+        int size = steps.size();
+        for(int iter = 0 ; iter < size ; iter++) {
+            int[] step = (int[])steps.elementAt(iter);
+            switch(step[0]) {
+                case KEY:
+                    impl.pressKey(step[1]);
+                    impl.releaseKey(step[1]);
+                    break;
+                case KEY_DOWN:
+                    impl.pressKey(step[1]);
+                    break;
+                case KEY_UP:
+                    impl.releaseKey(step[1]);
+                    break;
+                case POINTER_DOWN:
+                    impl.pressPointer(step[1], step[2]);
+                    break;
+                case POINTER_DRAG:
+                    impl.dragPointer(step[1], step[2]);
+                    break;
+                case POINTER_UP:
+                    impl.releasePointer(step[1], step[2]);
+                    break;
+                case SLEEP:
+                    try {
+                        Thread.sleep(step[1]);
+                    } catch(InterruptedException err) {
+                        err.printStackTrace();
+                    }
+                    break;
+                case IDLE:
+                    if(!impl.waitForIdle(step[1])) {
+                        settled = false;
+                    }
+                    break;
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Reads a script in the text format from the given stream
+     *
+     * @param i stream of UTF-8 text, the stream is closed
+     * @return the script
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the script is malformed
+     */
+    public static EventScript load(InputStream i) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int size = i.read(buffer);
+            while(size > -1) {
+                out.write(buffer, 0, size);
+                size = i.read(buffer);
+            }
+            return parse(new String(out.toByteArray(), "UTF-8"));
+        } finally {
+            i.close();
+        }
+    }
+
+    /**
+     * Parses a script in the text format
+     *
+     * @param script the text of the script
+     * @return the script
+     * @throws IllegalArgumentException if the script is malformed
+     */
+    public static EventScript parse(String script) {
+        EventScript s = new EventScript();
+        int lineNumber = 0;
+        int pos = 0;
+        int length = script.length();
+        while(pos < length) {
+            int end = script.indexOf('\n', pos);
+            if(end < 0) {
+                end = length;
+            }
+            String line = script.substring(pos, end).trim();
+            pos = end + 1;
+            lineNumber++;
+            if(line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] tokens = split(line);
+            try {
+                s.parseStep(tokens);
+            } catch(RuntimeException err) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + err.getMessage());
+            }
+        }
+        return s;
+    }
+
+    private void parseStep(String[] tokens) {
+        String command = tokens[0].toLowerCase();
+        if(command.equals("key")) {
+            expect(tokens, 1);
+            key(keyCode(tokens[1]));
+        } else if(command.equals("keydown")) {
+            expect(tokens, 1);
+            keyDown(keyCode(tokens[1]));
+        } else if(command.equals("keyup")) {
+            expect(tokens, 1);
+            keyUp(keyCode(tokens[1]));
+        } else if(command.equals("tap")) {
+            expect(tokens, 2);
+            tap(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+        } else if(command.equals("pointerdown")) {
+            expect(tokens, 2);
+            pointerDown(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+        } else if(command.equals("drag")) {
+            expect(tokens, 2);
+            drag(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+        } else if(command.equals("pointerup")) {
+            expect(tokens, 2);
+            pointerUp(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+        } else if(command.equals("swipe")) {
+            expect(tokens, 5);
+            swipe(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]),
+                    Integer.parseInt(tokens[4]), Integer.parseInt(tokens[5]));
+        } else if(command.equals("sleep")) {
+            expect(tokens, 1);
+            sleep(Integer.parseInt(tokens[1]));
+        } else if(command.equals("idle")) {
+            expect(tokens, 1);
+            idle(Integer.parseInt(tokens[1]));
+        } else {
+            throw new IllegalArgumentException("Unknown command " + tokens[0]);
+        }
+    }
+
+    private static void expect(String[] tokens, int arguments) {
+        if(tokens.length != arguments + 1) {
+            throw new IllegalArgumentException(tokens[0] + " expects " + arguments + " arguments");
+        }
+    }
+
+    private static int keyCode(String token) {
+        String name = token.toLowerCase();
+        for(int iter = 0 ; iter < KEY_NAMES.length ; iter++) {
+            if(KEY_NAMES[iter].equals(name)) {
+                return KEY_CODES[iter];
+            }
+        }
+        return Integer.parseInt(token);
+    }
+
+    private static String[] split(String line) {
+        Vector tokens = new Vector();
+        int pos = 0;
+        int length = line.length();
+        while(pos < length) {
+            while(pos < length && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            int start = pos;
+            while(pos < length && !Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            if(pos > start) {
+                tokens.addElement(line.substring(start, pos));
+            }
+        }
+        String[] result = new String[tokens.size()];
+        tokens.copyInto(result);
+        return result;
+    }
+}
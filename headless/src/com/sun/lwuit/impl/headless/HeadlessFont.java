@@ -0,0 +1,93 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Font;
+
+/**
+ * The native font of the headless implementation. Fonts have fixed metrics
+ * derived from the requested size so layouts are identical on every machine,
+ * every character has the same width other than whitespace.
+ */
+class HeadlessFont {
+    final int face;
+    final int style;
+    final int size;
+    final int charWidth;
+    final int spaceWidth;
+    final int height;
+
+    HeadlessFont(int face, int style, int size) {
+        this.face = face;
+        this.style = style;
+        this.size = size;
+        int w;
+        int h;
+        switch(size) {
+            case Font.SIZE_SMALL:
+                w = 5;
+                h = 12;
+                break;
+            case Font.SIZE_LARGE:
+                w = 9;
+                h = 19;
+                break;
+            default:
+                w = 7;
+                h = 15;
+                break;
+        }
+        if((style & Font.STYLE_BOLD) != 0) {
+            w++;
+        }
+        charWidth = w;
+        spaceWidth = face == Font.FACE_MONOSPACE ? w : Math.max(2, w / 2);
+        height = h;
+    }
+
+    int charWidth(char c) {
+        if(c == ' ' || c == '\t') {
+            return spaceWidth;
+        }
+        return charWidth;
+    }
+
+    int charsWidth(char[] ch, int offset, int length) {
+        int w = 0;
+        for(int iter = offset ; iter < offset + length ; iter++) {
+            w += charWidth(ch[iter]);
+        }
+        return w;
+    }
+
+    int stringWidth(String s) {
+        int w = 0;
+        int length = s.length();
+        for(int iter = 0 ; iter < length ; iter++) {
+            w += charWidth(s.charAt(iter));
+        }
+        return w;
+    }
+}
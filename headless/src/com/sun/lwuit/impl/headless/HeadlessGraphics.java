@@ -0,0 +1,376 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Font;
+
+/**
+ * The native graphics of the headless implementation, rasterizes the drawing
+ * primitives into the ARGB array of an image. The alpha set on the graphics
+ * applies to every primitive including images, coordinates are never translated
+ * by the graphics since LWUIT translates them before they reach the implementation.
+ */
+class HeadlessGraphics {
+    private final HeadlessImage target;
+    private int color;
+    private int alpha = 0xff;
+    private HeadlessFont font;
+
+    /**
+     * The clip is stored as an inclusive top left and an exclusive bottom right
+     */
+    private int clipX1;
+    private int clipY1;
+    private int clipX2;
+    private int clipY2;
+
+    HeadlessGraphics(HeadlessImage target) {
+        this.target = target;
+        clipX2 = target.width;
+        clipY2 = target.height;
+    }
+
+    HeadlessImage getTarget() {
+        return target;
+    }
+
+    int getColor() {
+        return color;
+    }
+
+    void setColor(int color) {
+        this.color = color & 0xffffff;
+    }
+
+    int getAlpha() {
+        return alpha;
+    }
+
+    void setAlpha(int alpha) {
+        this.alpha = alpha & 0xff;
+    }
+
+    HeadlessFont getFont() {
+        return font;
+    }
+
+    void setFont(HeadlessFont font) {
+        this.font = font;
+    }
+
+    int getClipX() {
+        return clipX1;
+    }
+
+    int getClipY() {
+        return clipY1;
+    }
+
+    int getClipWidth() {
+        return clipX2 - clipX1;
+    }
+
+    int getClipHeight() {
+        return clipY2 - clipY1;
+    }
+
+    void setClip(int x, int y, int width, int height) {
+        clipX1 = Math.max(0, x);
+        clipY1 = Math.max(0, y);
+        clipX2 = Math.max(clipX1, Math.min(target.width, x + width));
+        clipY2 = Math.max(clipY1, Math.min(target.height, y + height));
+    }
+
+    void clipRect(int x, int y, int width, int height) {
+        int x1 = Math.max(clipX1, x);
+        int y1 = Math.max(clipY1, y);
+        clipX2 = Math.max(x1, Math.min(clipX2, x + width));
+        clipY2 = Math.max(y1, Math.min(clipY2, y + height));
+        clipX1 = x1;
+        clipY1 = y1;
+    }
+
+    /**
+     * Fills the pixels of a row between x1 inclusive and x2 exclusive with the
+     * current color and alpha
+     */
+    private void span(int y, int x1, int x2) {
+        if(y < clipY1 || y >= clipY2 || alpha == 0) {
+            return;
+        }
+        x1 = Math.max(x1, clipX1);
+        x2 = Math.min(x2, clipX2);
+        if(x1 >= x2) {
+            return;
+        }
+        int[] rgb = target.rgb;
+        int offset = y * target.width;
+        if(alpha == 0xff) {
+            int c = 0xff000000 | color;
+            for(int iter = offset + x1 ; iter < offset + x2 ; iter++) {
+                rgb[iter] = c;
+            }
+        } else {
+            int c = (alpha << 24) | color;
+            for(int iter = offset + x1 ; iter < offset + x2 ; iter++) {
+                rgb[iter] = blend(rgb[iter], c);
+            }
+        }
+    }
+
+    private void plot(int x, int y) {
+        if(x >= clipX1 && x < clipX2) {
+            span(y, x, x + 1);
+        }
+    }
+
+    /**
+     * Composes a translucent source pixel over a destination pixel
+     */
+    static int blend(int dest, int src) {
+        int a = src >>> 24;
+        if(a == 0xff) {
+            return src;
+        }
+        if(a == 0) {
+            return dest;
+        }
+        int na = 0xff - a;
+        int destA = dest >>> 24;
+        int outA = a + destA * na / 0xff;
+        int r = (((src >> 16) & 0xff) * a + ((dest >> 16) & 0xff) * na) / 0xff;
+        int g = (((src >> 8) & 0xff) * a + ((dest >> 8) & 0xff) * na) / 0xff;
+        int b = ((src & 0xff) * a + (dest & 0xff) * na) / 0xff;
+        return (outA << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    void fillRect(int x, int y, int width, int height) {
+        int y2 = Math.min(y + height, clipY2);
+        for(int row = Math.max(y, clipY1) ; row < y2 ; row++) {
+            span(row, x, x + width);
+        }
+    }
+
+    void drawRect(int x, int y, int width, int height) {
+        if(width < 0 || height < 0) {
+            return;
+        }
+        span(y, x, x + width + 1);
+        if(height > 0) {
+            span(y + height, x, x + width + 1);
+        }
+        for(int row = y + 1 ; row < y + height ; row++) {
+            plot(x, row);
+            if(width > 0) {
+                plot(x + width, row);
+            }
+        }
+    }
+
+    void drawLine(int x1, int y1, int x2, int y2) {
+        if(y1 == y2) {
+            span(y1, Math.min(x1, x2), Math.max(x1, x2) + 1);
+            return;
+        }
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int err = dx + dy;
+        while(true) {
+            plot(x1, y1);
+            if(x1 == x2 && y1 == y2) {
+                return;
+            }
+            int e2 = 2 * err;
+            if(e2 >= dy) {
+                err += dy;
+                x1 += sx;
+            }
+            if(e2 <= dx) {
+                err += dx;
+                y1 += sy;
+            }
+        }
+    }
+
+    /**
+     * Returns the horizontal inset of an elliptic corner with the given radii
+     * at the given distance from the top of the corner
+     */
+    private static int cornerInset(int rx, int ry, int row) {
+        if(rx <= 0 || ry <= 0 || row >= ry) {
+            return 0;
+        }
+        double dy = (ry - row - 0.5) / ry;
+        return (int)Math.round(rx - rx * Math.sqrt(Math.max(0, 1 - dy * dy)));
+    }
+
+    void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        int rx = Math.min(arcWidth, width) / 2;
+        int ry = Math.min(arcHeight, height) / 2;
+        for(int row = 0 ; row < height ; row++) {
+            int inset = cornerInset(rx, ry, Math.min(row, height - 1 - row));
+            span(y + row, x + inset, x + width - inset);
+        }
+    }
+
+    void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        int rx = Math.min(arcWidth, width) / 2;
+        int ry = Math.min(arcHeight, height) / 2;
+        if(rx == 0 || ry == 0) {
+            drawRect(x, y, width, height);
+            return;
+        }
+        span(y, x + rx, x + width - rx + 1);
+        span(y + height, x + rx, x + width - rx + 1);
+        for(int row = y + ry ; row <= y + height - ry ; row++) {
+            plot(x, row);
+            plot(x + width, row);
+        }
+        drawArc(x, y, rx * 2, ry * 2, 90, 90);
+        drawArc(x + width - rx * 2, y, rx * 2, ry * 2, 0, 90);
+        drawArc(x, y + height - ry * 2, rx * 2, ry * 2, 180, 90);
+        drawArc(x + width - rx * 2, y + height - ry * 2, rx * 2, ry * 2, 270, 90);
+    }
+
+    void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        if(width <= 0 || height <= 0 || arcAngle == 0) {
+            return;
+        }
+        if(arcAngle < 0) {
+            startAngle += arcAngle;
+            arcAngle = -arcAngle;
+        }
+        arcAngle = Math.min(arcAngle, 360);
+        double rx = width / 2.0;
+        double ry = height / 2.0;
+        double cx = x + rx;
+        double cy = y + ry;
+
+        // enough steps to leave no gaps between consecutive points
+        int steps = Math.max(4, (int)((rx + ry) * Math.PI * arcAngle / 180));
+        for(int iter = 0 ; iter <= steps ; iter++) {
+            double angle = Math.toRadians(startAngle + arcAngle * (double)iter / steps);
+            plot((int)Math.round(cx + rx * Math.cos(angle)), (int)Math.round(cy - ry * Math.sin(angle)));
+        }
+    }
+
+    void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        if(width <= 0 || height <= 0 || arcAngle == 0) {
+            return;
+        }
+        if(arcAngle < 0) {
+            startAngle += arcAngle;
+            arcAngle = -arcAngle;
+        }
+        boolean full = arcAngle >= 360;
+        startAngle = ((startAngle % 360) + 360) % 360;
+        double rx = width / 2.0;
+        double ry = height / 2.0;
+        double cx = x + rx;
+        double cy = y + ry;
+        int y2 = Math.min(y + height, clipY2);
+        for(int row = Math.max(y, clipY1) ; row < y2 ; row++) {
+            double dy = (row + 0.5 - cy) / ry;
+            double half = rx * Math.sqrt(Math.max(0, 1 - dy * dy));
+            int x1 = (int)Math.round(cx - half);
+            int x2 = (int)Math.round(cx + half);
+            if(full) {
+                span(row, x1, x2);
+                continue;
+            }
+            for(int col = Math.max(x1, clipX1) ; col < Math.min(x2, clipX2) ; col++) {
+                double angle = Math.toDegrees(Math.atan2(cy - row - 0.5, col + 0.5 - cx));
+                double offset = ((angle - startAngle) % 360 + 360) % 360;
+                if(offset <= arcAngle) {
+                    span(row, col, col + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the text with every non whitespace character rendered as a solid
+     * block within its cell so the pixel output is deterministic while the
+     * drawing cost still grows with the length of the text
+     */
+    void drawString(String str, int x, int y) {
+        HeadlessFont f = font;
+        int length = str.length();
+        int glyphTop = y + f.height / 5;
+        int glyphHeight = f.height - f.height / 5 - f.height / 6;
+        int start = x;
+        for(int iter = 0 ; iter < length ; iter++) {
+            char c = str.charAt(iter);
+            int w = f.charWidth(c);
+            if(c > ' ') {
+                fillRect(x, glyphTop, w - 1, glyphHeight);
+            }
+            x += w;
+        }
+        if((f.style & Font.STYLE_UNDERLINED) != 0) {
+            span(y + f.height - 1, start, x);
+        }
+    }
+
+    void drawImage(HeadlessImage img, int x, int y) {
+        drawRGB(img.rgb, 0, img.width, x, y, img.width, img.height, img.alpha);
+    }
+
+    void drawRGB(int[] rgbData, int offset, int scanlength, int x, int y, int w, int h, boolean processAlpha) {
+        if(alpha == 0) {
+            return;
+        }
+        int x1 = Math.max(x, clipX1);
+        int y1 = Math.max(y, clipY1);
+        int x2 = Math.min(x + w, clipX2);
+        int y2 = Math.min(y + h, clipY2);
+        if(x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        int[] dest = target.rgb;
+        int destWidth = target.width;
+        int count = x2 - x1;
+        for(int row = y1 ; row < y2 ; row++) {
+            int src = offset + (row - y) * scanlength + x1 - x;
+            int dst = row * destWidth + x1;
+            if(!processAlpha && alpha == 0xff) {
+                for(int iter = 0 ; iter < count ; iter++) {
+                    dest[dst + iter] = 0xff000000 | rgbData[src + iter];
+                }
+                continue;
+            }
+            for(int iter = 0 ; iter < count ; iter++) {
+                int p = rgbData[src + iter];
+                int a = processAlpha ? p >>> 24 : 0xff;
+                if(alpha != 0xff) {
+                    a = a * alpha / 0xff;
+                }
+                dest[dst + iter] = blend(dest[dst + iter], (a << 24) | (p & 0xffffff));
+            }
+        }
+    }
+}
@@ -0,0 +1,850 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Font;
+import com.sun.lwuit.impl.LWUITImplementation;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * An implementation of LWUIT for a plain Java SE virtual machine without a screen.
+ * Everything is rendered into an ARGB framebuffer in memory and flushing copies the
+ * flushed region into a second buffer representing the visible screen, so the real
+ * display thread, forms, layouts and painting run unmodified e.g. on a build server
+ * for profiling and automated performance tests.
+ * <p>Input is injected with the pressKey/pressPointer family of methods or played
+ * from an {@link EventScript}, waitForIdle() blocks until the EDT has handled the
+ * injected events and painted the result. The implementation counts the flushes and
+ * the pixels drawn through drawRGB and flushed so tests can assert on the amount
+ * of work done by a paint.
+ * <p>Images are decoded with ImageIO (which works with java.awt.headless set) and
+ * fonts have fixed metrics with glyphs drawn as solid blocks so output is identical
+ * on every machine. Install the implementation with {@link HeadlessImplementationFactory}.
+ */
+public class HeadlessImplementation extends LWUITImplementation {
+    /**
+     * Key code of the up game key
+     */
+    public static final int KEY_UP = -1;
+
+    /**
+     * Key code of the down game key
+     */
+    public static final int KEY_DOWN = -2;
+
+    /**
+     * Key code of the left game key
+     */
+    public static final int KEY_LEFT = -3;
+
+    /**
+     * Key code of the right game key
+     */
+    public static final int KEY_RIGHT = -4;
+
+    /**
+     * Key code of the fire game key
+     */
+    public static final int KEY_FIRE = -5;
+
+    /**
+     * Key code of the left soft key
+     */
+    public static final int KEY_SOFT_LEFT = -6;
+
+    /**
+     * Key code of the right soft key
+     */
+    public static final int KEY_SOFT_RIGHT = -7;
+
+    /**
+     * Key code of the clear and backspace key
+     */
+    public static final int KEY_CLEAR = -8;
+
+    /**
+     * Key code of the back key
+     */
+    public static final int KEY_BACK = -11;
+
+    private static final Runnable NOOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private final int width;
+    private final int height;
+    private final HeadlessImage framebuffer;
+    private final int[] screen;
+    private final HeadlessGraphics graphics;
+    private HeadlessFont defaultFont = new HeadlessFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_MEDIUM);
+    private boolean touchDevice = true;
+    private String editText;
+
+    private int flushes;
+    private int fullFlushes;
+    private long flushedPixels;
+    private int rgbDraws;
+    private long rgbPixels;
+
+    /**
+     * Creates a headless implementation with a screen of the given size
+     *
+     * @param width the width of the screen
+     * @param height the height of the screen
+     */
+    public HeadlessImplementation(int width, int height) {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Illegal screen size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        framebuffer = new HeadlessImage(width, height);
+        screen = new int[width * height];
+        graphics = new HeadlessGraphics(framebuffer);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void init(Object m) {
+        // every region is copied separately, there is no flush graphics bug to
+        // work around
+        setMaxFlushRegions(4);
+    }
+
+    /**
+     * Sets whether the implementation reports itself as a touch device, true by default
+     *
+     * @param touchDevice true to indicate pointer events are supported
+     */
+    public void setTouchDevice(boolean touchDevice) {
+        this.touchDevice = touchDevice;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isTouchDevice() {
+        return touchDevice;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getDisplayWidth() {
+        return width;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getDisplayHeight() {
+        return height;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int numColors() {
+        return 16777216;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isAlphaGlobal() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isAlphaMutableImageSupported() {
+        return true;
+    }
+
+    /**
+     * Sets the text the next native edit completes with, without this editing
+     * completes with the text of the component unchanged
+     *
+     * @param text the text entered by the next edit or null
+     */
+    public void setEditText(String text) {
+        editText = text;
+    }
+
+    /**
+     * Completes the edit immediately with the text set by setEditText()
+     *
+     * @inheritDoc
+     */
+    public void editString(Component cmp, int maxSize, int constraint, String text) {
+        if(editText != null) {
+            text = editText;
+            if(text.length() > maxSize) {
+                text = text.substring(0, maxSize);
+            }
+            editText = null;
+        }
+        Display.getInstance().onEditingComplete(cmp, text);
+    }
+
+    /**
+     * Injects a key press event
+     *
+     * @param keyCode the key code
+     */
+    public void pressKey(int keyCode) {
+        keyPressed(keyCode);
+    }
+
+    /**
+     * Injects a key release event
+     *
+     * @param keyCode the key code
+     */
+    public void releaseKey(int keyCode) {
+        keyReleased(keyCode);
+    }
+
+    /**
+     * Injects a pointer press event
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     */
+    public void pressPointer(int x, int y) {
+        pointerPressed(x, y);
+    }
+
+    /**
+     * Injects a pointer drag event, drags go through the same drag threshold as
+     * on a device
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     */
+    public void dragPointer(int x, int y) {
+        pointerDragged(x, y);
+    }
+
+    /**
+     * Injects a pointer release event
+     *
+     * @param x the position of the event
+     * @param y the position of the event
+     */
+    public void releasePointer(int x, int y) {
+        pointerReleased(x, y);
+    }
+
+    /**
+     * Blocks until the EDT has handled the pending events and serial calls, painted
+     * the pending repaints and finished any transition. A form that keeps animating
+     * never becomes idle in which case this method returns false once the timeout
+     * elapses.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return true if the display became idle, false if the timeout elapsed
+     * @throws IllegalStateException if invoked on the EDT
+     */
+    public boolean waitForIdle(long timeout) {
+        Display d = Display.getInstance();
+        if(d.isEdt()) {
+            throw new IllegalStateException("waitForIdle can't be invoked on the EDT");
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+
+        // an event queued while the EDT is past the input stage of a cycle is
+        // only handled in the following cycle
+        d.callSeriallyAndWait(NOOP);
+        do {
+            d.callSeriallyAndWait(NOOP);
+            if(!hasPendingPaints() && d.getCurrent() == getCurrentForm()) {
+                return true;
+            }
+        } while(System.currentTimeMillis() < deadline);
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void flushGraphics(int x, int y, int width, int height) {
+        int x1 = Math.max(0, x);
+        int y1 = Math.max(0, y);
+        int x2 = Math.min(this.width, x + width);
+        int y2 = Math.min(this.height, y + height);
+        if(x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        synchronized(screen) {
+            int[] rgb = framebuffer.rgb;
+            for(int row = y1 ; row < y2 ; row++) {
+                int offset = row * this.width + x1;
+                System.arraycopy(rgb, offset, screen, offset, x2 - x1);
+            }
+            flushes++;
+            flushedPixels += (x2 - x1) * (y2 - y1);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void flushGraphics() {
+        synchronized(screen) {
+            System.arraycopy(framebuffer.rgb, 0, screen, 0, screen.length);
+            flushes++;
+            fullFlushes++;
+            flushedPixels += screen.length;
+        }
+    }
+
+    /**
+     * Returns a copy of the screen as of the last flush
+     *
+     * @return ARGB array of display width by display height pixels
+     */
+    public int[] getScreenRGB() {
+        synchronized(screen) {
+            int[] copy = new int[screen.length];
+            System.arraycopy(screen, 0, copy, 0, screen.length);
+            return copy;
+        }
+    }
+
+    /**
+     * Writes the screen as of the last flush as a PNG image
+     *
+     * @param out the stream to which the image is written, it isn't closed
+     * @throws IOException if writing fails
+     */
+    public void writeScreen(OutputStream out) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        img.setRGB(0, 0, width, height, getScreenRGB(), 0, width);
+        ImageIO.write(img, "png", out);
+    }
+
+    /**
+     * Returns the number of flushes since the statistics were reset
+     *
+     * @return number of flushes including full screen flushes
+     */
+    public int getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * Returns the number of full screen flushes since the statistics were reset
+     *
+     * @return number of full screen flushes
+     */
+    public int getFullFlushCount() {
+        return fullFlushes;
+    }
+
+    /**
+     * Returns the number of pixels copied to the screen since the statistics were reset
+     *
+     * @return number of pixels
+     */
+    public long getFlushedPixels() {
+        return flushedPixels;
+    }
+
+    /**
+     * Returns the number of drawRGB calls since the statistics were reset
+     *
+     * @return number of calls
+     */
+    public int getRGBDrawCount() {
+        return rgbDraws;
+    }
+
+    /**
+     * Returns the number of pixels passed to drawRGB since the statistics were reset
+     *
+     * @return number of pixels
+     */
+    public long getRGBPixels() {
+        return rgbPixels;
+    }
+
+    /**
+     * Resets the flush and drawRGB counters
+     */
+    public void resetStatistics() {
+        synchronized(screen) {
+            flushes = 0;
+            fullFlushes = 0;
+            flushedPixels = 0;
+            rgbDraws = 0;
+            rgbPixels = 0;
+        }
+    }
+
+    private static HeadlessGraphics g(Object graphics) {
+        return (HeadlessGraphics)graphics;
+    }
+
+    private static HeadlessImage img(Object image) {
+        return (HeadlessImage)image;
+    }
+
+    private HeadlessFont font(Object f) {
+        if(f == null) {
+            return defaultFont;
+        }
+        return (HeadlessFont)f;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void getRGB(Object nativeImage, int[] arr, int offset, int x, int y, int width, int height) {
+        HeadlessImage i = img(nativeImage);
+        for(int row = 0 ; row < height ; row++) {
+            System.arraycopy(i.rgb, (y + row) * i.width + x, arr, offset + row * width, width);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(int[] rgb, int width, int height) {
+        HeadlessImage i = new HeadlessImage(width, height);
+        System.arraycopy(rgb, 0, i.rgb, 0, width * height);
+        i.alpha = true;
+        return i;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(String path) throws IOException {
+        InputStream i = getClass().getResourceAsStream(path);
+        if(i == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+        try {
+            return createImage(i);
+        } finally {
+            i.close();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(InputStream i) throws IOException {
+        BufferedImage b = ImageIO.read(i);
+        if(b == null) {
+            throw new IOException("Unsupported image format");
+        }
+        int w = b.getWidth();
+        int h = b.getHeight();
+        HeadlessImage img = new HeadlessImage(w, h);
+        b.getRGB(0, 0, w, h, img.rgb, 0, w);
+        img.alpha = b.getColorModel().hasAlpha();
+        return img;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(byte[] bytes, int offset, int len) {
+        try {
+            return createImage(new ByteArrayInputStream(bytes, offset, len));
+        } catch(IOException err) {
+            throw new IllegalArgumentException(err.getMessage());
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createMutableImage(int width, int height, int fillColor) {
+        HeadlessImage i = new HeadlessImage(width, height);
+        if(fillColor != 0) {
+            Arrays.fill(i.rgb, fillColor);
+        }
+        i.alpha = (fillColor >>> 24) != 0xff;
+        return i;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getImageWidth(Object i) {
+        return img(i).width;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getImageHeight(Object i) {
+        return img(i).height;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object scale(Object nativeImage, int width, int height) {
+        HeadlessImage src = img(nativeImage);
+        if(src.width == width && src.height == height) {
+            return src;
+        }
+        HeadlessImage dest = new HeadlessImage(width, height);
+        dest.alpha = src.alpha;
+        int xRatio = (src.width << 16) / width;
+        int yRatio = (src.height << 16) / height;
+        int yPos = yRatio / 2;
+        for(int y = 0 ; y < height ; y++) {
+            int srcOffset = (yPos >> 16) * src.width;
+            int xPos = xRatio / 2;
+            for(int x = 0 ; x < width ; x++) {
+                dest.rgb[y * width + x] = src.rgb[srcOffset + (xPos >> 16)];
+                xPos += xRatio;
+            }
+            yPos += yRatio;
+        }
+        return dest;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSoftkeyCount() {
+        return 2;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int[] getSoftkeyCode(int index) {
+        if(index == 0) {
+            return new int[] {KEY_SOFT_LEFT};
+        }
+        if(index == 1) {
+            return new int[] {KEY_SOFT_RIGHT};
+        }
+        return null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClearKeyCode() {
+        return KEY_CLEAR;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getBackspaceKeyCode() {
+        return KEY_CLEAR;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getBackKeyCode() {
+        return KEY_BACK;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getGameAction(int keyCode) {
+        switch(keyCode) {
+            case KEY_UP:
+                return Display.GAME_UP;
+            case KEY_DOWN:
+                return Display.GAME_DOWN;
+            case KEY_LEFT:
+                return Display.GAME_LEFT;
+            case KEY_RIGHT:
+                return Display.GAME_RIGHT;
+            case KEY_FIRE:
+                return Display.GAME_FIRE;
+        }
+        return 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getKeyCode(int gameAction) {
+        switch(gameAction) {
+            case Display.GAME_UP:
+                return KEY_UP;
+            case Display.GAME_DOWN:
+                return KEY_DOWN;
+            case Display.GAME_LEFT:
+                return KEY_LEFT;
+            case Display.GAME_RIGHT:
+                return KEY_RIGHT;
+            case Display.GAME_FIRE:
+                return KEY_FIRE;
+        }
+        return 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getColor(Object graphics) {
+        return g(graphics).getColor();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setColor(Object graphics, int RGB) {
+        g(graphics).setColor(RGB);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setAlpha(Object graphics, int alpha) {
+        g(graphics).setAlpha(alpha);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getAlpha(Object graphics) {
+        return g(graphics).getAlpha();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setNativeFont(Object graphics, Object font) {
+        g(graphics).setFont(font(font));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipX(Object graphics) {
+        return g(graphics).getClipX();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipY(Object graphics) {
+        return g(graphics).getClipY();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipWidth(Object graphics) {
+        return g(graphics).getClipWidth();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipHeight(Object graphics) {
+        return g(graphics).getClipHeight();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setClip(Object graphics, int x, int y, int width, int height) {
+        g(graphics).setClip(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void clipRect(Object graphics, int x, int y, int width, int height) {
+        g(graphics).clipRect(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawLine(Object graphics, int x1, int y1, int x2, int y2) {
+        g(graphics).drawLine(x1, y1, x2, y2);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillRect(Object graphics, int x, int y, int width, int height) {
+        g(graphics).fillRect(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawRect(Object graphics, int x, int y, int width, int height) {
+        g(graphics).drawRect(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawRoundRect(Object graphics, int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        g(graphics).drawRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillRoundRect(Object graphics, int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        g(graphics).fillRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillArc(Object graphics, int x, int y, int width, int height, int startAngle, int arcAngle) {
+        g(graphics).fillArc(x, y, width, height, startAngle, arcAngle);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawArc(Object graphics, int x, int y, int width, int height, int startAngle, int arcAngle) {
+        g(graphics).drawArc(x, y, width, height, startAngle, arcAngle);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawString(Object graphics, String str, int x, int y) {
+        g(graphics).drawString(str, x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawImage(Object graphics, Object img, int x, int y) {
+        g(graphics).drawImage(img(img), x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawRGB(Object graphics, int[] rgbData, int offset, int x, int y, int w, int h, boolean processAlpha) {
+        rgbDraws++;
+        rgbPixels += w * h;
+        g(graphics).drawRGB(rgbData, offset, w, x, y, w, h, processAlpha);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getNativeGraphics() {
+        return graphics;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getNativeGraphics(Object image) {
+        return new HeadlessGraphics(img(image));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charsWidth(Object nativeFont, char[] ch, int offset, int length) {
+        return font(nativeFont).charsWidth(ch, offset, length);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int stringWidth(Object nativeFont, String str) {
+        return font(nativeFont).stringWidth(str);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charWidth(Object nativeFont, char ch) {
+        return font(nativeFont).charWidth(ch);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getHeight(Object nativeFont) {
+        return font(nativeFont).height;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getDefaultFont() {
+        return defaultFont;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createFont(int face, int style, int size) {
+        return new HeadlessFont(face, style, size);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getFace(Object nativeFont) {
+        return font(nativeFont).face;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSize(Object nativeFont) {
+        return font(nativeFont).size;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getStyle(Object nativeFont) {
+        return font(nativeFont).style;
+    }
+}
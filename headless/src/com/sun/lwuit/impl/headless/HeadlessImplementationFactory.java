@@ -0,0 +1,91 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Display;
+import com.sun.lwuit.impl.ImplementationFactory;
+import com.sun.lwuit.impl.LWUITImplementation;
+
+/**
+ * Creates a {@link HeadlessImplementation} of a fixed screen size. The simplest
+ * way to run LWUIT in a plain virtual machine is install() which replaces the
+ * factory and initializes the display:
+ * <pre>
+ * HeadlessImplementation impl = HeadlessImplementationFactory.install(240, 320);
+ * form.show();
+ * impl.waitForIdle(5000);
+ * </pre>
+ */
+public class HeadlessImplementationFactory extends ImplementationFactory {
+    private int width;
+    private int height;
+    private HeadlessImplementation implementation;
+
+    /**
+     * Creates a factory for implementations with a screen of the given size
+     *
+     * @param width the width of the screen
+     * @param height the height of the screen
+     */
+    public HeadlessImplementationFactory(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public LWUITImplementation createImplementation() {
+        implementation = new HeadlessImplementation(width, height);
+        return implementation;
+    }
+
+    /**
+     * Returns the implementation created last by this factory
+     *
+     * @return the implementation or null if none was created
+     */
+    public HeadlessImplementation getImplementation() {
+        return implementation;
+    }
+
+    /**
+     * Installs a headless factory and initializes the display with it, the display
+     * must not be initialized already
+     *
+     * @param width the width of the screen
+     * @param height the height of the screen
+     * @return the implementation used by the display
+     */
+    public static HeadlessImplementation install(int width, int height) {
+        HeadlessImplementationFactory f = new HeadlessImplementationFactory(width, height);
+        ImplementationFactory.setInstance(f);
+        Display.init(null);
+        if(f.getImplementation() == null) {
+            throw new IllegalStateException("The display was already initialized");
+        }
+        return f.getImplementation();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * A unit of work performed by the worker pool of the display. The execute()
+ * method is invoked on a worker thread and its result is delivered to completed()
+ * or failed() on the event dispatch thread via callSerially. A task can only be
+ * submitted once.
+ *
+ * @see Display#getWorkerPool()
+ */
+public abstract class BackgroundTask {
+    static final int STATE_NEW = 0;
+    static final int STATE_QUEUED = 1;
+    static final int STATE_RUNNING = 2;
+    static final int STATE_FINISHED = 3;
+    static final int STATE_DONE = 4;
+
+    /**
+     * Guarded by the monitor of the pool
+     */
+    int state = STATE_NEW;
+    WorkerPool pool;
+    private boolean cancelled;
+    private Object result;
+    private Exception error;
+
+    /**
+     * Performs the work on a worker thread, this method must not access components
+     *
+     * @return the result passed to completed()
+     * @throws Exception passed to failed()
+     */
+    protected abstract Object execute() throws Exception;
+
+    /**
+     * Invoked on the event dispatch thread with the value returned by execute()
+     * unless the task was cancelled
+     *
+     * @param result the value returned by execute()
+     */
+    protected void completed(Object result) {
+    }
+
+    /**
+     * Invoked on the event dispatch thread with the exception thrown by execute()
+     * unless the task was cancelled, by default the stack trace is printed
+     *
+     * @param err the exception thrown by execute()
+     */
+    protected void failed(Exception err) {
+        err.printStackTrace();
+    }
+
+    /**
+     * Cancels the task, a task that is still queued is removed from the queue and
+     * the result of a task that is already running is discarded. A long running
+     * task can poll isCancelled() to stop early.
+     *
+     * @return true if neither completed() nor failed() will be invoked as a result
+     * of this call, false if the task already finished or was cancelled before
+     */
+    public boolean cancel() {
+        WorkerPool p = pool;
+        if(p == null) {
+            if(cancelled) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+        synchronized(p) {
+            if(cancelled || state == STATE_DONE) {
+                return false;
+            }
+            cancelled = true;
+            if(state == STATE_QUEUED) {
+                p.remove(this);
+                state = STATE_DONE;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Indicates whether the task was cancelled
+     *
+     * @return true if cancel() succeeded
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Indicates whether the result of the task was delivered or the task was
+     * removed from the queue by cancel()
+     *
+     * @return true if the task will not perform any further work
+     */
+    public boolean isDone() {
+        WorkerPool p = pool;
+        if(p == null) {
+            return false;
+        }
+        synchronized(p) {
+            return state == STATE_DONE;
+        }
+    }
+
+    /**
+     * Invoked by the worker thread once execute() returns
+     */
+    void finish(Object result, Exception error) {
+        this.result = result;
+        this.error = error;
+        Display.getInstance().callSerially(new Runnable() {
+            public void run() {
+                deliver();
+            }
+        });
+    }
+
+    private void deliver() {
+        synchronized(pool) {
+            boolean wasCancelled = cancelled;
+            state = STATE_DONE;
+            if(wasCancelled) {
+                result = null;
+                error = null;
+                return;
+            }
+        }
+        Object r = result;
+        Exception e = error;
+        result = null;
+        error = null;
+        if(e != null) {
+            failed(e);
+        } else {
+            completed(r);
+        }
+    }
+}
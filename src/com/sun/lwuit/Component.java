@@ -174,6 +174,12 @@ public class Component implements Animation, StyleListener {
     private Hashtable clientProperties;
     private Rectangle dirtyRegion = null;
     private Object dirtyRegionLock = new Object();
+
+    /**
+     * The innermost component within the component hierarchy that is being painted
+     * by the EDT, cell renderers are excluded since they aren't part of the hierarchy
+     */
+    static Component paintingComponent;
     private Label componentLabel;
     private String id;
 
@@ -327,6 +333,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setX(int x) {
         bounds.setX(x);
+        if (parent != null) {
+            parent.childBoundsChanged();
+        }
     }
 
     /**
@@ -338,6 +347,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setY(int y) {
         bounds.setY(y);
+        if (parent != null) {
+            parent.childBoundsChanged();
+        }
     }
 
     /**
@@ -484,6 +496,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setWidth(int width) {
         bounds.getSize().setWidth(width);
+        if (parent != null) {
+            parent.childBoundsChanged();
+        }
     }
 
     /**
@@ -497,6 +512,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setHeight(int height) {
         bounds.getSize().setHeight(height);
+        if (parent != null) {
+            parent.childBoundsChanged();
+        }
     }
 
     /**
@@ -512,6 +530,9 @@ public class Component implements Animation, StyleListener {
         Dimension d2 = bounds.getSize();
         d2.setWidth(d.getWidth());
         d2.setHeight(d.getHeight());
+        if (parent != null) {
+            parent.childBoundsChanged();
+        }
     }
 
     /**
@@ -799,23 +820,31 @@ public class Component implements Animation, StyleListener {
         int oWidth = g.getClipWidth();
         int oHeight = g.getClipHeight();
         if (bounds.intersects(oX, oY, oWidth, oHeight)) {
-            g.clipRect(getX(), getY(), getWidth(), getHeight());
-            paintBackground(g);
-
-            if (isScrollable()) {
-                int scrollX = getScrollX();
-                int scrollY = getScrollY();
-                g.translate(-scrollX, -scrollY);
-                paint(g);
-                g.translate(scrollX, scrollY);
-                if (isScrollVisible) {
-                    paintScrollbars(g);
-                }
-            } else {
-                paint(g);
+            Component previousPainting = paintingComponent;
+            if (!isCellRenderer()) {
+                paintingComponent = this;
             }
-            if (isBorderPainted()) {
-                paintBorder(g);
+            try {
+                g.clipRect(getX(), getY(), getWidth(), getHeight());
+                paintBackground(g);
+
+                if (isScrollable()) {
+                    int scrollX = getScrollX();
+                    int scrollY = getScrollY();
+                    g.translate(-scrollX, -scrollY);
+                    paint(g);
+                    g.translate(scrollX, scrollY);
+                    if (isScrollVisible) {
+                        paintScrollbars(g);
+                    }
+                } else {
+                    paint(g);
+                }
+                if (isBorderPainted()) {
+                    paintBorder(g);
+                }
+            } finally {
+                paintingComponent = previousPainting;
             }
 
             //paint all the intersecting Components above the Component
@@ -1275,6 +1304,16 @@ public class Component implements Animation, StyleListener {
      * recalculate his preferred size
      */
     protected void setShouldCalcPreferredSize(boolean shouldCalcPreferredSize) {
+        if (shouldCalcPreferredSize) {
+            // the preferred size flag stops the propagation below when it is already
+            // set, which is the case for components whose preferred size is never
+            // requested, so the layout flag is set on every ancestor
+            Container p = getParent();
+            while (p != null) {
+                p.shouldLayout = true;
+                p = p.getParent();
+            }
+        }
         if (!shouldCalcScrollSize) {
             this.shouldCalcScrollSize = shouldCalcPreferredSize;
         }
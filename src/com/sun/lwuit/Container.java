@@ -48,11 +48,31 @@ public class Container extends Component {
 
     private Layout layout;
     private java.util.Vector components = new java.util.Vector();
-    private boolean shouldLayout = true;
+
+    /**
+     * Indicates the container must be laid out again, set on all the ancestors
+     * of an invalidated component
+     */
+    boolean shouldLayout = true;
+
+    /**
+     * The size of the container when it was last laid out, a container whose
+     * size and children didn't change since then isn't laid out again
+     */
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
     private boolean scrollableX;
     private boolean scrollableY;
     private java.util.Vector cmpTransitions;
     private int scrollIncrement = 20;
+
+    /**
+     * Containers with fewer children than this are always hit tested linearly
+     */
+    private static final int SPATIAL_INDEX_THRESHOLD = 16;
+    private boolean spatialIndexEnabled;
+    private SpatialIndex spatialIndex;
+    private boolean spatialIndexValid;
     
     /**
      * Constructs a new Container with a new layout manager.
@@ -91,6 +111,7 @@ public class Container extends Component {
      */
     public void setLayout(Layout layout) {
         this.layout = layout;
+        shouldLayout = true;
     }
 
     /**
@@ -105,17 +126,10 @@ public class Container extends Component {
      * @inheritDoc
      */
     protected void setShouldCalcPreferredSize(boolean shouldCalcPreferredSize) {
+        // the invalidation travels up to the ancestors only, child containers
+        // are laid out again by doLayout() if their size changes as a result
         super.setShouldCalcPreferredSize(shouldCalcPreferredSize);
         shouldLayout = shouldCalcPreferredSize;
-        if (shouldLayout) {
-            int size = components.size();
-            for(int iter = 0 ; iter < size ; iter++) {
-                Component cmp = (Component) components.elementAt(iter);
-                if (cmp instanceof Container) {
-                    ((Container) cmp).setShouldCalcPreferredSize(shouldCalcPreferredSize);
-                }
-            }
-        }
         Form f = getComponentForm();
         if (f != null) {
             f.clearFocusVectors();
@@ -253,6 +267,7 @@ public class Container extends Component {
         }
         cmp.setParent(this);
         components.insertElementAt(cmp, index);
+        spatialIndexValid = false;
         setShouldCalcPreferredSize(true);
         if (isInitialized()) {
             cmp.initComponentImpl();
@@ -412,6 +427,7 @@ public class Container extends Component {
         layout.removeLayoutComponent(cmp);
         cmp.deinitializeImpl();
         components.removeElement(cmp);
+        spatialIndexValid = false;
         cmp.setParent(null);
         cmp.setShouldCalcPreferredSize(true);
         if (parentForm != null) {
@@ -478,6 +494,7 @@ public class Container extends Component {
      */
     public void revalidate() {
         setShouldCalcPreferredSize(true);
+        setShouldLayoutTree();
         Form root = getComponentForm();
         
         if (root != null) {
@@ -542,16 +559,39 @@ public class Container extends Component {
         }
     }
 
+    /**
+     * Marks this container and all the containers within it for layout, used
+     * when a layout must reach every descendant regardless of their invalidation
+     */
+    void setShouldLayoutTree() {
+        shouldLayout = true;
+        int count = getComponentCount();
+        for (int i = 0; i < count; i++) {
+            Component c = getComponentAt(i);
+            if (c instanceof Container) {
+                ((Container) c).setShouldLayoutTree();
+            }
+        }
+    }
+
     /**
      * Lays out the container
      */
     void doLayout() {
+        shouldLayout = false;
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
         layout.layoutContainer(this);
+        spatialIndexValid = false;
+        Display.getInstance().layoutPerformed();
         int count = getComponentCount();
         for (int i = 0; i < count; i++) {
             Component c = getComponentAt(i);
             if (c instanceof Container) {
-                ((Container) c).doLayout();
+                Container cnt = (Container) c;
+                if (cnt.shouldLayout || cnt.layoutWidth != cnt.getWidth() || cnt.layoutHeight != cnt.getHeight()) {
+                    cnt.doLayout();
+                }
             }else{
                 c.laidOut();
             }
@@ -766,8 +806,24 @@ public class Container extends Component {
         int count = getComponentCount();
         boolean overlaps = getLayout().isOverlapSupported();
         Component component = null;
-        for (int i = count - 1; i >= 0; i--) {
-            Component cmp = getComponentAt(i);
+
+        // the index yields the candidates in ascending order so the children are
+        // visited in the same order as the linear scan
+        SpatialIndex index = getSpatialIndex();
+        int start = 0;
+        int end = count;
+        if (index != null) {
+            int cell = index.cellAt(x - getAbsoluteX(), y - getAbsoluteY());
+            start = index.getStart(cell);
+            end = index.getEnd(cell);
+        }
+        for (int iter = end - 1; iter >= start; iter--) {
+            Component cmp;
+            if (index != null) {
+                cmp = getComponentAt(index.getEntry(iter));
+            } else {
+                cmp = getComponentAt(iter);
+            }
             if (cmp.contains(x, y)) {
                 component = cmp;
                 if (!overlaps && component.isFocusable()) {
@@ -790,6 +846,48 @@ public class Container extends Component {
         return null;
     }
 
+    /**
+     * Indicates whether hit testing in getComponentAt(x, y) should use a grid
+     * index over the bounds of the children rather than testing every child.
+     * The index is rebuilt lazily after the children are laid out or moved,
+     * this is useful for containers with many children on touch devices.
+     * 
+     * @param spatialIndexEnabled true to index the children of this container
+     */
+    public void setSpatialIndexEnabled(boolean spatialIndexEnabled) {
+        this.spatialIndexEnabled = spatialIndexEnabled;
+        spatialIndex = null;
+        spatialIndexValid = false;
+    }
+
+    /**
+     * Indicates whether hit testing in getComponentAt(x, y) uses a grid
+     * index over the bounds of the children
+     * 
+     * @return true if the children of this container are indexed
+     */
+    public boolean isSpatialIndexEnabled() {
+        return spatialIndexEnabled;
+    }
+
+    /**
+     * Invoked when the bounds of a child change outside of a layout
+     */
+    void childBoundsChanged() {
+        spatialIndexValid = false;
+    }
+
+    private SpatialIndex getSpatialIndex() {
+        if (!spatialIndexEnabled || getComponentCount() < SPATIAL_INDEX_THRESHOLD) {
+            return null;
+        }
+        if (!spatialIndexValid) {
+            spatialIndex = SpatialIndex.build(this);
+            spatialIndexValid = true;
+        }
+        return spatialIndex;
+    }
+
     /**
      * @inheritDoc
      */
@@ -24,11 +24,6 @@
  */
 package com.sun.lwuit;
 
-import java.lang.ref.WeakReference;
-import java.util.Hashtable;
-
-
-
 /**
  * Implements a bitmap font that uses an image and sets of offsets to draw a font
  * with a given character set.
@@ -37,11 +32,10 @@ import java.util.Hashtable;
  */
 class CustomFont extends Font {
     /**
-     * Keep two colors in cache by default to allow faster selection colors
+     * Charsets spanning a range of up to this many characters use a direct mapped
+     * lookup table, larger ranges use a sorted table with a binary search
      */
-    private static final int COLOR_CACHE_SIZE = 20;
-    
-    private Hashtable colorCache = new Hashtable();
+    private static final int DIRECT_TABLE_LIMIT = 1024;
 
     private String charsets;
     private int color;
@@ -65,19 +59,33 @@ class CustomFont extends Font {
 
     private int imageWidth;
     private int imageHeight;
-    private WeakReference imageArrayRef;
-    
+
+    /**
+     * Maps a character to its index within the charset, either directly using the
+     * character value minus the first character or using a binary search on the
+     * sorted characters
+     */
+    private short[] glyphTable;
+    private char firstChar;
+    private char[] sortedChars;
+
+    /**
+     * Counters for the lookups of tinted versions of the font bitmap
+     */
+    private int tintHits;
+    private int tintMisses;
     
+    /**
+     * Returns the alpha mask of the font bitmap, the array is cached in the image cache
+     */
     private int[] getImageArray() {
-        if(imageArrayRef != null) {
-            int[] a = (int[])imageArrayRef.get();
-            if(a != null) {
-                return a;
-            }
+        ImageCache.Key key = new ImageCache.Key(this, "mask", 0, 0);
+        int[] a = (int[])ImageCache.getInstance().get(key);
+        if(a == null) {
+            a = new int[imageWidth * imageHeight];
+            cache.getRGB(a, 0, 0, 0, imageWidth, imageHeight);
+            ImageCache.getInstance().put(key, a, a.length * 4);
         }
-        int[] a = cache.getRGBCached();
-        
-        imageArrayRef = new WeakReference(a);
         return a;
     }
     
@@ -111,14 +119,104 @@ class CustomFont extends Font {
             imageArray[iter] = ((imageArray[iter] & 0xff0000) << 8);
         }
         cache = Image.createImage(imageArray, imageWidth, imageHeight);
-        imageArrayRef = new WeakReference(imageArray);
+        ImageCache.getInstance().put(new ImageCache.Key(this, "mask", 0, 0), imageArray, imageArray.length * 4);
+        ImageCache.getInstance().put(new ImageCache.Key(this, "tint", 0, 0), cache, imageArray.length * 4);
+        initGlyphTable();
+    }
+
+    /**
+     * Builds the character to glyph index lookup table
+     */
+    private void initGlyphTable() {
+        int length = charsets.length();
+        if(length == 0) {
+            sortedChars = new char[0];
+            glyphTable = new short[0];
+            return;
+        }
+        char min = charsets.charAt(0);
+        char max = min;
+        for(int iter = 1 ; iter < length ; iter++) {
+            char c = charsets.charAt(iter);
+            if(c < min) {
+                min = c;
+            }
+            if(c > max) {
+                max = c;
+            }
+        }
+        if(max - min < DIRECT_TABLE_LIMIT) {
+            firstChar = min;
+            glyphTable = new short[max - min + 1];
+            for(int iter = 0 ; iter < glyphTable.length ; iter++) {
+                glyphTable[iter] = -1;
+            }
+            // go backwards so the first occurrence of a character wins like indexOf
+            for(int iter = length - 1 ; iter >= 0 ; iter--) {
+                glyphTable[charsets.charAt(iter) - min] = (short)iter;
+            }
+            return;
+        }
+
+        // insertion sort, the charset is only sorted once and is usually almost
+        // sorted already. Duplicates keep the first occurrence.
+        char[] chars = new char[length];
+        short[] glyphs = new short[length];
+        int count = 0;
+        for(int iter = 0 ; iter < length ; iter++) {
+            char c = charsets.charAt(iter);
+            int pos = count;
+            while(pos > 0 && chars[pos - 1] > c) {
+                pos--;
+            }
+            if(pos > 0 && chars[pos - 1] == c) {
+                continue;
+            }
+            System.arraycopy(chars, pos, chars, pos + 1, count - pos);
+            System.arraycopy(glyphs, pos, glyphs, pos + 1, count - pos);
+            chars[pos] = c;
+            glyphs[pos] = (short)iter;
+            count++;
+        }
+        sortedChars = new char[count];
+        glyphTable = new short[count];
+        System.arraycopy(chars, 0, sortedChars, 0, count);
+        System.arraycopy(glyphs, 0, glyphTable, 0, count);
+    }
+
+    /**
+     * Returns the index of the character within the charset or -1 if the character
+     * isn't a part of this font
+     */
+    private int glyphIndex(char c) {
+        if(sortedChars == null) {
+            int i = c - firstChar;
+            if(i < 0 || i >= glyphTable.length) {
+                return -1;
+            }
+            return glyphTable[i];
+        }
+        int low = 0;
+        int high = sortedChars.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = sortedChars[mid];
+            if(midChar < c) {
+                low = mid + 1;
+            } else if(midChar > c) {
+                high = mid - 1;
+            } else {
+                return glyphTable[mid];
+            }
+        }
+        return -1;
     }
     
     /**
      * @inheritDoc
      */
     public int charWidth(char ch) {
-        int i = charsets.indexOf(ch);
+        int i = glyphIndex(ch);
         if(i < 0) {
             return 0;
         }
@@ -132,47 +230,66 @@ class CustomFont extends Font {
         return imageHeight;
     }
 
-    private boolean checkCacheCurrentColor(int newColor) {
-        Integer currentColor = new Integer(color);
-        Integer newColorKey = new Integer(newColor);
-        if(colorCache.get(currentColor) == null){
-            colorCache.put(currentColor, new WeakReference(cache));
+    /**
+     * @inheritDoc
+     */
+    public int getTintHits() {
+        return tintHits;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getTintMisses() {
+        return tintMisses;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void resetTintStatistics() {
+        tintHits = 0;
+        tintMisses = 0;
+    }
+    
+    private void initColor(Graphics g) {
+        int newColor = g.getColor() & 0xffffff;
+        if(newColor == color) {
+            return;
         }
         color = newColor;
-        WeakReference newCache = (WeakReference)colorCache.get(newColorKey);
-        if(newCache != null) {
-            Image i = (Image)newCache.get();
-            if(i != null) {
-                cache = i;
-                if(colorCache.size() > COLOR_CACHE_SIZE) {
-                    // remove a random cache element
-                    colorCache.remove(colorCache.keys().nextElement());
-                }
-                return true;
-            }else{
-                colorCache.remove(newColorKey);
-            }
+        ImageCache.Key key = new ImageCache.Key(this, "tint", newColor, 0);
+        Image i = (Image)ImageCache.getInstance().get(key);
+        if(i != null) {
+            tintHits++;
+            cache = i;
+            return;
+        }
+        tintMisses++;
+        int[] mask = getImageArray();
+        int[] imageArray = new int[mask.length];
+        for(int iter = 0 ; iter < imageArray.length ; iter++) {
+            // apply the color to the alpha of the font image
+            imageArray[iter] = color | (mask[iter] & 0xff000000);
         }
-        if(colorCache.size() > COLOR_CACHE_SIZE) {
-            // remove a random cache element
-            colorCache.remove(colorCache.keys().nextElement());
-        }        
-        return false;
+        cache = Image.createImage(imageArray, imageWidth, imageHeight);
+        ImageCache.getInstance().put(key, cache, imageArray.length * 4);
     }
-    
-    private void initColor(Graphics g) {
-        int newColor = g.getColor();
-        
-        if(newColor != color && !checkCacheCurrentColor(newColor)) {
-            color = newColor & 0xffffff;
-            int[] imageArray = getImageArray();
-            for(int iter = 0 ; iter < imageArray.length ; iter++) {
-                // extract the red component from the font image
-                // shift the alpha 8 bits to the left
-                // apply the alpha to the image
-                imageArray[iter] = color | (imageArray[iter] & 0xff000000);
-            }
-            cache = Image.createImage(imageArray, imageWidth, imageHeight);
+
+    /**
+     * Draws a run of glyphs starting with the given glyph as a single image clipped
+     * to the given clip, the glyphs of the run must be adjacent within the font bitmap
+     */
+    private void drawGlyphRun(Graphics g, int firstGlyph, int x, int y, int width,
+            int clipX, int clipY, int clipWidth, int clipHeight) {
+        int x1 = Math.max(x, clipX);
+        int x2 = Math.min(x + width, clipX + clipWidth);
+        int y1 = Math.max(y, clipY);
+        int y2 = Math.min(y + imageHeight, clipY + clipHeight);
+        if(x2 > x1 && y2 > y1) {
+            // draw region is flaky on some devices, use setClip instead
+            g.setClip(x1, y1, x2 - x1, y2 - y1);
+            g.drawImage(cache, x - cutOffsets[firstGlyph], y);
         }
     }
     
@@ -180,23 +297,18 @@ class CustomFont extends Font {
      * @inheritDoc
      */
     void drawChar(Graphics g, char character, int x, int y) {
-        int clipX = g.getClipX();
-        int clipY = g.getClipY();
-        int clipWidth = g.getClipWidth();
-        int clipHeight = g.getClipHeight();
-
-        int i = charsets.indexOf(character);
+        int i = glyphIndex(character);
         if(i > -1) {
             initColor(g);
-            
-            // draw region is flaky on some devices, use setClip instead
-            g.clipRect(x, y, charWidth[i], imageHeight);
-            g.drawImage(cache, x - cutOffsets[i], y);
-            //g.drawRegion(cache, cutOffsets[i], 0, charWidth[i], imageHeight, x, y);
-        }
+            int clipX = g.getClipX();
+            int clipY = g.getClipY();
+            int clipWidth = g.getClipWidth();
+            int clipHeight = g.getClipHeight();
+            drawGlyphRun(g, i, x, y, charWidth[i], clipX, clipY, clipWidth, clipHeight);
 
-        // restore the clip
-        g.setClip(clipX, clipY, clipWidth, clipHeight);
+            // restore the clip
+            g.setClip(clipX, clipY, clipWidth, clipHeight);
+        }
     }
 
     /**
@@ -211,10 +323,22 @@ class CustomFont extends Font {
                 imageArray[iter] = ((alpha << 24) & 0xff000000) | color;
             }
         }
+
+        // the tinted bitmaps are stale now, rebuild the current one from the mask
+        ImageCache.getInstance().removeOwner(this);
+        ImageCache.getInstance().put(new ImageCache.Key(this, "mask", 0, 0), imageArray, imageArray.length * 4);
+        int[] tinted = new int[imageArray.length];
+        for(int iter = 0 ; iter < tinted.length ; iter++) {
+            tinted[iter] = color | (imageArray[iter] & 0xff000000);
+        }
+        cache = Image.createImage(tinted, imageWidth, imageHeight);
+        ImageCache.getInstance().put(new ImageCache.Key(this, "tint", color, 0), cache, tinted.length * 4);
     }
 
     /**
      * Override this frequently used method for a slight performance boost...
+     * Glyphs that are adjacent within the font bitmap are drawn together with a
+     * single clip and the clip is only restored once at the end.
      * 
      * @param g the component graphics
      * @param data the chars to draw
@@ -224,28 +348,47 @@ class CustomFont extends Font {
      * @param y the y coordinate to draw the chars
      */
     void drawChars(Graphics g, char[] data, int offset, int length, int x, int y) {
-        initColor(g);
         int clipX = g.getClipX();
         int clipY = g.getClipY();
         int clipWidth = g.getClipWidth();
         int clipHeight = g.getClipHeight();
 
         if(clipY <= y + getHeight() && clipY + clipHeight >= y) {
-            char c;
-            for ( int i = 0; i < length; i++ ) {
-                c = data[offset+i];
-                int position = charsets.indexOf(c);
+            initColor(g);
+            int clipRight = clipX + clipWidth;
+            int runGlyph = -1;
+            int runX = x;
+            int runWidth = 0;
+            int end = offset + length;
+            for(int i = offset ; i < end ; i++) {
+                int position = glyphIndex(data[i]);
                 if(position < 0) {
                     continue;
                 }
-                // draw region is flaky on some devices, use setClip instead
-                g.clipRect(x, y, charWidth[position], imageHeight);
-                if(g.getClipWidth() > 0 && g.getClipHeight() > 0) {
-                    g.drawImage(cache, x - cutOffsets[position], y);
+                int w = charWidth[position];
+                if(runGlyph > -1) {
+                    if(cutOffsets[position] == cutOffsets[runGlyph] + runWidth) {
+                        // the glyph follows the run within the bitmap, extend the run
+                        runWidth += w;
+                        x += w;
+                        continue;
+                    }
+                    drawGlyphRun(g, runGlyph, runX, y, runWidth, clipX, clipY, clipWidth, clipHeight);
                 }
-                x += charWidth[position];
-                g.setClip(clipX, clipY, clipWidth, clipHeight);
+                if(x >= clipRight) {
+                    // the rest of the text is clipped
+                    runGlyph = -1;
+                    break;
+                }
+                runGlyph = position;
+                runX = x;
+                runWidth = w;
+                x += w;
+            }
+            if(runGlyph > -1) {
+                drawGlyphRun(g, runGlyph, runX, y, runWidth, clipX, clipY, clipWidth, clipHeight);
             }
+            g.setClip(clipX, clipY, clipWidth, clipHeight);
         }
     }
 
@@ -25,6 +25,7 @@
 package com.sun.lwuit;
 
 import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.animations.AnimationClock;
 import com.sun.lwuit.animations.CommonTransitions;
 import com.sun.lwuit.animations.Transition;
 import com.sun.lwuit.geom.Dimension;
@@ -106,6 +107,32 @@ public final class Display {
      * so a high/low FPS will have no effect then.
      */
     private int framerateLock = 20;
+
+    /**
+     * When enabled the EDT works in fixed frames, input is processed first then
+     * a slice of the serial calls followed by paint and animation. Work that doesn't
+     * fit within the budget of its phase is carried to the next frame.
+     */
+    private boolean frameScheduling;
+
+    /**
+     * The time in milliseconds allotted to input processing within a frame
+     */
+    private int inputBudget = 10;
+
+    /**
+     * The time in milliseconds allotted to serial calls within a frame
+     */
+    private int serialCallBudget = 10;
+
+    private long frameStart;
+    private int missedFrames;
+    private int deferredInputEvents;
+    private int deferredSerialCalls;
+
+    private int layoutCount;
+    private int frameLayoutCount;
+    private int maxFrameLayoutCount;
     
     /**
      * Light mode allows the UI to adapt and show less visual effects/lighter versions
@@ -143,6 +170,23 @@ public final class Display {
      */
     public static final int KEY_POUND = '#';
 
+    /**
+     * Priority of serial calls providing immediate user feedback, these are invoked
+     * before any other pending serial call
+     */
+    public static final int SERIAL_CALL_URGENT = 0;
+
+    /**
+     * The priority of serial calls submitted without an explicit priority
+     */
+    public static final int SERIAL_CALL_NORMAL = 1;
+
+    /**
+     * Priority of serial calls performing bulk updates, these are invoked after all
+     * other pending serial calls
+     */
+    public static final int SERIAL_CALL_BULK = 2;
+
     private static final Display INSTANCE = new Display();
     
     static int transitionDelay = -1;
@@ -155,7 +199,13 @@ public final class Display {
     /**
      * Contains the call serially pending elements
      */
-    private Vector pendingSerialCalls = new Vector();
+    private SerialCallQueue pendingSerialCalls = new SerialCallQueue();
+
+    private WorkerPool workerPool = new WorkerPool();
+
+    private int executedSerialCalls;
+    private long serialCallLatency;
+    private long maxSerialCallLatency;
     
     /**
      * This is the instance of the EDT used internally to indicate whether
@@ -210,7 +260,16 @@ public final class Display {
     /**
      * Events to broadcast on the EDT
      */
-    private Vector inputEvents = new Vector();
+    private InputEventQueue inputEvents = new InputEventQueue(64, 1);
+
+    /**
+     * The event being dispatched and the single point arrays handed to the form
+     * for pointer events, reused to avoid allocating per event
+     */
+    private int[] dispatchEvent = new int[4];
+    private int[] dispatchX = new int[1];
+    private int[] dispatchY = new int[1];
+    private int dispatchDepth;
 
     private boolean longPointerCharged;
     private int pointerX, pointerY;
@@ -419,6 +478,197 @@ public final class Display {
     public int getFrameRate() {
         return 1000 / framerateLock;
     }
+
+    /**
+     * Enables frame scheduling on the EDT, when enabled every pass of the EDT is a
+     * frame bound to the frame rate: input events are handled first within the input
+     * budget, serial calls are invoked within the serial call budget and painting/animation
+     * follows. Events and serial calls that don't fit within their budget are deferred to
+     * the next frame. This keeps the frame rate steady under a heavy load of input or serial calls.
+     *
+     * @param frameScheduling true to enable frame scheduling, false for the default behavior
+     * which processes all pending work on every pass
+     */
+    public void setFrameScheduling(boolean frameScheduling) {
+        this.frameScheduling = frameScheduling;
+    }
+
+    /**
+     * Indicates whether frame scheduling is enabled on the EDT
+     *
+     * @return true if frame scheduling is enabled
+     */
+    public boolean isFrameScheduling() {
+        return frameScheduling;
+    }
+
+    /**
+     * The time in milliseconds the EDT may spend processing input within a single frame
+     * when frame scheduling is enabled, at least one event is processed on every frame
+     *
+     * @param inputBudget time in milliseconds
+     */
+    public void setInputBudget(int inputBudget) {
+        this.inputBudget = inputBudget;
+    }
+
+    /**
+     * The time in milliseconds the EDT may spend processing input within a single frame
+     * when frame scheduling is enabled
+     *
+     * @return time in milliseconds
+     */
+    public int getInputBudget() {
+        return inputBudget;
+    }
+
+    /**
+     * The time in milliseconds the EDT may spend invoking serial calls within a single frame
+     * when frame scheduling is enabled, at least one call is invoked on every frame
+     *
+     * @param serialCallBudget time in milliseconds
+     */
+    public void setSerialCallBudget(int serialCallBudget) {
+        this.serialCallBudget = serialCallBudget;
+    }
+
+    /**
+     * The time in milliseconds the EDT may spend invoking serial calls within a single frame
+     * when frame scheduling is enabled
+     *
+     * @return time in milliseconds
+     */
+    public int getSerialCallBudget() {
+        return serialCallBudget;
+    }
+
+    /**
+     * Returns the number of frames that took longer than the frame rate allows since
+     * frame scheduling was enabled or the statistics were reset
+     *
+     * @return number of missed frames
+     */
+    public int getMissedFrames() {
+        return missedFrames;
+    }
+
+    /**
+     * Returns the number of times an input event was deferred to a following frame
+     * since the statistics were reset
+     *
+     * @return number of deferred input events
+     */
+    public int getDeferredInputEvents() {
+        return deferredInputEvents;
+    }
+
+    /**
+     * Returns the number of times a serial call was deferred to a following frame
+     * since the statistics were reset
+     *
+     * @return number of deferred serial calls
+     */
+    public int getDeferredSerialCalls() {
+        return deferredSerialCalls;
+    }
+
+    /**
+     * Returns the number of serial calls invoked since the statistics were reset
+     *
+     * @return number of serial calls
+     */
+    public int getExecutedSerialCalls() {
+        return executedSerialCalls;
+    }
+
+    /**
+     * Returns the average time in milliseconds between the submission of a serial
+     * call and the start of its execution since the statistics were reset
+     *
+     * @return the average latency in milliseconds
+     */
+    public int getAverageSerialCallLatency() {
+        if(executedSerialCalls == 0) {
+            return 0;
+        }
+        return (int)(serialCallLatency / executedSerialCalls);
+    }
+
+    /**
+     * Returns the longest time in milliseconds between the submission of a serial
+     * call and the start of its execution since the statistics were reset
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public int getMaxSerialCallLatency() {
+        return (int)maxSerialCallLatency;
+    }
+
+    /**
+     * Returns the number of serial calls that replaced a pending call submitted
+     * with the same key since the statistics were reset
+     *
+     * @return number of coalesced serial calls
+     * @see #callSeriallyCoalesced(java.lang.Object, java.lang.Runnable)
+     */
+    public int getCoalescedSerialCalls() {
+        return pendingSerialCalls.getCoalesced();
+    }
+
+    /**
+     * Returns the number of containers laid out since the statistics were reset
+     *
+     * @return number of container layouts
+     */
+    public int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * Returns the largest number of containers laid out within a single iteration
+     * of the EDT since the statistics were reset, this is useful to verify that a
+     * change in one component doesn't cause the entire form to be laid out
+     *
+     * @return number of container layouts
+     */
+    public int getMaxFrameLayoutCount() {
+        return maxFrameLayoutCount;
+    }
+
+    /**
+     * Resets the missed frame, deferred work and layout counters
+     */
+    public void resetFrameStatistics() {
+        missedFrames = 0;
+        deferredInputEvents = 0;
+        deferredSerialCalls = 0;
+        executedSerialCalls = 0;
+        serialCallLatency = 0;
+        maxSerialCallLatency = 0;
+        pendingSerialCalls.resetStatistics();
+        layoutCount = 0;
+        frameLayoutCount = 0;
+        maxFrameLayoutCount = 0;
+        AnimationClock.resetStatistics();
+        synchronized(lock) {
+            inputEvents.resetStatistics();
+        }
+    }
+
+    /**
+     * Invoked by a container whenever it is laid out
+     */
+    void layoutPerformed() {
+        layoutCount++;
+        frameLayoutCount++;
+    }
+
+    private void endFrameLayoutCount() {
+        if(frameLayoutCount > maxFrameLayoutCount) {
+            maxFrameLayoutCount = frameLayoutCount;
+        }
+        frameLayoutCount = 0;
+    }
         
     /**
      * Returns true if we are currently in the event dispatch thread.
@@ -447,13 +697,63 @@ public final class Display {
      * the paint and key handling events 
      */
     public void callSerially(Runnable r){
-        synchronized(lock) {
-            pendingSerialCalls.addElement(r);
-            lock.notify();
+        callSerially(r, SERIAL_CALL_NORMAL);
+    }
+
+    /**
+     * Causes the runnable to be invoked on the event dispatch thread with the given
+     * priority. Urgent calls are invoked before all other pending calls and bulk
+     * calls after them, calls of the same priority are invoked in submission order.
+     * This method returns immediately and will not wait for the serial call to occur
+     *
+     * @param r runnable (NOT A THREAD!) that will be invoked on the EDT serial to
+     * the paint and key handling events
+     * @param priority one of SERIAL_CALL_URGENT, SERIAL_CALL_NORMAL or SERIAL_CALL_BULK
+     */
+    public void callSerially(Runnable r, int priority){
+        addSerialCall(r, priority, null);
+    }
+
+    /**
+     * Causes the runnable to be invoked on the event dispatch thread unless a
+     * call submitted with an equal key is still pending, in which case that call
+     * invokes the given runnable instead of its own. This is useful for threads
+     * that post frequent updates of the same state where only the latest update
+     * matters. This method returns immediately and will not wait for the serial
+     * call to occur
+     *
+     * @param key identifies the update, compared using equals
+     * @param r runnable (NOT A THREAD!) that will be invoked on the EDT serial to
+     * the paint and key handling events
+     */
+    public void callSeriallyCoalesced(Object key, Runnable r){
+        addSerialCall(r, SERIAL_CALL_NORMAL, key);
+    }
+
+    private void addSerialCall(Runnable r, int priority, Object key) {
+        if(priority < SERIAL_CALL_URGENT || priority > SERIAL_CALL_BULK) {
+            throw new IllegalArgumentException("Illegal priority: " + priority);
+        }
+        // only the first call added to an empty queue needs to wake up the EDT,
+        // the EDT checks the queue while holding the lock before it sleeps
+        if(pendingSerialCalls.add(r, priority, key)) {
+            synchronized(lock) {
+                lock.notify();
+            }
         }
     }
     
     
+    /**
+     * Returns the pool of worker threads used to perform background tasks whose
+     * results are delivered on the event dispatch thread
+     *
+     * @return the worker pool
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
     /**
      * Identical to callSerially with the added benefit of waiting for the Runnable method to complete.
      * 
@@ -502,6 +802,15 @@ public final class Display {
     
 
     private void paintTransitionAnimation() {
+        AnimationClock.beginFrame();
+        try {
+            paintTransitionFrame();
+        } finally {
+            AnimationClock.endFrame();
+        }
+    }
+
+    private void paintTransitionFrame() {
         Animation ani = (Animation) animationQueue.elementAt(0);
         if (!ani.animate()) {
             animationQueue.removeElementAt(0);
@@ -607,9 +916,14 @@ public final class Display {
      * Implementation of the event dispatch loop content
      */
     void edtLoopImpl() {
+        if(frameScheduling) {
+            edtFrameImpl();
+            return;
+        }
         try {
-            // transitions shouldn't be bound by framerate
-            if(animationQueue == null || animationQueue.size() == 0) {
+            // transitions shouldn't be bound by framerate, a transition is
+            // suspended while the application is hidden so events are processed
+            if(animationQueue == null || animationQueue.size() == 0 || AnimationClock.isPaused()) {
                 // prevents us from waking up the EDT too much and 
                 // thus exhausting the systems resources. The + 1
                 // prevents us from ever waiting 0 milliseconds which
@@ -629,11 +943,10 @@ public final class Display {
         }
 
         long currentTime = System.currentTimeMillis();
+        AnimationClock.beginFrame();
 
-        while(inputEvents.size() > 0) {
-            int[] i = (int[])inputEvents.elementAt(0);
-            inputEvents.removeElementAt(0);
-            handleEvent(i);
+        while(nextInputEvent()) {
+            handleEvent(dispatchEvent);
         }
 
         lwuitGraphics.setGraphics(impl.getNativeGraphics());
@@ -658,11 +971,80 @@ public final class Display {
             current.longPointerPress(pointerX, pointerY);
         }
         processSerialCalls();
+        endFrameLayoutCount();
+        AnimationClock.endFrame();
         time = System.currentTimeMillis() - currentTime;
     }
+
+    /**
+     * Implementation of the event dispatch loop content when frame scheduling
+     * is enabled
+     */
+    private void edtFrameImpl() {
+        if(animationQueue != null && animationQueue.size() > 0 && !AnimationClock.isPaused()) {
+            // transitions shouldn't be bound by the frame budget
+            paintTransitionAnimation();
+            return;
+        }
+        try {
+            // wait for the next frame, input events wake us up immediately
+            // since they should be handled as soon as possible
+            synchronized(lock){
+                long wait = frameStart + framerateLock - System.currentTimeMillis();
+                while(wait > 0 && inputEvents.size() == 0 && lwuitRunning) {
+                    lock.wait(wait);
+                    wait = frameStart + framerateLock - System.currentTimeMillis();
+                }
+            }
+        } catch(InterruptedException ignor) {
+            ignor.printStackTrace();
+        }
+
+        frameStart = System.currentTimeMillis();
+        long frameDeadline = frameStart + framerateLock;
+        AnimationClock.beginFrame();
+
+        long inputDeadline = frameStart + inputBudget;
+        while(nextInputEvent()) {
+            handleEvent(dispatchEvent);
+            if(System.currentTimeMillis() >= inputDeadline) {
+                deferredInputEvents += inputEvents.size();
+                break;
+            }
+        }
+
+        processSerialCalls(Math.min(System.currentTimeMillis() + serialCallBudget, frameDeadline));
+
+        lwuitGraphics.setGraphics(impl.getNativeGraphics());
+        impl.paintDirty();
+
+        Form current = impl.getCurrentForm();
+        current.repaintAnimations();
+
+        long t = System.currentTimeMillis();
+        if(keyRepeatCharged && nextKeyRepeatEvent <= t) {
+            current.keyRepeated(keyRepeatValue);
+            nextKeyRepeatEvent = t + keyRepeatNextIntervalTime;
+        }
+        if(longPressCharged && longPressInterval <= t - longKeyPressTime) {
+            longPressCharged = false;
+            current.longKeyPress(keyRepeatValue);
+        }
+        if(longPointerCharged && longPressInterval <= t - longKeyPressTime) {
+            longPointerCharged = false;
+            current.longPointerPress(pointerX, pointerY);
+        }
+        endFrameLayoutCount();
+        AnimationClock.endFrame();
+        t = System.currentTimeMillis();
+        if(t > frameDeadline) {
+            missedFrames++;
+        }
+        time = t - frameStart;
+    }
     
     boolean hasNoSerialCallsPending() {
-        return pendingSerialCalls.size() == 0;
+        return pendingSerialCalls.isEmpty();
     }
     
     /**
@@ -681,31 +1063,50 @@ public final class Display {
      * Used by the EDT to process all the calls submitted via call serially
      */
     void processSerialCalls() {
-        processingSerialCalls = true;
-        int size = pendingSerialCalls.size();
-        if(size > 0) {
-            Runnable[] array = new Runnable[size];
+        processSerialCalls(Long.MAX_VALUE);
+    }
 
-            // copy all elements to an array and remove them otherwise invokeAndBlock from
-            // within a callSerially() can cause an infinite loop...
-            for(int iter = 0 ; iter < size ; iter++) {
-                array[iter] = (Runnable)pendingSerialCalls.elementAt(iter);
-            }
+    /**
+     * Used by the EDT to process the calls submitted via call serially until the
+     * given deadline, calls that weren't invoked by the deadline remain pending
+     *
+     * @param deadline time in milliseconds after which no further call is invoked,
+     * at least one call is always invoked
+     */
+    private void processSerialCalls(long deadline) {
+        processingSerialCalls = true;
 
-            synchronized(lock) {
-                if(size == pendingSerialCalls.size()) {
-                    // this is faster
-                    pendingSerialCalls.removeAllElements();
-                } else {
-                    // this can occur if an element was added during the loop
-                    for(int iter = 0 ; iter < size ; iter++) {
-                        pendingSerialCalls.removeElementAt(0);
+        // detach all the pending calls otherwise invokeAndBlock from
+        // within a callSerially() can cause an infinite loop...
+        SerialCallQueue.Node first = pendingSerialCalls.takeAll();
+        if(first != null) {
+            SerialCallQueue.Node current = first;
+            long now = System.currentTimeMillis();
+            while(current != null) {
+                long latency = now - current.time;
+                executedSerialCalls++;
+                serialCallLatency += latency;
+                if(latency > maxSerialCallLatency) {
+                    maxSerialCallLatency = latency;
+                }
+                current.runnable.run();
+                current = current.next;
+                now = System.currentTimeMillis();
+                if(current != null && now >= deadline) {
+                    // push the remaining calls back to the queue in their original order
+                    int count = 0;
+                    for(SerialCallQueue.Node n = current ; n != null ; n = n.next) {
+                        count++;
                     }
+                    pendingSerialCalls.release(first, current);
+                    pendingSerialCalls.defer(current, count);
+                    deferredSerialCalls += count;
+                    first = null;
+                    break;
                 }
             }
-
-            for(int iter = 0 ; iter < size ; iter++) {
-                array[iter].run();
+            if(first != null) {
+                pendingSerialCalls.release(first, null);
             }
 
             // after finishing an event cycle there might be serial calls waiting
@@ -1004,39 +1405,71 @@ public final class Display {
         getImplementation().restoreMinimizedApplication();
     }
 
-    private void addInputEvent(int[] ev) {
+    private void addInputEvent(int type, int a, int b) {
         synchronized(lock) {
-            inputEvents.addElement(ev);
+            inputEvents.add(type, a, b);
             lock.notify();
         }
     }
 
     /**
-     * Creates a pointer event with the following properties
+     * Queues a pointer event, consecutive drag and hover events are merged into
+     * the latest position if the EDT hasn't dispatched the previous one yet. The
+     * drag path used to compute the drag speed records every event as it arrives
+     * so merging events doesn't affect the speed.
      */
-    private int[] createPointerEvent(int[] x, int[] y, int eventType) {
-        if(x.length == 1) {
-            return new int[] {eventType, x[0], y[0]};
+    private void addPointerEvent(int type, int[] x, int[] y) {
+        synchronized(lock) {
+            boolean drag = type == POINTER_DRAGGED || type == POINTER_HOVER;
+            if(drag) {
+                updateDragSpeedStatus(x[0], y[0]);
+            }
+            inputEvents.add(type, x, y, drag);
+            lock.notify();
         }
-        int[] arr = new int[1 + x.length * 2];
-        arr[0] = eventType;
-        int arrayOffset = 1;
-        for(int iter = 0 ; iter < x.length ; iter++) {
-            arr[arrayOffset] = x[iter];
-            arrayOffset++;
-            arr[arrayOffset] = y[iter];
-            arrayOffset++;
+    }
+
+    /**
+     * Takes the next input event into dispatchEvent
+     *
+     * @return false if there are no pending input events
+     */
+    private boolean nextInputEvent() {
+        synchronized(lock) {
+            if(dispatchEvent.length < inputEvents.getEventSize()) {
+                dispatchEvent = new int[inputEvents.getEventSize()];
+            }
+            return inputEvents.remove(dispatchEvent);
         }
-        return arr;
     }
 
+    /**
+     * Returns the number of input events waiting to be dispatched by the EDT
+     *
+     * @return number of pending input events
+     */
+    public int getInputQueueDepth() {
+        return inputEvents.size();
+    }
 
-    private int[] createKeyEvent(int keyCode, boolean pressed) {
-        if(pressed) {
-            return new int[] {KEY_PRESSED, keyCode};
-        } else {
-            return new int[] {KEY_RELEASED, keyCode};
-        }
+    /**
+     * Returns the largest number of input events that waited to be dispatched
+     * since the statistics were reset
+     *
+     * @return the maximum number of pending input events
+     */
+    public int getMaxInputQueueDepth() {
+        return inputEvents.getMaxSize();
+    }
+
+    /**
+     * Returns the number of drag and hover events merged into a pending event
+     * since the statistics were reset
+     *
+     * @return number of coalesced input events
+     */
+    public int getCoalescedInputEvents() {
+        return inputEvents.getCoalesced();
     }
     
     private int lastKeyPressed;
@@ -1050,7 +1483,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createKeyEvent(keyCode, true));
+        addInputEvent(KEY_PRESSED, keyCode, 0);
 
         // this solves a Sony Ericsson bug where on slider open/close someone "brilliant" chose
         // to send a keyPress with a -43/-44 keycode... Without ever sending a key release!
@@ -1079,7 +1512,7 @@ public final class Display {
             return;
         }
         keyReleasedSinceEdit = true;
-        addInputEvent(createKeyEvent(keyCode, false));
+        addInputEvent(KEY_RELEASED, keyCode, 0);
     }
 
     void keyRepeatedInternal(final int keyCode){
@@ -1096,7 +1529,7 @@ public final class Display {
             return;
         }
         longPointerCharged = false;
-        addInputEvent(createPointerEvent(x, y, POINTER_DRAGGED));
+        addPointerEvent(POINTER_DRAGGED, x, y);
     }
 
     /**
@@ -1109,7 +1542,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_HOVER));
+        addPointerEvent(POINTER_HOVER, x, y);
     }
 
 
@@ -1123,7 +1556,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_HOVER_RELEASED));
+        addPointerEvent(POINTER_HOVER_RELEASED, x, y);
     }
 
     /**
@@ -1140,7 +1573,7 @@ public final class Display {
         longKeyPressTime = System.currentTimeMillis();
         pointerX = x[0];
         pointerY = y[0];
-        addInputEvent(createPointerEvent(x, y, POINTER_PRESSED));
+        addPointerEvent(POINTER_PRESSED, x, y);
     }
     
     /**
@@ -1154,7 +1587,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_RELEASED));
+        addPointerEvent(POINTER_RELEASED, x, y);
     }
 
     /**
@@ -1173,22 +1606,23 @@ public final class Display {
             return;
         }
             
-        addInputEvent(createSizeChangedEvent(w, h));
-    }
-
-    private int[] createSizeChangedEvent(int w, int h) {
-        return new int[] {SIZE_CHANGED, w, h};
+        addInputEvent(SIZE_CHANGED, w, h);
     }
 
     public void hideNotify(){
         keyRepeatCharged = false;
         longPressCharged = false;
         longPointerCharged = false;
-        addInputEvent(new int[]{HIDE_NOTIFY});
+
+        // stop the animation clock immediately so animations don't advance while
+        // the application is hidden even if the EDT is busy
+        AnimationClock.pause();
+        addInputEvent(HIDE_NOTIFY, 0, 0);
     }
 
     public void showNotify(){
-        addInputEvent(new int[]{SHOW_NOTIFY});        
+        AnimationClock.resume();
+        addInputEvent(SHOW_NOTIFY, 0, 0);
     }
     
     
@@ -1204,10 +1638,10 @@ public final class Display {
         }
     }
 
-    private void updateDragSpeedStatus(int[] ev) {
+    private void updateDragSpeedStatus(int x, int y) {
             //save dragging input to calculate the dragging speed later
-            dragPathX[dragPathOffset] = pointerEvent(1, ev)[0];
-            dragPathY[dragPathOffset] = pointerEvent(2, ev)[0];
+            dragPathX[dragPathOffset] = x;
+            dragPathY[dragPathOffset] = y;
             dragPathTime[dragPathOffset] = System.currentTimeMillis();
             if (dragPathLength < PATHLENGTH) {
                 dragPathLength++;
@@ -1222,14 +1656,24 @@ public final class Display {
      * Invoked on the EDT to propagate the event
      */
     private void handleEvent(int[] ev) {
+        // a modal dialog shown by the handler dispatches events in a nested loop
+        dispatchDepth++;
+        try {
+            handleEventImpl(ev);
+        } finally {
+            dispatchDepth--;
+        }
+    }
+
+    private void handleEventImpl(int[] ev) {
         Form f = getCurrentUpcomingForm(true);
         
         switch(ev[0]) {
         case KEY_PRESSED:
-            f.keyPressed(ev[1]);
+            f.keyPressed(ev[2]);
             break;
         case KEY_RELEASED:
-            f.keyReleased(ev[1]);
+            f.keyReleased(ev[2]);
             break;
         case POINTER_PRESSED:
             f.pointerPressed(pointerEvent(1, ev), pointerEvent(2, ev));
@@ -1238,18 +1682,16 @@ public final class Display {
             f.pointerReleased(pointerEvent(1, ev), pointerEvent(2, ev));
             break;
         case POINTER_DRAGGED:
-            updateDragSpeedStatus(ev);
             f.pointerDragged(pointerEvent(1, ev), pointerEvent(2, ev));
             break;
         case POINTER_HOVER:
-            updateDragSpeedStatus(ev);
             f.pointerHover(pointerEvent(1, ev), pointerEvent(2, ev));
             break;
         case POINTER_HOVER_RELEASED:
             f.pointerHoverReleased(pointerEvent(1, ev), pointerEvent(2, ev));
             break;
         case SIZE_CHANGED:
-            f.sizeChangedInternal(ev[1], ev[2]);
+            f.sizeChangedInternal(ev[2], ev[3]);
             break;
         case HIDE_NOTIFY:
             f.hideNotify();
@@ -1260,10 +1702,25 @@ public final class Display {
         }
     }
     
+    /**
+     * Extracts the x (off == 1) or y (off == 2) coordinates of a pointer event,
+     * single point events reuse the same arrays unless they are dispatched in a
+     * nested loop while the outer handler might still use the arrays
+     */
     private int[] pointerEvent(int off, int[] event) {
-        int[] peX = new int[event.length / 2];
+        int points = event[1];
+        int[] peX;
+        if(points == 1 && dispatchDepth == 1) {
+            if(off == 1) {
+                peX = dispatchX;
+            } else {
+                peX = dispatchY;
+            }
+        } else {
+            peX = new int[points];
+        }
         int offset = 0;
-        for(int iter = off ; iter < event.length ; iter+=2 ) {
+        for(int iter = off + 1 ; offset < points ; iter+=2 ) {
             peX[offset] = event[iter];
             offset++;
         }
@@ -1275,8 +1732,10 @@ public final class Display {
      */
     boolean shouldEDTSleep() {
         Form current = impl.getCurrentForm();
-        return (current == null || (!current.hasAnimations())) &&
-                (animationQueue == null || animationQueue.size() == 0) &&
+        boolean animating = !AnimationClock.isPaused() &&
+                ((current != null && current.hasAnimations()) ||
+                (animationQueue != null && animationQueue.size() > 0));
+        return !animating &&
                 inputEvents.size() == 0 &&
                 (!impl.hasPendingPaints()) &&
                 hasNoSerialCallsPending() && !keyRepeatCharged 
@@ -1582,12 +2041,14 @@ public final class Display {
      */
     float getDragSpeed(boolean yAxis){
         float speed;
-        if(yAxis){
-            speed = impl.getDragSpeed(dragPathY, dragPathTime, dragPathOffset, dragPathLength);
-        }else{
-            speed = impl.getDragSpeed(dragPathX, dragPathTime, dragPathOffset, dragPathLength);
+        synchronized(lock) {
+            if(yAxis){
+                speed = impl.getDragSpeed(dragPathY, dragPathTime, dragPathOffset, dragPathLength);
+            }else{
+                speed = impl.getDragSpeed(dragPathX, dragPathTime, dragPathOffset, dragPathLength);
+            }
+            dragPathLength = 0;
         }
-        dragPathLength = 0;
         return speed;
     }
 
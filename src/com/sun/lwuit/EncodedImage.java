@@ -27,12 +27,17 @@ package com.sun.lwuit;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
+import java.util.Vector;
 
 /**
  * An image that only keeps the binary data of the source file used to load it
  * in permanent memory. This allows the bitmap to get collected while the binary
- * data remains, a weak reference is used for caching.
+ * data remains, the decoded bitmap is kept in the {@link ImageCache}.
+ * <p>In asynchronous decoding mode the dimensions of PNG, GIF and JPEG images are
+ * read from the image header and painting an image that isn't decoded yet draws
+ * the placeholder image instead while the image is decoded by the worker pool of
+ * the display. Once decoding completes only the components that painted the
+ * placeholder are repainted.
  *
  * @author Shai Almog
  */
@@ -42,13 +47,115 @@ public class EncodedImage extends Image {
     private int height = -1;
     private boolean opaqueChecked = false;
     private boolean opaque = false;
-    private WeakReference cache;
+    private ImageCache.Key cacheKey = new ImageCache.Key(this, "decoded", 0, 0);
+
+    private static boolean defaultAsyncDecoding;
+    private static Image placeholder;
+    private static int maxConcurrentDecodes = 2;
+    private static int activeDecodes;
+    private static Vector waitingDecodes = new Vector();
+
+    private boolean asyncDecoding = defaultAsyncDecoding;
+    private boolean headerChecked;
+    private int locks;
+
+    /**
+     * The pending decode request, only accessed on the EDT
+     */
+    private Decoder decoder;
     
     private EncodedImage(byte[] imageData) {
         super(null);
         this.imageData = imageData;
     }
 
+    /**
+     * Indicates whether images created from now on decode asynchronously by default
+     *
+     * @param async true to decode new images asynchronously
+     */
+    public static void setDefaultAsyncDecoding(boolean async) {
+        defaultAsyncDecoding = async;
+    }
+
+    /**
+     * Indicates whether images created from now on decode asynchronously by default
+     *
+     * @return true if new images decode asynchronously
+     */
+    public static boolean isDefaultAsyncDecoding() {
+        return defaultAsyncDecoding;
+    }
+
+    /**
+     * Sets the image drawn centered in the bounds of an image that is still being
+     * decoded asynchronously, when null nothing is drawn
+     *
+     * @param placeholderImage the placeholder image or null
+     */
+    public static void setAsyncPlaceholder(Image placeholderImage) {
+        placeholder = placeholderImage;
+    }
+
+    /**
+     * Returns the image drawn in the bounds of an image that is still being decoded
+     *
+     * @return the placeholder image or null
+     */
+    public static Image getAsyncPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * Sets the maximum number of images decoded concurrently in the background,
+     * further requests wait until a decode completes
+     *
+     * @param max the number of concurrent decodes, 1 or greater
+     */
+    public static void setMaxConcurrentDecodes(int max) {
+        if(max < 1) {
+            throw new IllegalArgumentException("max must be at least 1");
+        }
+        maxConcurrentDecodes = max;
+    }
+
+    /**
+     * Returns the maximum number of images decoded concurrently in the background
+     *
+     * @return the number of concurrent decodes
+     */
+    public static int getMaxConcurrentDecodes() {
+        return maxConcurrentDecodes;
+    }
+
+    /**
+     * Indicates whether painting this image before it is decoded draws a placeholder
+     * and decodes the image in the background instead of decoding it on the EDT
+     *
+     * @param asyncDecoding true to decode asynchronously
+     */
+    public void setAsyncDecoding(boolean asyncDecoding) {
+        this.asyncDecoding = asyncDecoding;
+    }
+
+    /**
+     * Indicates whether this image is decoded asynchronously
+     *
+     * @return true if the image is decoded asynchronously
+     */
+    public boolean isAsyncDecoding() {
+        return asyncDecoding;
+    }
+
+    /**
+     * Returns true if the decoded image is currently available without decoding
+     *
+     * @return true if the image is decoded
+     */
+    public boolean isDecoded() {
+        return ImageCache.getInstance().peek(cacheKey) != null;
+    }
+
     /**
      * Returns the byte array data backing the image allowing the image to be stored
      * and discarded completely from RAM.
@@ -92,17 +199,182 @@ public class EncodedImage extends Image {
     }
     
     private Image getInternal() {
-        if(cache != null) {
-            Image i = (Image)cache.get();
-            if(i != null) {
-                return i;
-            }
+        ImageCache c = ImageCache.getInstance();
+        Image i = (Image)c.get(cacheKey);
+        if(i != null) {
+            return i;
         }
-        Image i = Image.createImage(imageData, 0, imageData.length);
-        cache = new WeakReference(i);
+        i = Image.createImage(imageData, 0, imageData.length);
+        decoded(i);
         return i;
     }
 
+    private void decoded(Image i) {
+        // scaled versions of the decoded image are cached against the encoded
+        // image so they survive the eviction of the decoded image
+        i.setScaleCacheOwner(this);
+        width = i.getWidth();
+        height = i.getHeight();
+        ImageCache c = ImageCache.getInstance();
+
+        // a replaced entry keeps its pins, the locks are only applied to a new entry
+        boolean replaced = c.peek(cacheKey) != null;
+        c.put(cacheKey, i, ImageCache.estimateSize(width, height));
+        if(!replaced) {
+            for(int iter = 0 ; iter < locks ; iter++) {
+                c.pin(cacheKey);
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void lock() {
+        if(asyncDecoding && Display.getInstance().isEdt()) {
+            locks++;
+            if(isDecoded()) {
+                ImageCache.getInstance().pin(cacheKey);
+            } else {
+                // the image is pinned once decoding completes
+                requestDecode();
+            }
+            return;
+        }
+        getInternal();
+        locks++;
+        ImageCache.getInstance().pin(cacheKey);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void unlock() {
+        if(locks > 0) {
+            locks--;
+            ImageCache.getInstance().unpin(cacheKey);
+        }
+    }
+
+    /**
+     * Queues the image for decoding in the background unless a request is already
+     * pending, invoked on the EDT
+     */
+    private void requestDecode() {
+        if(decoder != null) {
+            if(Component.paintingComponent != null && !decoder.components.contains(Component.paintingComponent)) {
+                decoder.components.addElement(Component.paintingComponent);
+            }
+            return;
+        }
+        decoder = new Decoder();
+        if(Component.paintingComponent != null) {
+            decoder.components.addElement(Component.paintingComponent);
+        }
+        if(activeDecodes < maxConcurrentDecodes) {
+            startDecode(decoder);
+        } else {
+            waitingDecodes.addElement(decoder);
+        }
+    }
+
+    private static void startDecode(Decoder d) {
+        activeDecodes++;
+        if(!Display.getInstance().getWorkerPool().submit(d)) {
+            // the worker pool is saturated, decode on the EDT
+            Object result;
+            try {
+                result = d.execute();
+            } catch(Throwable err) {
+                // releases the decode slot just like a failed background decode,
+                // decoding large images on a device might run out of memory
+                if(err instanceof Exception) {
+                    d.failed((Exception)err);
+                } else {
+                    d.failed(new RuntimeException(err.toString()));
+                }
+                return;
+            }
+            d.completed(result);
+        }
+    }
+
+    private static void startWaitingDecodes() {
+        while(activeDecodes < maxConcurrentDecodes && waitingDecodes.size() > 0) {
+            Decoder d = (Decoder)waitingDecodes.elementAt(0);
+            waitingDecodes.removeElementAt(0);
+            startDecode(d);
+        }
+    }
+
+    /**
+     * Reads the dimensions of PNG, GIF and JPEG images from the image header
+     */
+    private void readHeader() {
+        headerChecked = true;
+        byte[] d = imageData;
+        int len = d.length;
+        if(len >= 24 && (d[0] & 0xff) == 0x89 && d[1] == 'P' && d[2] == 'N' && d[3] == 'G') {
+            width = readInt(d, 16);
+            height = readInt(d, 20);
+            return;
+        }
+        if(len >= 10 && d[0] == 'G' && d[1] == 'I' && d[2] == 'F') {
+            width = (d[6] & 0xff) | ((d[7] & 0xff) << 8);
+            height = (d[8] & 0xff) | ((d[9] & 0xff) << 8);
+            return;
+        }
+        if(len >= 4 && (d[0] & 0xff) == 0xff && (d[1] & 0xff) == 0xd8) {
+            int pos = 2;
+            while(pos + 9 < len) {
+                if((d[pos] & 0xff) != 0xff) {
+                    return;
+                }
+                int marker = d[pos + 1] & 0xff;
+                if(marker == 0xff) {
+                    // fill byte
+                    pos++;
+                    continue;
+                }
+                if(marker == 0x01 || (marker >= 0xd0 && marker <= 0xd9)) {
+                    // markers without a payload
+                    pos += 2;
+                    continue;
+                }
+                if(marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                    height = ((d[pos + 5] & 0xff) << 8) | (d[pos + 6] & 0xff);
+                    width = ((d[pos + 7] & 0xff) << 8) | (d[pos + 8] & 0xff);
+                    return;
+                }
+                pos += 2 + (((d[pos + 2] & 0xff) << 8) | (d[pos + 3] & 0xff));
+            }
+        }
+    }
+
+    private static int readInt(byte[] d, int off) {
+        return ((d[off] & 0xff) << 24) | ((d[off + 1] & 0xff) << 16) |
+                ((d[off + 2] & 0xff) << 8) | (d[off + 3] & 0xff);
+    }
+
+    /**
+     * Makes sure the width and height are known, in asynchronous mode they are
+     * read from the header when possible
+     */
+    private void checkSize() {
+        if(width > -1 && height > -1) {
+            return;
+        }
+        if(asyncDecoding && !headerChecked) {
+            readHeader();
+            if(width > 0 && height > 0) {
+                return;
+            }
+            width = -1;
+            height = -1;
+        }
+        getInternal();
+    }
+
     /**
      * Creates an image from the input stream 
      * 
@@ -153,10 +425,7 @@ public class EncodedImage extends Image {
      * @inheritDoc
      */
     public int getWidth() {
-        if(width > -1) {
-            return width;
-        }
-        width = getInternal().getWidth();
+        checkSize();
         return width;
     }
 
@@ -164,10 +433,7 @@ public class EncodedImage extends Image {
      * @inheritDoc
      */
     public int getHeight() {
-        if(height > -1) {
-            return height;
-        }
-        height = getInternal().getHeight();
+        checkSize();
         return height;
     }
 
@@ -175,6 +441,25 @@ public class EncodedImage extends Image {
      * @inheritDoc
      */
     protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
+        if(asyncDecoding && Display.getInstance().isEdt()) {
+            // images whose header can't be read are decoded synchronously
+            checkSize();
+            Image i = (Image)ImageCache.getInstance().get(cacheKey);
+            if(i == null) {
+                requestDecode();
+                if(decoder != null) {
+                    Image p = placeholder;
+                    if(p != null) {
+                        p.drawImage(g, nativeGraphics, x + (getWidth() - p.getWidth()) / 2,
+                                y + (getHeight() - p.getHeight()) / 2);
+                    }
+                    return;
+                }
+                i = getInternal();
+            }
+            i.drawImage(g, nativeGraphics, x, y);
+            return;
+        }
         getInternal().drawImage(g, nativeGraphics, x, y);
     }
 
@@ -255,4 +540,47 @@ public class EncodedImage extends Image {
         opaque = getInternal().isOpaque();
         return opaque;
     }
+
+    /**
+     * Decodes the image on a worker thread, duplicate requests for the image are
+     * merged into the pending decoder by adding the painting component
+     */
+    private class Decoder extends BackgroundTask {
+        Vector components = new Vector();
+
+        protected Object execute() {
+            return Image.createImage(imageData, 0, imageData.length);
+        }
+
+        protected void completed(Object result) {
+            activeDecodes--;
+            decoder = null;
+
+            // the image might have been decoded synchronously in the meantime
+            if(!isDecoded()) {
+                decoded((Image)result);
+            }
+            repaintComponents();
+            startWaitingDecodes();
+        }
+
+        protected void failed(Exception err) {
+            err.printStackTrace();
+            activeDecodes--;
+            decoder = null;
+
+            // the next paint decodes synchronously and reports the error to the caller
+            asyncDecoding = false;
+            repaintComponents();
+            startWaitingDecodes();
+        }
+
+        private void repaintComponents() {
+            int size = components.size();
+            for(int iter = 0 ; iter < size ; iter++) {
+                ((Component)components.elementAt(iter)).repaint();
+            }
+            components.removeAllElements();
+        }
+    }
 }
@@ -121,6 +121,12 @@ public class Font {
 
     private Object font;
 
+    /**
+     * Widths of the latin 1 characters measured so far, -1 for characters
+     * that weren't measured yet
+     */
+    private short[] charWidthCache;
+
     /**
      * Creates a new Font
      */
@@ -305,6 +311,30 @@ public class Font {
     public int charWidth(char ch) {
         return Display.getInstance().getImplementation().charWidth(font, ch);
     }
+
+    /**
+     * Returns the width of the character using a per font cache for the latin 1
+     * range, used by text layout which measures every character individually
+     */
+    int charWidthCached(char ch) {
+        if(ch > 0xff) {
+            return charWidth(ch);
+        }
+        short[] widths = charWidthCache;
+        if(widths == null) {
+            widths = new short[256];
+            for(int iter = 0 ; iter < widths.length ; iter++) {
+                widths[iter] = -1;
+            }
+            charWidthCache = widths;
+        }
+        int w = widths[ch];
+        if(w < 0) {
+            w = charWidth(ch);
+            widths[ch] = (short)w;
+        }
+        return w;
+    }
     
     /**
      * Return the total height of the font
@@ -399,6 +429,35 @@ public class Font {
         return null;
     }
 
+    /**
+     * Returns the number of times a bitmap font found the glyphs tinted in the
+     * drawing color in the image cache since the statistics were reset.
+     * Will return 0 for system fonts.
+     *
+     * @return number of tint cache hits
+     */
+    public int getTintHits() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of times a bitmap font had to tint its glyphs in the
+     * drawing color since the statistics were reset.
+     * Will return 0 for system fonts.
+     *
+     * @return number of tint cache misses
+     */
+    public int getTintMisses() {
+        return 0;
+    }
+
+    /**
+     * Resets the tint cache hit and miss counters of a bitmap font, does nothing
+     * for system fonts
+     */
+    public void resetTintStatistics() {
+    }
+
     /**
      * Indicates whether bitmap fonts should be enabled by default when loading or
      * the fallback system font should be used instead. This allows easy toggling
@@ -25,6 +25,7 @@
 package com.sun.lwuit;
 
 import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.animations.AnimationClock;
 import com.sun.lwuit.animations.CommonTransitions;
 import com.sun.lwuit.geom.Rectangle;
 import com.sun.lwuit.geom.Dimension;
@@ -106,6 +107,17 @@ public class Form extends Container {
      */
     private Vector internalAnimatableComponents;
 
+    /**
+     * Maps animations limited to a frame rate to a long array containing the
+     * interval between ticks followed by the time of the next tick
+     */
+    private Hashtable animationIntervals;
+
+    /**
+     * Indicates whether animations of components that can't be seen are skipped
+     */
+    private boolean cullAnimations;
+
     /**
      * This member holds the left soft key value
      */
@@ -292,6 +304,7 @@ public class Form extends Container {
         sizeChanged(w, h);
         setSize(new Dimension(w, h));
         setShouldCalcPreferredSize(true);
+        setShouldLayoutTree();
         doLayout();        
         repaint();
     }
@@ -953,6 +966,49 @@ public class Form extends Container {
         Display.getInstance().notifyDisplay();
     }
 
+    /**
+     * Registers the given animation similarly to registerAnimated(Animation) while
+     * limiting the rate in which it is ticked, this allows slow animations (e.g. a
+     * blinking indicator) to avoid being invoked in every frame.
+     *
+     * @param cmp component that would be animated
+     * @param fps the maximum number of times per second in which the animation
+     * is ticked, 0 or less to tick the animation in every frame
+     */
+    public void registerAnimated(Animation cmp, int fps) {
+        if (fps > 0) {
+            if (animationIntervals == null) {
+                animationIntervals = new Hashtable();
+            }
+            animationIntervals.put(cmp, new long[] {1000 / fps, 0});
+        } else {
+            if (animationIntervals != null) {
+                animationIntervals.remove(cmp);
+            }
+        }
+        registerAnimated(cmp);
+    }
+
+    /**
+     * Indicates whether animations of components that are hidden, or scrolled
+     * out of the visible bounds of their parents, are skipped until the
+     * component can be seen again. This is disabled by default since components
+     * might rely on animate() being invoked while they are hidden.
+     *
+     * @param cullAnimations true to skip animations of components that can't be seen
+     */
+    public void setAnimationCulling(boolean cullAnimations) {
+        this.cullAnimations = cullAnimations;
+    }
+
+    /**
+     * Indicates whether animations of components that can't be seen are skipped
+     *
+     * @return true if animations of components that can't be seen are skipped
+     */
+    public boolean isAnimationCulling() {
+        return cullAnimations;
+    }
 
     /**
      * Identical to the none-internal version, the difference between the internal/none-internal
@@ -989,6 +1045,9 @@ public class Form extends Container {
         if (animatableComponents != null) {
             animatableComponents.removeElement(cmp);
         }
+        if (animationIntervals != null) {
+            animationIntervals.remove(cmp);
+        }
     }
 
     /**
@@ -1006,15 +1065,20 @@ public class Form extends Container {
      * frame
      */
     void repaintAnimations() {
+        // the application is hidden
+        if (AnimationClock.isPaused()) {
+            return;
+        }
+        long now = AnimationClock.getTime();
         if (animatableComponents != null) {
-            loopAnimations(animatableComponents, null);
+            loopAnimations(animatableComponents, null, now);
         }
         if (internalAnimatableComponents != null) {
-            loopAnimations(internalAnimatableComponents, animatableComponents);
+            loopAnimations(internalAnimatableComponents, animatableComponents, now);
         }
     }
 
-    private void loopAnimations(Vector v, Vector notIn) {
+    private void loopAnimations(Vector v, Vector notIn, long now) {
         // we don't save size() in a varible since the animate method may deregister
         // the animation thus invalidating the size
         for (int iter = 0; iter < v.size(); iter++) {
@@ -1022,6 +1086,24 @@ public class Form extends Container {
             if(notIn != null && notIn.contains(c)) {
                 continue;
             }
+            if (cullAnimations && isCulled(c)) {
+                continue;
+            }
+            if (animationIntervals != null) {
+                long[] interval = (long[]) animationIntervals.get(c);
+                if (interval != null) {
+                    if (now < interval[1]) {
+                        continue;
+                    }
+                    // when we fall behind skip the missed ticks rather than
+                    // ticking repeatedly to catch up
+                    interval[1] += interval[0];
+                    if (interval[1] <= now) {
+                        interval[1] = now + interval[0];
+                    }
+                }
+            }
+            AnimationClock.tick();
             if (c.animate()) {
                 if (c instanceof Component) {
                     Rectangle rect = ((Component) c).getDirtyRegion();
@@ -1037,6 +1119,40 @@ public class Form extends Container {
         }
     }
 
+    /**
+     * Returns true if the animation is a component that can't be seen since it or
+     * one of its parents is hidden or since it lies outside of the bounds of one
+     * of its parents
+     */
+    private boolean isCulled(Animation a) {
+        if (a == this || !(a instanceof Component)) {
+            return false;
+        }
+        Component c = (Component) a;
+        int x = c.getX();
+        int y = c.getY();
+        int w = c.getWidth();
+        int h = c.getHeight();
+        if (!c.isVisible() || w <= 0 || h <= 0) {
+            return true;
+        }
+        Container parent = c.getParent();
+        while (parent != null) {
+            if (!parent.isVisible()) {
+                return true;
+            }
+            x -= parent.getScrollX();
+            y -= parent.getScrollY();
+            if (x >= parent.getWidth() || y >= parent.getHeight() || x + w <= 0 || y + h <= 0) {
+                return true;
+            }
+            x += parent.getX();
+            y += parent.getY();
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
     /**
      * If this method returns true the EDT won't go to sleep indefinitely
      * 
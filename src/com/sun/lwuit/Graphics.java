@@ -505,6 +505,25 @@ public final class Graphics {
         impl.fillRectRadialGradient(nativeGraphics, startColor, endColor, x + xTranslate, y + yTranslate, width, height, relativeX, relativeY, relativeSize);
     }
 
+    /**
+     * Draws a square radial gradient in the given coordinates with the given ARGB
+     * colors, the alpha channel of the colors is interpolated when processAlpha is true
+     *
+     * @param startColor the starting color
+     * @param endColor  the ending color
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param width the width of the region to be filled
+     * @param height the height of the region to be filled
+     * @param relativeX indicates the relative position of the gradient within the drawing region
+     * @param relativeY indicates the relative position of the gradient within the drawing region
+     * @param relativeSize  indicates the relative size of the gradient within the drawing region
+     * @param processAlpha true if the highest byte of the colors is an alpha channel
+     */
+    public void fillRectRadialGradient(int startColor, int endColor, int x, int y, int width, int height, float relativeX, float relativeY, float relativeSize, boolean processAlpha) {
+        impl.fillRectRadialGradient(nativeGraphics, startColor, endColor, x + xTranslate, y + yTranslate, width, height, relativeX, relativeY, relativeSize, processAlpha);
+    }
+
     /**
      * Draws a linear gradient in the given coordinates with the given colors, 
      * doesn't take alpha into consideration when drawing the gradient
@@ -521,6 +540,23 @@ public final class Graphics {
         impl.fillLinearGradient(nativeGraphics, startColor, endColor, x + xTranslate, y + yTranslate, width, height, horizontal);
     }
 
+    /**
+     * Draws a linear gradient in the given coordinates with the given ARGB colors,
+     * the alpha channel of the colors is interpolated when processAlpha is true
+     *
+     * @param startColor the starting color
+     * @param endColor  the ending color
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param width the width of the region to be filled
+     * @param height the height of the region to be filled
+     * @param horizontal indicating wheter it is a horizontal fill or vertical
+     * @param processAlpha true if the highest byte of the colors is an alpha channel
+     */
+    public void fillLinearGradient(int startColor, int endColor, int x, int y, int width, int height, boolean horizontal, boolean processAlpha) {
+        impl.fillLinearGradient(nativeGraphics, startColor, endColor, x + xTranslate, y + yTranslate, width, height, horizontal, processAlpha);
+    }
+
     /**
      * Fills a rectangle with an optionally translucent fill color
      * 
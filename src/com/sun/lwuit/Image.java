@@ -28,8 +28,6 @@ import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.impl.LWUITImplementation;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
-import java.util.Hashtable;
 
 /**
  * Abstracts the underlying platform images allowing us to treat them as a uniform
@@ -38,13 +36,17 @@ import java.util.Hashtable;
  * @author Chen Fishbein
  */
 public class Image {
-    private WeakReference rgbCache;
     private Object image;   
     int transform;
 
     private boolean opaqueTested = false;
     private boolean opaque;
-    private WeakReference scaleCache;
+
+    /**
+     * Scaled instances of an image share the owner of the original image within
+     * the image cache so scaling a scaled image can return a cached instance
+     */
+    private Object scaleCacheOwner;
     private boolean animated = false;
     private long imageTime = -1;
     private boolean svg;
@@ -60,18 +62,15 @@ public class Image {
     }
 
     
-    private Hashtable getScaleCache() {
-        if(scaleCache == null) {
-            Hashtable h = new Hashtable();
-            scaleCache = new WeakReference(h);
-            return h;
+    private ImageCache.Key getScaleKey(Dimension size) {
+        if(scaleCacheOwner == null) {
+            scaleCacheOwner = this;
         }
-        Hashtable h = (Hashtable)scaleCache.get();
-        if(h == null) {
-            h = new Hashtable();
-            scaleCache = new WeakReference(h);
-        }
-        return h;
+        return new ImageCache.Key(scaleCacheOwner, "scaled", size.getWidth(), size.getHeight());
+    }
+
+    void setScaleCacheOwner(Object scaleCacheOwner) {
+        this.scaleCacheOwner = scaleCacheOwner;
     }
 
     /**
@@ -81,11 +80,7 @@ public class Image {
      * @return cached image
      */
     Image getCachedImage(Dimension size) {
-        WeakReference w = (WeakReference)getScaleCache().get(size);
-        if(w != null) {
-            return (Image)w.get();
-        }
-        return null;
+        return (Image)ImageCache.getInstance().get(getScaleKey(size));
     } 
     
     /**
@@ -95,8 +90,23 @@ public class Image {
      * @return cached image
      */
     void cacheImage(Dimension size, Image i) {
-        WeakReference w = new WeakReference(i);
-        getScaleCache().put(size, w);
+        ImageCache.getInstance().put(getScaleKey(size), i, 
+                ImageCache.estimateSize(size.getWidth(), size.getHeight()));
+    }
+
+    /**
+     * Prevents the data backing this image from being evicted from the image cache,
+     * this is useful for images that are currently on the screen. Every call to lock
+     * must be matched by a call to unlock. This method has no effect for images whose
+     * data isn't cached.
+     */
+    public void lock() {
+    }
+
+    /**
+     * Releases a lock placed by the lock() method
+     */
+    public void unlock() {
     }
 
 
@@ -675,17 +685,13 @@ public class Image {
         int[] r = getRGBCache();
         if(r == null) {
             r = getRGBImpl();
-            rgbCache = new WeakReference(r);
+            ImageCache.getInstance().put(new ImageCache.Key(this, "rgb", 0, 0), r, r.length * 4);
         }
         return r;
     }
 
     int[] getRGBCache() {
-        if(rgbCache != null) {
-            int[] rgb = (int[])rgbCache.get();
-            return rgb;
-        }
-        return null;
+        return (int[])ImageCache.getInstance().get(new ImageCache.Key(this, "rgb", 0, 0));
     }
     
     int[] getRGBImpl() {
@@ -762,15 +768,18 @@ public class Image {
         if(i != null) {
             return i;
         }
-        cacheImage(new Dimension(getWidth(), getHeight()), this);
-
         i = new Image(this.image);
-        i.scaleCache = scaleCache;
+        i.scaleCacheOwner = scaleCacheOwner;
         i.scale(width, height);
         i.transform = this.transform;
         i.animated = animated;
         i.svg = svg;
-                
+
+        // large scaled instances such as full screen backgrounds would evict
+        // most of the cache
+        if(ImageCache.estimateSize(width, height) <= ImageCache.getInstance().getMaxBytes() / 4) {
+            cacheImage(d, i);
+        }
         return i;
     }
 
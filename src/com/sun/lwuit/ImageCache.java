@@ -0,0 +1,375 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Hashtable;
+
+/**
+ * A bounded least recently used cache for decoded images, scaled images and
+ * ARGB arrays. Every entry is accounted by its estimated size in bytes and the
+ * least recently used entries are evicted once the byte budget is exceeded.
+ * Entries can be pinned (e.g. while an image is on the screen) in which case
+ * they are never evicted until they are unpinned.
+ * <p>The cache replaces the weak references previously used by images which were
+ * cleared by the first garbage collection, forcing images to be decoded repeatedly.
+ */
+public final class ImageCache {
+    private static final ImageCache INSTANCE = new ImageCache();
+
+    private Hashtable entries = new Hashtable();
+
+    /**
+     * Head is the least recently used entry, tail is the most recently used
+     */
+    private Entry head;
+    private Entry tail;
+
+    private int maxBytes = 512 * 1024;
+    private int bytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    private ImageCache() {
+    }
+
+    /**
+     * Returns the image cache instance
+     *
+     * @return the image cache instance
+     */
+    public static ImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Estimates the size in bytes of an image
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return estimated size in bytes
+     */
+    public static int estimateSize(int width, int height) {
+        return width * height * 4;
+    }
+
+    /**
+     * Sets the maximum number of bytes the cache may hold, pinned entries are
+     * not evicted even when they exceed this size
+     *
+     * @param maxBytes the size of the cache in bytes
+     */
+    public synchronized void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of bytes the cache may hold
+     *
+     * @return the size of the cache in bytes
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the estimated number of bytes currently held in the cache
+     *
+     * @return size in bytes
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of entries in the cache
+     *
+     * @return number of entries
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of successful lookups since the statistics were reset
+     *
+     * @return number of cache hits
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of failed lookups since the statistics were reset
+     *
+     * @return number of cache misses
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to make room since the statistics were reset
+     *
+     * @return number of evictions
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns the cached value for the given key and marks it as the most recently used
+     *
+     * @param key the key of the entry
+     * @return the cached value or null
+     */
+    public synchronized Object get(Key key) {
+        Entry e = (Entry)entries.get(key);
+        if(e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(e);
+        link(e);
+        return e.value;
+    }
+
+    /**
+     * Returns the cached value for the given key without affecting the statistics
+     * or the eviction order
+     *
+     * @param key the key of the entry
+     * @return the cached value or null
+     */
+    synchronized Object peek(Key key) {
+        Entry e = (Entry)entries.get(key);
+        if(e == null) {
+            return null;
+        }
+        return e.value;
+    }
+
+    /**
+     * Places a value in the cache replacing a previous value with the same key,
+     * the pin count of a replaced entry is preserved
+     *
+     * @param key the key of the entry
+     * @param value the value to cache
+     * @param size the estimated size of the value in bytes
+     */
+    public synchronized void put(Key key, Object value, int size) {
+        Entry e = (Entry)entries.get(key);
+        if(e != null) {
+            unlink(e);
+            bytes -= e.size;
+        } else {
+            e = new Entry();
+            e.key = key;
+            entries.put(key, e);
+        }
+        e.value = value;
+        e.size = size;
+        bytes += size;
+        link(e);
+        evict();
+    }
+
+    /**
+     * Removes the entry with the given key from the cache
+     *
+     * @param key the key of the entry
+     */
+    public synchronized void remove(Key key) {
+        Entry e = (Entry)entries.remove(key);
+        if(e != null) {
+            unlink(e);
+            bytes -= e.size;
+        }
+    }
+
+    /**
+     * Removes all the entries belonging to the given owner
+     *
+     * @param owner the owner object used when creating the keys
+     */
+    public synchronized void removeOwner(Object owner) {
+        Entry e = head;
+        while(e != null) {
+            Entry next = e.next;
+            if(e.key.owner == owner) {
+                entries.remove(e.key);
+                unlink(e);
+                bytes -= e.size;
+            }
+            e = next;
+        }
+    }
+
+    /**
+     * Prevents the entry with the given key from being evicted, pins are counted
+     * and every pin must be matched by an unpin. Pinning a key that isn't cached
+     * has no effect.
+     *
+     * @param key the key of the entry
+     */
+    public synchronized void pin(Key key) {
+        Entry e = (Entry)entries.get(key);
+        if(e != null) {
+            e.pins++;
+        }
+    }
+
+    /**
+     * Releases a pin placed by pin()
+     *
+     * @param key the key of the entry
+     */
+    public synchronized void unpin(Key key) {
+        Entry e = (Entry)entries.get(key);
+        if(e != null && e.pins > 0) {
+            e.pins--;
+            evict();
+        }
+    }
+
+    /**
+     * Removes all the entries that aren't pinned
+     */
+    public synchronized void clear() {
+        int max = maxBytes;
+        maxBytes = 0;
+        evict();
+        maxBytes = max;
+    }
+
+    private void evict() {
+        Entry e = head;
+        while(bytes > maxBytes && e != null) {
+            Entry next = e.next;
+            if(e.pins == 0) {
+                entries.remove(e.key);
+                unlink(e);
+                bytes -= e.size;
+                evictions++;
+            }
+            e = next;
+        }
+    }
+
+    private void link(Entry e) {
+        e.prev = tail;
+        e.next = null;
+        if(tail != null) {
+            tail.next = e;
+        } else {
+            head = e;
+        }
+        tail = e;
+    }
+
+    private void unlink(Entry e) {
+        if(e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            head = e.next;
+        }
+        if(e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            tail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+
+    private static class Entry {
+        Key key;
+        Object value;
+        int size;
+        int pins;
+        Entry prev;
+        Entry next;
+    }
+
+    /**
+     * Identifies a cache entry by an owner object compared by identity, an
+     * identifier compared by equality and optional dimensions.
+     */
+    public static final class Key {
+        private Object owner;
+        private Object id;
+        private int width;
+        private int height;
+
+        /**
+         * Creates a new key
+         *
+         * @param owner the object owning the entry, compared by identity
+         * @param id identifies the entry within the owner, compared using equals
+         * @param width the width of the entry or 0
+         * @param height the height of the entry or 0
+         */
+        public Key(Object owner, Object id, int width, int height) {
+            this.owner = owner;
+            this.id = id;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return owner == k.owner && width == k.width && height == k.height &&
+                    (id == null ? k.id == null : id.equals(k.id));
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public int hashCode() {
+            int h = System.identityHashCode(owner);
+            if(id != null) {
+                h = h * 31 + id.hashCode();
+            }
+            return (h * 31 + width) * 31 + height;
+        }
+    }
+}
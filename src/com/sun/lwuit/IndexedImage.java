@@ -37,6 +37,9 @@ import java.io.IOException;
  * can be drawn at any given time. However, this allows images with low color counts
  * to use as little as one byte per pixel which can save up to 4 times of the memory
  * overhead. 
+ * <p>Repeated paints are accelerated by expanding the image through the palette
+ * into native image tiles held in the image cache, tiles are evicted with the rest
+ * of the cache content leaving only the compact byte data in memory.
  *
  * @deprecated This class should no longer be referenced directly. Use Image.createIndexed instead
  * @author Shai Almog
@@ -48,6 +51,19 @@ public class IndexedImage extends Image {
     // package protected for access by the resource editor
     byte[] imageDataByte;
     int[] palette; 
+
+    /**
+     * Number of pixels in a cached tile, an image is split into horizontal tiles
+     * of full rows
+     */
+    private static final int TILE_PIXELS = 4096;
+
+    private static boolean tileCaching = true;
+
+    /**
+     * Lazily created image cache keys of the tiles
+     */
+    private ImageCache.Key[] tileKeys;
     
     /**
      * Creates an indexed image with byte data
@@ -262,15 +278,31 @@ public class IndexedImage extends Image {
     }
     
     static int[] lineCache;
+
+    /**
+     * Indicates whether indexed images cache their content as native image tiles
+     * in the image cache, images larger than a quarter of the cache are always
+     * drawn from the byte data. This is enabled by default.
+     *
+     * @param tileCaching true to cache expanded tiles
+     */
+    public static void setTileCaching(boolean tileCaching) {
+        IndexedImage.tileCaching = tileCaching;
+    }
+
+    /**
+     * Indicates whether indexed images cache their content as native image tiles
+     *
+     * @return true if expanded tiles are cached
+     */
+    public static boolean isTileCaching() {
+        return tileCaching;
+    }
     
     /**
      * @inheritDoc
      */
     protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
-         if(lineCache == null || lineCache.length < width * 3) {
-             lineCache = new int[width * 3];
-         }
-        
         // for performance we can calculate the visible drawing area so we don't have to
         // calculate the whole array
         int clipY = g.getClipY();
@@ -283,8 +315,16 @@ public class IndexedImage extends Image {
         if(clipBottomY < y + height) {
             lastLine = clipBottomY - y;
         }
+
+        if(tileCaching && width > 0 && height > 0 &&
+                ImageCache.estimateSize(width, height) <= ImageCache.getInstance().getMaxBytes() / 4) {
+            drawTiles(g, x, y, firstLine, lastLine);
+            return;
+        }
         
-        
+        if(lineCache == null || lineCache.length < width * 3) {
+            lineCache = new int[width * 3];
+        }
         for(int line = firstLine ; line < lastLine ; line += 3) {
             int currentPos = line * width;
             int rowsToDraw = Math.min(3, height - line);
@@ -297,6 +337,55 @@ public class IndexedImage extends Image {
         }
     }    
 
+    /**
+     * Draws the tiles intersecting the given rows, tiles missing from the image
+     * cache are expanded through the palette and cached
+     */
+    private void drawTiles(Graphics g, int x, int y, int firstLine, int lastLine) {
+        int tileRows = Math.max(1, Math.min(height, TILE_PIXELS / width));
+        int tiles = (height + tileRows - 1) / tileRows;
+        if(tileKeys == null || tileKeys.length != tiles) {
+            clearTiles();
+            tileKeys = new ImageCache.Key[tiles];
+        }
+        ImageCache cache = ImageCache.getInstance();
+        for(int tile = firstLine / tileRows ; tile < tiles && tile * tileRows < lastLine ; tile++) {
+            int top = tile * tileRows;
+            int rows = Math.min(tileRows, height - top);
+            ImageCache.Key key = tileKeys[tile];
+            if(key == null) {
+                key = new ImageCache.Key(this, new Integer(tile), width, rows);
+                tileKeys[tile] = key;
+            }
+            Image img = (Image)cache.get(key);
+            if(img == null) {
+                int[] rgb = new int[width * rows];
+                int offset = top * width;
+                for(int position = 0 ; position < rgb.length ; position++) {
+                    rgb[position] = palette[imageDataByte[offset + position] & 0xff];
+                }
+                img = Image.createImage(rgb, width, rows);
+                cache.put(key, img, ImageCache.estimateSize(width, rows));
+            }
+            g.drawImage(img, x, y + top);
+        }
+    }
+
+    /**
+     * Removes the cached tiles of this image
+     */
+    void clearTiles() {
+        if(tileKeys != null) {
+            ImageCache cache = ImageCache.getInstance();
+            for(int iter = 0 ; iter < tileKeys.length ; iter++) {
+                if(tileKeys[iter] != null) {
+                    cache.remove(tileKeys[iter]);
+                }
+            }
+            tileKeys = null;
+        }
+    }
+
     /**
      * @inheritDoc
      */
@@ -316,6 +405,7 @@ public class IndexedImage extends Image {
      */
     public void scale(int width, int height) {
         IndexedImage p = (IndexedImage)scaled(width, height);
+        clearTiles();
         this.imageDataByte = p.imageDataByte;
         this.width = width;
         this.height = height;
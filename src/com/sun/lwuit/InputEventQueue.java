@@ -0,0 +1,209 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * A ring buffer of input events stored in a single preallocated int array so
+ * queueing and dispatching an event doesn't allocate. Every slot holds the event
+ * type, the number of points and the x/y pairs of the points (key and size
+ * events use the first pair for their values). Consecutive events of a coalescing
+ * type replace the pending event rather than occupying a new slot.
+ * <p>The queue isn't synchronized, Display guards it with its lock.
+ */
+class InputEventQueue {
+    private int[] buffer;
+    private int stride;
+    private int capacity;
+    private int head;
+    private int size;
+
+    /**
+     * True while the last event in the queue may be replaced by a following event
+     * of the same type, cleared when the event is taken for dispatch
+     */
+    private boolean tailCoalescable;
+
+    private int maxSize;
+    private int coalesced;
+
+    /**
+     * Creates a queue
+     *
+     * @param capacity the initial number of events the queue can hold
+     * @param points the initial number of points an event can hold
+     */
+    InputEventQueue(int capacity, int points) {
+        this.capacity = capacity;
+        stride = 2 + points * 2;
+        buffer = new int[capacity * stride];
+    }
+
+    /**
+     * Returns the number of ints required to hold an event taken from the queue
+     *
+     * @return the size of an event
+     */
+    int getEventSize() {
+        return stride;
+    }
+
+    /**
+     * Returns the number of events waiting in the queue
+     *
+     * @return the number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the largest number of events that waited in the queue since the
+     * statistics were reset
+     *
+     * @return the queue depth
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of events merged into a pending event since the
+     * statistics were reset
+     *
+     * @return the number of coalesced events
+     */
+    int getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Resets the queue depth and coalescing counters
+     */
+    void resetStatistics() {
+        maxSize = size;
+        coalesced = 0;
+    }
+
+    /**
+     * Adds an event holding up to two values
+     *
+     * @param type the event type
+     * @param a first value
+     * @param b second value
+     */
+    void add(int type, int a, int b) {
+        int off = allocate(1);
+        buffer[off] = type;
+        buffer[off + 1] = 1;
+        buffer[off + 2] = a;
+        buffer[off + 3] = b;
+        tailCoalescable = false;
+    }
+
+    /**
+     * Adds a pointer event
+     *
+     * @param type the event type
+     * @param x the x coordinates of the points
+     * @param y the y coordinates of the points
+     * @param coalesce true if the event may replace a pending event of the same
+     * type that is the last event in the queue
+     */
+    void add(int type, int[] x, int[] y, boolean coalesce) {
+        int points = x.length;
+        int off;
+        if(coalesce && tailCoalescable && size > 0) {
+            off = ((head + size - 1) % capacity) * stride;
+            if(buffer[off] == type && buffer[off + 1] == points) {
+                coalesced++;
+                writePoints(off, x, y);
+                return;
+            }
+        }
+        off = allocate(points);
+        buffer[off] = type;
+        buffer[off + 1] = points;
+        writePoints(off, x, y);
+        tailCoalescable = coalesce;
+    }
+
+    private void writePoints(int off, int[] x, int[] y) {
+        off += 2;
+        for(int iter = 0 ; iter < x.length ; iter++) {
+            buffer[off] = x[iter];
+            buffer[off + 1] = y[iter];
+            off += 2;
+        }
+    }
+
+    /**
+     * Reserves a slot at the end of the queue growing the buffer if the queue
+     * is full or the event has more points than a slot can hold
+     */
+    private int allocate(int points) {
+        int required = 2 + points * 2;
+        if(size == capacity || required > stride) {
+            int newCapacity = capacity;
+            if(size == capacity) {
+                newCapacity *= 2;
+            }
+            int newStride = Math.max(stride, required);
+            int[] b = new int[newCapacity * newStride];
+            for(int iter = 0 ; iter < size ; iter++) {
+                System.arraycopy(buffer, ((head + iter) % capacity) * stride, b, iter * newStride, stride);
+            }
+            buffer = b;
+            capacity = newCapacity;
+            stride = newStride;
+            head = 0;
+        }
+        int off = ((head + size) % capacity) * stride;
+        size++;
+        if(size > maxSize) {
+            maxSize = size;
+        }
+        return off;
+    }
+
+    /**
+     * Removes the first event from the queue and copies it into the given array
+     *
+     * @param event destination array at least getEventSize() in length
+     * @return false if the queue is empty
+     */
+    boolean remove(int[] event) {
+        if(size == 0) {
+            return false;
+        }
+        int off = head * stride;
+        System.arraycopy(buffer, off, event, 0, 2 + buffer[off + 1] * 2);
+        head = (head + 1) % capacity;
+        size--;
+        if(size == 0) {
+            tailCoalescable = false;
+        }
+        return true;
+    }
+}
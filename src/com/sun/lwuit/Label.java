@@ -25,6 +25,7 @@
 package com.sun.lwuit;
 
 import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.animations.AnimationClock;
 import com.sun.lwuit.geom.*;
 import com.sun.lwuit.plaf.DefaultLookAndFeel;
 import com.sun.lwuit.plaf.LookAndFeel;
@@ -144,6 +145,10 @@ public class Label extends Component {
      * @inheritDoc
      */
     void initComponentImpl() {
+        if(!isInitialized() && icon != null) {
+            // keep the icon in the image cache while the label is showing
+            icon.lock();
+        }
         super.initComponentImpl();
         if(hasFocus()) {
             LookAndFeel lf = UIManager.getInstance().getLookAndFeel();
@@ -153,6 +158,16 @@ public class Label extends Component {
         }
     }
     
+    /**
+     * @inheritDoc
+     */
+    void deinitializeImpl() {
+        if(isInitialized() && icon != null) {
+            icon.unlock();
+        }
+        super.deinitializeImpl();
+    }
+
     /**
      * Returns the label text
      * 
@@ -171,6 +186,14 @@ public class Label extends Component {
         if(this.icon == icon) {
             return;
         }
+        if(isInitialized()) {
+            if(this.icon != null) {
+                this.icon.unlock();
+            }
+            if(icon != null) {
+                icon.lock();
+            }
+        }
         this.icon = icon;
         setShouldCalcPreferredSize(true);
         checkAnimation();
@@ -389,7 +412,7 @@ public class Label extends Component {
                 parent.registerAnimatedInternal(this);
             }
         }
-        tickerStartTime = System.currentTimeMillis();
+        tickerStartTime = AnimationClock.getTime();
         tickerDelay = delay;
         tickerRunning = true;
         this.rightToLeft = rightToLeft;
@@ -465,8 +488,8 @@ public class Label extends Component {
      */
     public boolean animate() {
         boolean animateTicker = false;
-        if(tickerRunning && tickerStartTime + tickerDelay < System.currentTimeMillis()){
-            tickerStartTime = System.currentTimeMillis();
+        if(tickerRunning && tickerStartTime + tickerDelay < AnimationClock.getTime()){
+            tickerStartTime = AnimationClock.getTime();
             if(rightToLeft){
                 shiftText-=2;
             }else{
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * Breaks the text of a text area into rows in a single pass over the text keeping
+ * a running width of the current row. Rows are stored as start/end offsets into
+ * the text and strings are only created for rows that are requested. When the
+ * text changes while the font and width remain the same only the rows from the
+ * paragraph containing the first modification are wrapped again, and the rows
+ * following the modification are reused once the new layout realigns with the
+ * previous one.
+ */
+class LineBreaker {
+    private char[] text;
+    private Font font;
+    private int width = -1;
+
+    private int[] rowStart = new int[16];
+    private int[] rowEnd = new int[16];
+    private String[] rowText = new String[16];
+    private int rowCount;
+
+    /**
+     * Returns the font used for the last layout
+     *
+     * @return the font
+     */
+    Font getFont() {
+        return font;
+    }
+
+    /**
+     * Returns the width available to a row in the last layout
+     *
+     * @return the width in pixels
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return the number of rows
+     */
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the text of the given row
+     *
+     * @param row the row index
+     * @return the text of the row
+     */
+    String getRow(int row) {
+        if(row < 0 || row >= rowCount) {
+            throw new ArrayIndexOutOfBoundsException(row);
+        }
+        String s = rowText[row];
+        if(s == null) {
+            s = new String(text, rowStart[row], rowEnd[row] - rowStart[row]);
+            rowText[row] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Places the entire text in a single row
+     *
+     * @param t the text
+     */
+    void layoutSingleLine(String t) {
+        text = null;
+        font = null;
+        width = -1;
+        rowCount = 0;
+        ensureCapacity(1);
+        rowStart[0] = 0;
+        rowEnd[0] = t.length();
+        rowText[0] = t;
+        rowCount = 1;
+    }
+
+    /**
+     * Breaks the given text into rows that fit within the given width
+     *
+     * @param newText the text to break, the array is referenced by the breaker
+     * @param f the font with which the text is drawn
+     * @param w the width available to a row
+     */
+    void layout(char[] newText, Font f, int w) {
+        if(text == null || f != font || w != width || rowCount == 0) {
+            text = newText;
+            font = f;
+            width = w;
+            rowCount = 0;
+            int pos = 0;
+            while(pos < text.length) {
+                pos = nextRow(pos);
+            }
+            return;
+        }
+        relayout(newText);
+    }
+
+    /**
+     * Wraps the text again after a modification reusing the rows that aren't affected
+     */
+    private void relayout(char[] newText) {
+        char[] oldText = text;
+        int oldLength = oldText.length;
+        int newLength = newText.length;
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while(prefix < max && oldText[prefix] == newText[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while(suffix < max - prefix && oldText[oldLength - 1 - suffix] == newText[newLength - 1 - suffix]) {
+            suffix++;
+        }
+        text = newText;
+        if(prefix == oldLength && prefix == newLength) {
+            return;
+        }
+
+        // find the row containing the first modification and go back to the first
+        // row of its paragraph since the modification might pull text into previous
+        // rows of the paragraph
+        int row = findRow(prefix);
+        while(row > 0 && oldText[rowStart[row] - 1] != '\n') {
+            row--;
+        }
+
+        // keep a copy of the rows following the modified row for realignment
+        int oldRows = rowCount - row;
+        int[] oldStart = new int[oldRows];
+        int[] oldEnd = new int[oldRows];
+        String[] oldRowText = new String[oldRows];
+        System.arraycopy(rowStart, row, oldStart, 0, oldRows);
+        System.arraycopy(rowEnd, row, oldEnd, 0, oldRows);
+        System.arraycopy(rowText, row, oldRowText, 0, oldRows);
+
+        int delta = newLength - oldLength;
+        int newEditEnd = newLength - suffix;
+        rowCount = row;
+        int pos = oldStart[0];
+        while(pos < newLength) {
+            pos = nextRow(pos);
+            if(pos >= newEditEnd && pos < newLength) {
+                // past the modification a row starting at the same position in the
+                // unchanged text will be wrapped exactly as before
+                int oldRow = indexOf(oldStart, pos - delta);
+                if(oldRow > -1) {
+                    int count = oldRows - oldRow;
+                    ensureCapacity(rowCount + count);
+                    for(int iter = 0 ; iter < count ; iter++) {
+                        rowStart[rowCount] = oldStart[oldRow + iter] + delta;
+                        rowEnd[rowCount] = oldEnd[oldRow + iter] + delta;
+                        rowText[rowCount] = oldRowText[oldRow + iter];
+                        rowCount++;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the row containing the given offset
+     */
+    private int findRow(int offset) {
+        int low = 0;
+        int high = rowCount - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(rowStart[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int indexOf(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(sorted[mid] < value) {
+                low = mid + 1;
+            } else if(sorted[mid] > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the row starting at the given offset and returns the offset of the
+     * following row. Rows break at a newline, at the last space or tab that fits
+     * within the width or at the last character that fits if there is no space.
+     */
+    private int nextRow(int from) {
+        int length = text.length;
+        int rowWidth = 0;
+        int lastBreak = -1;
+        for(int iter = from ; iter < length ; iter++) {
+            char c = text[iter];
+            if(c == '\n') {
+                addRow(from, iter);
+                return iter + 1;
+            }
+            int charWidth = font.charWidthCached(c);
+            if(rowWidth + charWidth > width && iter > from) {
+                if(c == ' ' || c == '\t') {
+                    addRow(from, iter);
+                    return iter + 1;
+                }
+                if(lastBreak > from) {
+                    addRow(from, lastBreak);
+                    return lastBreak + 1;
+                }
+                addRow(from, iter);
+                return iter;
+            }
+            if(c == ' ' || c == '\t') {
+                lastBreak = iter;
+            }
+            rowWidth += charWidth;
+        }
+        addRow(from, length);
+        return length;
+    }
+
+    private void addRow(int start, int end) {
+        ensureCapacity(rowCount + 1);
+        rowStart[rowCount] = start;
+        rowEnd[rowCount] = end;
+        rowText[rowCount] = null;
+        rowCount++;
+    }
+
+    private void ensureCapacity(int size) {
+        if(size > rowStart.length) {
+            int newSize = Math.max(size, rowStart.length * 2);
+            int[] s = new int[newSize];
+            int[] e = new int[newSize];
+            String[] t = new String[newSize];
+            System.arraycopy(rowStart, 0, s, 0, rowCount);
+            System.arraycopy(rowEnd, 0, e, 0, rowCount);
+            System.arraycopy(rowText, 0, t, 0, rowCount);
+            rowStart = s;
+            rowEnd = e;
+            rowText = t;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import com.sun.lwuit.list.DefaultListCellRenderer;
 import com.sun.lwuit.list.DefaultListModel;
 import com.sun.lwuit.list.ListCellRenderer;
 import com.sun.lwuit.list.ListModel;
+import com.sun.lwuit.list.PagingListModel;
+import com.sun.lwuit.plaf.Border;
 import com.sun.lwuit.plaf.LookAndFeel;
 import com.sun.lwuit.plaf.Style;
 import com.sun.lwuit.plaf.UIManager;
@@ -74,6 +76,12 @@ public class List extends Component {
      * Allows to test for fixed none
      */
     private static final int FIXED_NONE_BOUNDRY = 9;
+
+    /**
+     * Number of leading elements measured to determine the element size when
+     * there is no rendering prototype
+     */
+    private static final int ELEMENT_SIZE_SAMPLES = 5;
     /**
      * Indicates the list selection is fixed into place at the top of the list
      * or at the left of the list
@@ -174,6 +182,38 @@ public class List extends Component {
      */
     private boolean scrollToSelected = true;
 
+    /**
+     * Indicates that every row is measured separately rather than assuming all
+     * rows share the size of the first elements or the rendering prototype
+     */
+    private boolean variableHeightRows;
+
+    /**
+     * Heights of the rows in variable height mode, created lazily
+     */
+    private RowOffsetIndex rowIndex;
+
+    /**
+     * The difference between the selected and unselected height of the row
+     * selectedRowDiffIndex or -1 if it wasn't calculated
+     */
+    private int selectedRowDiff;
+    private int selectedRowDiffIndex = -1;
+
+    /**
+     * Maximum number of bytes held by rendered rows of this list, 0 disables
+     * the row cache
+     */
+    private int rowCacheSize;
+    private int rowCacheBytes;
+
+    /**
+     * The rows of this list placed in the image cache ordered from the least to
+     * the most recently used, the images themselves are only held by the image
+     * cache
+     */
+    private Vector cachedRows;
+
     /**
      * Creates a new instance of List
      *
@@ -252,6 +292,9 @@ public class List extends Component {
             model.removeSelectionListener(listener);
             listener = null;
         }
+
+        // changes to the model aren't tracked while the list isn't shown
+        clearRowCache();
     }
 
     /**
@@ -439,6 +482,24 @@ public class List extends Component {
 
 
     void dataChanged(int status, int index) {
+        updateRowIndex(status, index);
+        if (cachedRows != null) {
+            if (status == DataChangedListener.CHANGED && index > -1) {
+                removeCachedRows(index);
+            } else {
+                clearRowCache();
+            }
+        }
+
+        // a changed element that doesn't take part in the element size only
+        // dirties its own row, e.g. when a paging model fills in placeholders
+        if (status == DataChangedListener.CHANGED && index > -1 && index < model.getSize() &&
+                isInitialized() && !isVariableHeightMode() &&
+                (renderingPrototype != null || index >= ELEMENT_SIZE_SAMPLES)) {
+            modelChanged(status, index);
+            repaintRow(index);
+            return;
+        }
         setShouldCalcPreferredSize(true);
         if (getSelectedIndex() >= model.getSize()) {
             setSelectedIndex(Math.max(model.getSize() - 1, 0));
@@ -448,6 +509,332 @@ public class List extends Component {
         repaint();
     }
 
+    /**
+     * Repaints the row of the given element if it is within the visible portion
+     * of the list
+     */
+    private void repaintRow(int index) {
+        if (fixedSelection > FIXED_NONE_BOUNDRY) {
+            repaint();
+            return;
+        }
+        Rectangle pos = new Rectangle();
+        Style style = getStyle();
+        int width = getWidth() - style.getPadding(isRTL(), RIGHT) - style.getPadding(isRTL(), LEFT) - getSideGap();
+        if (isScrollableX()) {
+            width = Math.max(width, getScrollDimension().getWidth() - style.getPadding(isRTL(), RIGHT) - style.getPadding(isRTL(), LEFT) - getSideGap());
+        }
+        calculateComponentPosition(index, width, pos, getElementSize(false, true), getElementSize(true, true), index <= getSelectedIndex());
+        Dimension d = pos.getSize();
+        if (pos.intersects(getScrollX(), getScrollY(), getWidth(), getHeight())) {
+            repaint(getAbsoluteX() + pos.getX(), getAbsoluteY() + pos.getY(), d.getWidth(), d.getHeight());
+        }
+    }
+
+    /**
+     * Updates only the rows affected by a change in the model, when the change
+     * can't be applied to a single row the row heights are discarded
+     */
+    private void updateRowIndex(int status, int index) {
+        selectedRowDiffIndex = -1;
+        if (rowIndex == null) {
+            return;
+        }
+        int size = model.getSize();
+        int rows = rowIndex.size();
+        if (index < 0) {
+            rowIndex = null;
+        } else if (status == DataChangedListener.ADDED && rows + 1 == size) {
+            // some models indicate the size of the model as the offset of an appended element
+            rowIndex.insert(Math.min(index, rows));
+        } else if (status == DataChangedListener.REMOVED && rows - 1 == size && index < rows) {
+            rowIndex.remove(index);
+        } else if (status == DataChangedListener.CHANGED && rows == size && index < rows) {
+            rowIndex.invalidate(index);
+        } else {
+            rowIndex = null;
+        }
+    }
+
+    /**
+     * Indicates whether every row of a vertical list is measured separately allowing
+     * rows of different heights. Rows are measured lazily when they are first
+     * painted, until then they are assumed to have the height of the first
+     * elements. This mode applies only to vertical lists that don't use a fixed
+     * selection, other lists ignore it.
+     *
+     * @param variableHeightRows true to measure every row separately
+     */
+    public void setVariableHeightRows(boolean variableHeightRows) {
+        this.variableHeightRows = variableHeightRows;
+        resetRowIndex();
+    }
+
+    /**
+     * Indicates whether every row of a vertical list is measured separately allowing
+     * rows of different heights
+     *
+     * @return true if every row is measured separately
+     */
+    public boolean isVariableHeightRows() {
+        return variableHeightRows;
+    }
+
+    private boolean isVariableHeightMode() {
+        return variableHeightRows && orientation == VERTICAL && fixedSelection < FIXED_NONE_BOUNDRY;
+    }
+
+    /**
+     * Discards the measured row heights
+     */
+    private void resetRowIndex() {
+        rowIndex = null;
+        selectedRowDiffIndex = -1;
+        setShouldCalcPreferredSize(true);
+        repaint();
+    }
+
+    /**
+     * Returns the row heights including the item gap, rows that weren't measured
+     * are estimated by the element size
+     */
+    private RowOffsetIndex getRowIndex() {
+        int size = model.getSize();
+        if (rowIndex == null || rowIndex.size() != size) {
+            rowIndex = new RowOffsetIndex(size, getElementSize(false, true).getHeight() + itemGap);
+            selectedRowDiffIndex = -1;
+        }
+        return rowIndex;
+    }
+
+    /**
+     * Measures the given row unless it was already measured
+     */
+    private void measureRow(int index) {
+        RowOffsetIndex rows = getRowIndex();
+        if (index < 0 || index >= rows.size() || rows.isMeasured(index)) {
+            return;
+        }
+        Component cmp = renderer.getListCellRendererComponent(this, model.getItemAt(index), index, false);
+        if (rows.setHeight(index, cmp.getPreferredSizeWithMargin().getHeight() + itemGap)) {
+            // the scroll size changed
+            super.setShouldCalcPreferredSize(true);
+        }
+    }
+
+    /**
+     * Returns the difference between the selected and unselected height of the
+     * selected row in variable height mode
+     */
+    private int getSelectedRowDiff() {
+        int selection = getSelectedIndex();
+        if (selection != selectedRowDiffIndex) {
+            if (selection < 0 || selection >= model.getSize()) {
+                return 0;
+            }
+            measureRow(selection);
+            Component cmp = renderer.getListCellRendererComponent(this, model.getItemAt(selection), selection, true);
+            selectedRowDiff = cmp.getPreferredSizeWithMargin().getHeight() + itemGap - getRowIndex().getHeight(selection);
+            selectedRowDiffIndex = selection;
+        }
+        return selectedRowDiff;
+    }
+
+    /**
+     * Measures the rows intersecting the given vertical range before they are painted
+     */
+    private void measureVisibleRows(int clipY, int clipHeight) {
+        // measure the selected row first since it shifts the rows that follow it
+        int diff = Math.abs(getSelectedRowDiff());
+        RowOffsetIndex rows = getRowIndex();
+        int initialY = getStyle().getPadding(false, TOP);
+        int bottom = clipY + clipHeight - initialY + diff;
+        int size = rows.size();
+        for (int i = rows.getRow(clipY - initialY - diff); i < size && rows.getOffset(i) < bottom; i++) {
+            measureRow(i);
+        }
+    }
+
+    /**
+     * Enables a cache of rendered rows, rows are rendered once into an image
+     * and drawn from the image in following paints which is useful for smooth
+     * scrolling of long lists. The renderer should depend only on the value, the
+     * index, the selection and the focus of the list since a cached row is
+     * rendered again only when the model indicates that its value changed.
+     * <p>Only rows whose renderer paints an opaque background (a background
+     * transparency of 255) without a border painting the background are cached,
+     * other rows are painted as usual. Notice that the default renderer styles
+     * have a transparent background so the renderer style must be made opaque
+     * for this cache to take effect.
+     * <p>The rendered rows are held in the {@link ImageCache} and might be evicted
+     * from it in which case they are rendered again when painted.
+     *
+     * @param rowCacheSize the maximum number of bytes held by the rendered rows
+     * of this list as estimated by {@link ImageCache#estimateSize(int, int)}, the
+     * least recently used rows are discarded when exceeded. 0 disables the cache
+     * which is the default.
+     */
+    public void setRowCacheSize(int rowCacheSize) {
+        this.rowCacheSize = Math.max(0, rowCacheSize);
+        clearRowCache();
+    }
+
+    /**
+     * Returns the maximum number of bytes held by the rendered rows of this list
+     *
+     * @return number of bytes, 0 if the cache is disabled
+     */
+    public int getRowCacheSize() {
+        return rowCacheSize;
+    }
+
+    /**
+     * Discards all the rendered rows of this list
+     */
+    private void clearRowCache() {
+        if (cachedRows != null) {
+            while (cachedRows.size() > 0) {
+                removeCachedRow(0);
+            }
+            cachedRows = null;
+        }
+        rowCacheBytes = 0;
+    }
+
+    /**
+     * Discards the rendered versions of the row at the given index
+     */
+    private void removeCachedRows(int index) {
+        for (int iter = cachedRows.size() - 1; iter >= 0; iter--) {
+            if (((CachedRow) cachedRows.elementAt(iter)).id / 4 == index) {
+                removeCachedRow(iter);
+            }
+        }
+    }
+
+    private void removeCachedRow(int offset) {
+        CachedRow r = (CachedRow) cachedRows.elementAt(offset);
+        cachedRows.removeElementAt(offset);
+        rowCacheBytes -= r.bytes;
+        ImageCache.getInstance().remove(r.key);
+    }
+
+    /**
+     * Draws a row from the row cache, rows that are missing are rendered into
+     * the cache if possible and painted directly otherwise
+     */
+    private void paintCachedRow(Graphics g, int index, boolean selected, int x, int y, int width, int height) {
+        int id = index * 4;
+        if (selected) {
+            id += 1;
+        }
+        if (hasFocus()) {
+            id += 2;
+        }
+        if (cachedRows != null) {
+            for (int iter = cachedRows.size() - 1; iter >= 0; iter--) {
+                CachedRow r = (CachedRow) cachedRows.elementAt(iter);
+                if (r.id == id && r.width == width && r.height == height) {
+                    RowRaster raster = (RowRaster) ImageCache.getInstance().get(r.key);
+                    if (raster == null) {
+                        // evicted by the image cache, render the row again
+                        removeCachedRow(iter);
+                        break;
+                    }
+                    if (iter != cachedRows.size() - 1) {
+                        cachedRows.removeElementAt(iter);
+                        cachedRows.addElement(r);
+                    }
+                    g.drawImage(raster.image, x + raster.x, y + raster.y);
+                    return;
+                }
+            }
+        }
+        Component cmp = renderer.getListCellRendererComponent(this, model.getItemAt(index), index, selected);
+        if (!selected) {
+            cmp.setCellRenderer(true);
+        }
+        RowRaster raster = createRowRaster(id, cmp, width, height);
+        if (raster == null) {
+            renderComponentBackground(g, cmp, x, y, width, height);
+            renderComponent(g, cmp, x, y, width, height);
+            return;
+        }
+        g.drawImage(raster.image, x + raster.x, y + raster.y);
+    }
+
+    /**
+     * Renders the component into a new cache entry or returns null if the
+     * component doesn't paint an opaque background or doesn't fit in the cache
+     */
+    private RowRaster createRowRaster(int id, Component cmp, int width, int height) {
+        Style s = cmp.getStyle();
+        if ((s.getBgTransparency() & 0xff) != 0xff || (s.getBgImage() != null && !s.getBgImage().isOpaque())) {
+            return null;
+        }
+        if (cmp.isBorderPainted()) {
+            Border b = cmp.getBorder();
+            if (b != null && b.isBackgroundPainter()) {
+                return null;
+            }
+        }
+        int left = s.getMargin(isRTL(), LEFT);
+        int top = s.getMargin(false, TOP);
+        int w = width - left - s.getMargin(isRTL(), RIGHT);
+        int h = height - top - s.getMargin(false, BOTTOM);
+        int bytes = ImageCache.estimateSize(w, h);
+        if (w <= 0 || h <= 0 || bytes > rowCacheSize) {
+            return null;
+        }
+        Image img = Image.createImage(w, h);
+        Graphics g = img.getGraphics();
+        renderComponentBackground(g, cmp, -left, -top, width, height);
+        renderComponent(g, cmp, -left, -top, width, height);
+
+        RowRaster raster = new RowRaster();
+        raster.image = img;
+        raster.x = left;
+        raster.y = top;
+
+        CachedRow r = new CachedRow();
+        r.id = id;
+        r.width = width;
+        r.height = height;
+        r.bytes = bytes;
+        r.key = new ImageCache.Key(this, new Integer(id), width, height);
+        if (cachedRows == null) {
+            cachedRows = new Vector();
+        }
+        ImageCache.getInstance().put(r.key, raster, bytes);
+        cachedRows.addElement(r);
+        rowCacheBytes += bytes;
+        while (rowCacheBytes > rowCacheSize && cachedRows.size() > 1) {
+            removeCachedRow(0);
+        }
+        return raster;
+    }
+
+    /**
+     * A rendered row held in the image cache
+     */
+    private static class RowRaster {
+        Image image;
+        int x;
+        int y;
+    }
+
+    /**
+     * A row of this list placed in the image cache, the id combines the index
+     * with the selection and focus flags
+     */
+    private static class CachedRow {
+        int id;
+        int width;
+        int height;
+        int bytes;
+        ImageCache.Key key;
+    }
+
     private void bindListeners() {
         if (listener == null) {
             listener = new Listeners();
@@ -478,6 +865,9 @@ public class List extends Component {
             }
         }
         this.model = model;
+        rowIndex = null;
+        selectedRowDiffIndex = -1;
+        clearRowCache();
         if (isInitialized()) {
             bindListeners();
         }
@@ -588,6 +978,9 @@ public class List extends Component {
             setShouldCalcPreferredSize(true);
         }
         this.renderer = renderer;
+        rowIndex = null;
+        selectedRowDiffIndex = -1;
+        clearRowCache();
     }
 
     /**
@@ -628,6 +1021,9 @@ public class List extends Component {
         if (focus != null) {
             focus.refreshTheme();
         }
+        rowIndex = null;
+        selectedRowDiffIndex = -1;
+        clearRowCache();
         super.refreshTheme();
     }
 
@@ -807,7 +1203,15 @@ public class List extends Component {
     private void selectElement(int selectedIndex) {
         Dimension size = getElementSize(false, true);
         Rectangle rect;
-        if (getOrientation() != HORIZONTAL) {
+        if (isVariableHeightMode()) {
+            measureRow(selectedIndex);
+            RowOffsetIndex rows = getRowIndex();
+            int height = rows.getHeight(selectedIndex) - itemGap;
+            if (selectedIndex == getSelectedIndex()) {
+                height += getSelectedRowDiff();
+            }
+            rect = new Rectangle(getX(), rows.getOffset(selectedIndex), getElementSize(true, true).getWidth(), height);
+        } else if (getOrientation() != HORIZONTAL) {
             rect = new Rectangle(getX(), (size.getHeight() + itemGap) * selectedIndex, getElementSize(true, true));
         } else {
             rect = new Rectangle((size.getWidth() + itemGap) * selectedIndex, getY(), getElementSize(true, true));
@@ -825,7 +1229,15 @@ public class List extends Component {
             return;
         }
         if (isSmoothScrolling()) {
-            if (orientation != HORIZONTAL) {
+            if (isVariableHeightMode()) {
+                // the focus moves by the height of the row it leaves when moving
+                // forward and by the height of the row it enters when moving back
+                int selection = getSelectedIndex();
+                if (direction > 0) {
+                    selection--;
+                }
+                animationPosition += direction * getRowIndex().getHeight(selection);
+            } else if (orientation != HORIZONTAL) {
                 animationPosition += (direction * getElementSize(false, true).getHeight());
             } else {
                 animationPosition += (direction * getElementSize(false, true).getWidth());
@@ -862,6 +1274,23 @@ public class List extends Component {
         Dimension d = rect.getSize();
         int selectedDiff;
 
+        if (isVariableHeightMode()) {
+            RowOffsetIndex rows = getRowIndex();
+            selectedDiff = getSelectedRowDiff();
+            rect.setX(initialX);
+            d.setWidth(defaultWidth);
+            d.setHeight(rows.getHeight(index) - itemGap);
+            int y = rows.getOffset(index);
+            if (!beforeSelected) {
+                y += selectedDiff;
+            }
+            rect.setY(y + initialY);
+            if (index == selection) {
+                d.setHeight(d.getHeight() + selectedDiff);
+            }
+            return;
+        }
+
         // the algorithm illustrated here is very simple despite the "mess" of code...
         // The idea is that if we have a "fixed" element we just add up the amount of pixels
         // to get it into its place in the screen (nothing for top obviously).
@@ -1032,6 +1461,10 @@ public class List extends Component {
         // we should break from the List loop
         boolean shouldBreak = false;
 
+        if (isVariableHeightMode()) {
+            measureVisibleRows(clipY, clipHeight);
+        }
+
         // improve performance for browsing the end of a very large list
         int startingPoint = 0;
         if (fixedSelection < FIXED_NONE_BOUNDRY) {
@@ -1046,6 +1479,13 @@ public class List extends Component {
         int startOffset = 0;
         int endOffset = numOfcomponents;
 
+        // rows are drawn from the row cache unless the focus slides over them
+        boolean cacheRows = rowCacheSize > 0 && animationPosition == 0;
+
+        // rows within the clip reported to paging models for prefetching
+        int firstVisible = -1;
+        int lastVisible = -1;
+
         if(mutableRendererBackgrounds) {
             for (int i = startingPoint; i < numOfcomponents; i++) {
                 // skip on the selected
@@ -1064,10 +1504,16 @@ public class List extends Component {
                     if(!shouldBreak) {
                         startOffset = i;
                     }
+                    if(firstVisible < 0) {
+                        firstVisible = i;
+                    }
+                    lastVisible = i;
                     endOffset = i;
-                    Dimension size = pos.getSize();
-                    Component selectionCmp = renderer.getListCellRendererComponent(this, getModel().getItemAt(i), i, i == getSelectedIndex());
-                    renderComponentBackground(g, selectionCmp, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
+                    if (!cacheRows) {
+                        Dimension size = pos.getSize();
+                        Component selectionCmp = renderer.getListCellRendererComponent(this, getModel().getItemAt(i), i, i == getSelectedIndex());
+                        renderComponentBackground(g, selectionCmp, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
+                    }
                     shouldBreak = true;
                 } else {
                     //this is relevant only if the List is not fixed.
@@ -1097,11 +1543,16 @@ public class List extends Component {
                     if(!shouldBreak) {
                         startOffset = i;
                     }
+                    if(firstVisible < 0) {
+                        firstVisible = i;
+                    }
+                    lastVisible = i;
                     endOffset = i;
                     if(i == getSelectedIndex()) {
                         Dimension size = pos.getSize();
                         renderComponentBackground(g, selectionCmp, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
-                    } else {
+                    } else if (!cacheRows) {
+                        // cached rows include their background
                         Dimension size = pos.getSize();
                         renderComponentBackground(g, unselectedCmp, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
                     }
@@ -1115,6 +1566,16 @@ public class List extends Component {
             }
         }
 
+        if (firstVisible > -1 && model instanceof PagingListModel) {
+            // the selected row is skipped above and may be at either edge
+            if (selection > -1 && selection == firstVisible - 1) {
+                firstVisible = selection;
+            } else if (selection > -1 && selection == lastVisible + 1) {
+                lastVisible = selection;
+            }
+            ((PagingListModel)model).setVisibleRange(firstVisible, lastVisible);
+        }
+
         if (paintFocusBehindList) {
             paintFocus(g, width, pos, rendererSize);
         }
@@ -1126,17 +1587,23 @@ public class List extends Component {
             }
             calculateComponentPosition(i, width, pos, rendererSize, getElementSize(true, true), i <= getSelectedIndex());
 
+            Dimension size = pos.getSize();
+            if (cacheRows) {
+                paintCachedRow(g, i, false, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
+                continue;
+            }
             Object value = model.getItemAt(i);
             Component cmp = renderer.getListCellRendererComponent(this, value, i, false);
             cmp.setCellRenderer(true);
-            Dimension size = pos.getSize();
             renderComponent(g, cmp, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
         }
         calculateComponentPosition(getSelectedIndex(), width, pos, rendererSize, getElementSize(true, true), true);
 
         Dimension size = pos.getSize();
         //if the animation has finished draw the selected element
-        if ((renderer.getListFocusComponent(this) == null && (fixedSelection < FIXED_NONE_BOUNDRY)) || animationPosition == 0 && model.getSize() > 0) {
+        if (cacheRows && selection > -1) {
+            paintCachedRow(g, selection, true, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
+        } else if ((renderer.getListFocusComponent(this) == null && (fixedSelection < FIXED_NONE_BOUNDRY)) || animationPosition == 0 && model.getSize() > 0) {
             Component selected = renderer.getListCellRendererComponent(this, model.getItemAt(selection), selection, true);
             renderComponentBackground(g, selected, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
             renderComponent(g, selected, pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
@@ -1332,6 +1799,9 @@ public class List extends Component {
      */
     public void setItemGap(int itemGap) {
         this.itemGap = itemGap;
+        rowIndex = null;
+        selectedRowDiffIndex = -1;
+        clearRowCache();
     }
 
     /**
@@ -1418,7 +1888,7 @@ public class List extends Component {
         }
         int width = 0;
         int height = 0;
-        int elements = Math.min(5, model.getSize());
+        int elements = Math.min(ELEMENT_SIZE_SAMPLES, model.getSize());
         int marginY = 0;
         int marginX = 0;
         for (int iter = 0; iter < elements; iter++) {
@@ -1564,7 +2034,19 @@ public class List extends Component {
         if (fixedSelection < FIXED_NONE_BOUNDRY) {
             calculateComponentPosition(getSelectedIndex(), width, pos, rendererSize, getElementSize(true, true), true);
 
-            if (orientation != HORIZONTAL) {
+            if (isVariableHeightMode()) {
+                RowOffsetIndex rows = getRowIndex();
+                int initialY = style.getPadding(false, TOP);
+                if(y < pos.getY()){
+                    selectedIndex = rows.getRow(y - initialY);
+                }else{
+                    if(y < pos.getY() + pos.getSize().getHeight()){
+                        selectedIndex = getSelectedIndex();
+                    }else{
+                        selectedIndex = rows.getRow(y - initialY - getSelectedRowDiff());
+                    }
+                }
+            } else if (orientation != HORIZONTAL) {
                 if(y < pos.getY()){
                     selectedIndex = y / (rendererSize.getHeight() + itemGap);
                 }else{
@@ -1695,7 +2177,17 @@ public class List extends Component {
      * @inheritDoc
      */
     protected Dimension calcPreferredSize() {
-        return UIManager.getInstance().getLookAndFeel().getListPreferredSize(this);
+        Dimension d = UIManager.getInstance().getLookAndFeel().getListPreferredSize(this);
+        if (isVariableHeightMode() && model.getSize() > 0) {
+            Style style = getStyle();
+            int rows = getRowIndex().getTotal() - itemGap + getSelectedRowDiff();
+            int missing = minElementHeight - model.getSize();
+            if (missing > 0) {
+                rows += missing * (getElementSize(false, true).getHeight() + itemGap);
+            }
+            d.setHeight(rows + style.getPadding(false, TOP) + style.getPadding(false, BOTTOM));
+        }
+        return d;
     }
 
     /**
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * Keeps the heights of the rows of a list in a binary indexed (Fenwick) tree so
+ * the offset of a row and the row at an offset are found in logarithmic time and
+ * the height of a single row is updated in logarithmic time. Rows start with an
+ * estimated height and are marked as measured once their actual height is set.
+ */
+class RowOffsetIndex {
+    private int size;
+    private int estimate;
+    private int total;
+    private int[] heights;
+    private boolean[] measured;
+
+    /**
+     * One based tree, every node holds the sum of the heights in its range
+     */
+    private int[] tree;
+
+    /**
+     * Creates an index of rows that all have the estimated height
+     *
+     * @param size the number of rows
+     * @param estimate the height of rows that weren't measured
+     */
+    RowOffsetIndex(int size, int estimate) {
+        this.size = size;
+        this.estimate = estimate;
+        heights = new int[Math.max(16, size)];
+        measured = new boolean[heights.length];
+        for(int iter = 0 ; iter < size ; iter++) {
+            heights[iter] = estimate;
+        }
+        build();
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return the number of rows
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the sum of the heights of all the rows
+     *
+     * @return the total height
+     */
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the height of the given row or the estimate for an offset outside
+     * of the index
+     *
+     * @param row the row
+     * @return the height of the row
+     */
+    int getHeight(int row) {
+        if(row < 0 || row >= size) {
+            return estimate;
+        }
+        return heights[row];
+    }
+
+    /**
+     * Indicates whether the height of the row was set since it was added or invalidated
+     *
+     * @param row the row
+     * @return true if the row was measured
+     */
+    boolean isMeasured(int row) {
+        return measured[row];
+    }
+
+    /**
+     * Sets the height of the row and marks it as measured
+     *
+     * @param row the row
+     * @param height the height of the row
+     * @return true if the height of the row changed
+     */
+    boolean setHeight(int row, int height) {
+        measured[row] = true;
+        int delta = height - heights[row];
+        if(delta == 0) {
+            return false;
+        }
+        heights[row] = height;
+        total += delta;
+        for(int node = row + 1 ; node <= size ; node += node & (-node)) {
+            tree[node] += delta;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the row as requiring measurement, its current height is kept as an estimate
+     *
+     * @param row the row
+     */
+    void invalidate(int row) {
+        measured[row] = false;
+    }
+
+    /**
+     * Returns the sum of the heights of the rows preceding the given row
+     *
+     * @param row the row, values outside of the index are clamped
+     * @return the offset of the row
+     */
+    int getOffset(int row) {
+        if(row >= size) {
+            return total;
+        }
+        int sum = 0;
+        for(int node = row ; node > 0 ; node -= node & (-node)) {
+            sum += tree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the row containing the given offset
+     *
+     * @param offset an offset from the start of the first row
+     * @return the row, 0 for negative offsets and size() for offsets past the last row
+     */
+    int getRow(int offset) {
+        if(offset < 0) {
+            return 0;
+        }
+        int row = 0;
+        int step = 1;
+        while(step <= size) {
+            step <<= 1;
+        }
+        for(step >>= 1 ; step > 0 ; step >>= 1) {
+            int node = row + step;
+            if(node <= size && tree[node] <= offset) {
+                row = node;
+                offset -= tree[node];
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Inserts an unmeasured row with the estimated height
+     *
+     * @param row the offset of the new row
+     */
+    void insert(int row) {
+        if(size == heights.length) {
+            int[] h = new int[size * 2];
+            boolean[] m = new boolean[size * 2];
+            System.arraycopy(heights, 0, h, 0, size);
+            System.arraycopy(measured, 0, m, 0, size);
+            heights = h;
+            measured = m;
+        }
+        System.arraycopy(heights, row, heights, row + 1, size - row);
+        System.arraycopy(measured, row, measured, row + 1, size - row);
+        heights[row] = estimate;
+        measured[row] = false;
+        size++;
+        build();
+    }
+
+    /**
+     * Removes the given row
+     *
+     * @param row the row to remove
+     */
+    void remove(int row) {
+        size--;
+        System.arraycopy(heights, row + 1, heights, row, size - row);
+        System.arraycopy(measured, row + 1, measured, row, size - row);
+        build();
+    }
+
+    /**
+     * Builds the tree from the heights in linear time
+     */
+    private void build() {
+        if(tree == null || tree.length < size + 1) {
+            tree = new int[heights.length + 1];
+        }
+        total = 0;
+        for(int iter = 0 ; iter < size ; iter++) {
+            tree[iter + 1] = heights[iter];
+            total += heights[iter];
+        }
+        for(int node = 1 ; node <= size ; node++) {
+            int parent = node + (node & (-node));
+            if(parent <= size) {
+                tree[parent] += tree[node];
+            }
+        }
+    }
+}
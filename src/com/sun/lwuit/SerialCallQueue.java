@@ -0,0 +1,224 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Hashtable;
+
+/**
+ * Holds the runnables submitted via callSerially. Runnables are kept in linked
+ * lanes ordered by priority and the event dispatch thread detaches all of them
+ * at once, so submitting a call never contends with input and paint on the
+ * display lock. The queue is guarded by its own monitor which is only held for a
+ * constant number of operations by producers and the EDT alike.
+ * <p>A call submitted with a key replaces the runnable of a pending call with the
+ * same key, the pending call keeps its position in the queue and its submission
+ * time. Calls are no longer considered pending once the EDT detached them.
+ */
+class SerialCallQueue {
+    /**
+     * The number of priority lanes, lane 0 is processed first
+     */
+    static final int LANES = 3;
+
+    private static final int MAX_FREE_NODES = 64;
+
+    private Node[] heads = new Node[LANES];
+    private Node[] tails = new Node[LANES];
+
+    /**
+     * Calls that were detached by the EDT but weren't invoked within the frame
+     */
+    private Node deferred;
+    private Node deferredTail;
+
+    private int size;
+    private Hashtable keyed = new Hashtable();
+    private Node free;
+    private int freeCount;
+    private int coalesced;
+
+    /**
+     * Adds a call to the end of the given lane
+     *
+     * @param r the runnable to invoke
+     * @param lane the priority lane between 0 and LANES - 1
+     * @param key replaces a pending call submitted with an equal key, may be null
+     * @return true if the queue was empty and the EDT should be woken up
+     */
+    synchronized boolean add(Runnable r, int lane, Object key) {
+        if(key != null) {
+            Node pending = (Node)keyed.get(key);
+            if(pending != null) {
+                pending.runnable = r;
+                coalesced++;
+                return false;
+            }
+        }
+        Node n = free;
+        if(n != null) {
+            free = n.next;
+            freeCount--;
+            n.next = null;
+        } else {
+            n = new Node();
+        }
+        n.runnable = r;
+        n.key = key;
+        n.time = System.currentTimeMillis();
+        if(key != null) {
+            keyed.put(key, n);
+        }
+        if(tails[lane] == null) {
+            heads[lane] = n;
+        } else {
+            tails[lane].next = n;
+        }
+        tails[lane] = n;
+        size++;
+        return size == 1;
+    }
+
+    /**
+     * Returns true if no call is pending
+     *
+     * @return true if the queue is empty
+     */
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Detaches all the pending calls, urgent calls come first followed by the
+     * calls deferred from a previous frame and the remaining lanes in order
+     *
+     * @return the first call of the detached chain or null
+     */
+    synchronized Node takeAll() {
+        if(size == 0) {
+            return null;
+        }
+        Node first = null;
+        Node last = null;
+        for(int iter = 0 ; iter < LANES ; iter++) {
+            Node h = heads[iter];
+            Node t = tails[iter];
+            heads[iter] = null;
+            tails[iter] = null;
+            if(iter == 1 && deferred != null) {
+                if(h != null) {
+                    deferredTail.next = h;
+                } else {
+                    t = deferredTail;
+                }
+                h = deferred;
+                deferred = null;
+                deferredTail = null;
+            }
+            if(h != null) {
+                if(last == null) {
+                    first = h;
+                } else {
+                    last.next = h;
+                }
+                last = t;
+            }
+        }
+        if(keyed.size() > 0) {
+            keyed.clear();
+        }
+        size = 0;
+        return first;
+    }
+
+    /**
+     * Returns calls that weren't invoked within the frame to the queue, they are
+     * invoked before the normal lane in the following frame
+     *
+     * @param chain the first call that wasn't invoked
+     * @param count the number of calls in the chain
+     */
+    synchronized void defer(Node chain, int count) {
+        Node t = chain;
+        while(t.next != null) {
+            t = t.next;
+        }
+        if(deferred == null) {
+            deferred = chain;
+        } else {
+            deferredTail.next = chain;
+        }
+        deferredTail = t;
+        size += count;
+    }
+
+    /**
+     * Recycles the nodes of a processed chain up to but excluding the given node
+     *
+     * @param chain the first processed node
+     * @param end the first node that wasn't processed or null
+     */
+    synchronized void release(Node chain, Node end) {
+        while(chain != end) {
+            Node next = chain.next;
+            chain.runnable = null;
+            chain.key = null;
+            if(freeCount < MAX_FREE_NODES) {
+                chain.next = free;
+                free = chain;
+                freeCount++;
+            } else {
+                chain.next = null;
+            }
+            chain = next;
+        }
+    }
+
+    /**
+     * Returns the number of calls that replaced a pending call with the same key
+     * since the statistics were reset
+     *
+     * @return number of coalesced calls
+     */
+    synchronized int getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Resets the coalesced call counter
+     */
+    synchronized void resetStatistics() {
+        coalesced = 0;
+    }
+
+    /**
+     * A pending call
+     */
+    static class Node {
+        Runnable runnable;
+        Object key;
+        long time;
+        Node next;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * A uniform grid over the bounds of the children of a container used to find
+ * the children that might contain a point without testing all of them. Every
+ * grid cell lists the indices of the children intersecting it in ascending order
+ * so hit testing can visit them in the same order as a linear scan would.
+ * <p>The grid is stored in two flat arrays: the entries of cell n are
+ * entries[cellStart[n]] to entries[cellStart[n + 1] - 1].
+ */
+class SpatialIndex {
+    /**
+     * The index is abandoned if children overlapping many cells would make it
+     * larger than this factor times the number of children
+     */
+    private static final int MAX_ENTRIES_FACTOR = 8;
+
+    private int originX;
+    private int originY;
+    private int cellWidth;
+    private int cellHeight;
+    private int columns;
+    private int rows;
+    private int[] cellStart;
+    private int[] entries;
+
+    /**
+     * Builds an index for the children of the given container in their current
+     * position
+     *
+     * @param c the container
+     * @return the index or null if the children can't be indexed efficiently
+     */
+    static SpatialIndex build(Container c) {
+        int count = c.getComponentCount();
+        if(count == 0) {
+            return null;
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = c.getComponentAt(iter);
+            minX = Math.min(minX, cmp.getX());
+            minY = Math.min(minY, cmp.getY());
+            maxX = Math.max(maxX, cmp.getX() + cmp.getWidth());
+            maxY = Math.max(maxY, cmp.getY() + cmp.getHeight());
+        }
+        if(maxX <= minX || maxY <= minY) {
+            return null;
+        }
+
+        // aim for roughly one child per cell
+        int side = 1;
+        while(side * side < count) {
+            side++;
+        }
+        SpatialIndex index = new SpatialIndex();
+        index.originX = minX;
+        index.originY = minY;
+        index.columns = side;
+        index.rows = side;
+        index.cellWidth = Math.max(1, (maxX - minX + side - 1) / side);
+        index.cellHeight = Math.max(1, (maxY - minY + side - 1) / side);
+
+        // first pass counts the entries of every cell, the second fills them
+        int cells = side * side;
+        int[] start = new int[cells + 1];
+        int total = 0;
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = c.getComponentAt(iter);
+            if(cmp.getWidth() <= 0 || cmp.getHeight() <= 0) {
+                continue;
+            }
+            int x1 = index.column(cmp.getX());
+            int x2 = index.column(cmp.getX() + cmp.getWidth() - 1);
+            int y1 = index.row(cmp.getY());
+            int y2 = index.row(cmp.getY() + cmp.getHeight() - 1);
+            total += (x2 - x1 + 1) * (y2 - y1 + 1);
+            if(total > count * MAX_ENTRIES_FACTOR) {
+                return null;
+            }
+            for(int y = y1 ; y <= y2 ; y++) {
+                for(int x = x1 ; x <= x2 ; x++) {
+                    start[y * side + x + 1]++;
+                }
+            }
+        }
+        for(int iter = 0 ; iter < cells ; iter++) {
+            start[iter + 1] += start[iter];
+        }
+        int[] fill = new int[cells];
+        System.arraycopy(start, 0, fill, 0, cells);
+        int[] e = new int[total];
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = c.getComponentAt(iter);
+            if(cmp.getWidth() <= 0 || cmp.getHeight() <= 0) {
+                continue;
+            }
+            int x1 = index.column(cmp.getX());
+            int x2 = index.column(cmp.getX() + cmp.getWidth() - 1);
+            int y1 = index.row(cmp.getY());
+            int y2 = index.row(cmp.getY() + cmp.getHeight() - 1);
+            for(int y = y1 ; y <= y2 ; y++) {
+                for(int x = x1 ; x <= x2 ; x++) {
+                    int cell = y * side + x;
+                    e[fill[cell]] = iter;
+                    fill[cell]++;
+                }
+            }
+        }
+        index.cellStart = start;
+        index.entries = e;
+        return index;
+    }
+
+    private int column(int x) {
+        return Math.max(0, Math.min(columns - 1, (x - originX) / cellWidth));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, (y - originY) / cellHeight));
+    }
+
+    /**
+     * Returns the cell containing the given point relative to the container or
+     * -1 if the point is outside of all the children
+     *
+     * @param x position relative to the container
+     * @param y position relative to the container
+     * @return the cell or -1
+     */
+    int cellAt(int x, int y) {
+        if(x < originX || y < originY || x >= originX + cellWidth * columns || y >= originY + cellHeight * rows) {
+            return -1;
+        }
+        return row(y) * columns + column(x);
+    }
+
+    /**
+     * Returns the position of the first entry of the cell
+     *
+     * @param cell the cell or -1
+     * @return offset into the entries
+     */
+    int getStart(int cell) {
+        if(cell < 0) {
+            return 0;
+        }
+        return cellStart[cell];
+    }
+
+    /**
+     * Returns the position following the last entry of the cell
+     *
+     * @param cell the cell or -1
+     * @return offset into the entries
+     */
+    int getEnd(int cell) {
+        if(cell < 0) {
+            return 0;
+        }
+        return cellStart[cell + 1];
+    }
+
+    /**
+     * Returns the index of the child at the given entry
+     *
+     * @param offset offset into the entries
+     * @return index of the child within the container
+     */
+    int getEntry(int offset) {
+        return entries[offset];
+    }
+}
@@ -25,6 +25,7 @@
 package com.sun.lwuit;
 
 import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.animations.AnimationClock;
 import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.geom.Rectangle;
 import java.io.DataInputStream;
@@ -34,6 +35,10 @@ import java.util.Vector;
 
 /**
  * An animation with pre-existing 
+ * <p>Frames are decoded ahead of time on the worker pool into a small ring of
+ * images held by the image cache so painting a frame is a single image draw,
+ * when the frames don't fit in the cache the rows of the frame are expanded
+ * through the palette and drawn in batches.
  *
  * @deprecated this class shouldn't be referenced directly, use the Image base class
  * for all functionality
@@ -52,6 +57,20 @@ public class StaticAnimation extends IndexedImage implements Animation {
     private int totalAnimationTime;
     
     private boolean loop;
+
+    /**
+     * Number of pixels expanded in a single batch when drawing from the palette
+     */
+    private static final int ROW_BATCH_PIXELS = 4096;
+
+    private static int frameRingSize = 3;
+
+    /**
+     * Cache keys of the ring slots and the frame held by every slot or -1
+     */
+    private ImageCache.Key[] ringKeys;
+    private int[] ringFrames;
+    private FrameDecoder decoder;
     
     /**
      * Invoked with the first frame value
@@ -106,24 +125,7 @@ public class StaticAnimation extends IndexedImage implements Animation {
         int height = getHeight();
         int width = getWidth();
         int[] array = new int[width * height];
-        byte[] imageDataByte = f.getKeyFrame();
-        int[] palette = getPalette();
-        
-        for(int line = 0 ; line < height ; line++) {
-            byte[] lineArray = f.getModifiedRow(line);
-            if(lineArray != null) {
-                for(int position = 0 ; position < width ; position++) {
-                    int i = lineArray[position] & 0xff;                
-                    array[position + (width * line)] = palette[i];
-                }
-            } else {
-                int currentPos = line * width;
-                for(int position = 0 ; position < width ; position++) {
-                    int i = imageDataByte[position + currentPos] & 0xff;                
-                    array[position + (width * line)] = palette[i];
-                }
-            }
-        }
+        expandRows(f, f.getKeyFrame(), getPalette(), width, 0, height, array, 0);
         return array;
     }
     
@@ -206,10 +208,10 @@ public class StaticAnimation extends IndexedImage implements Animation {
      */
     public boolean animate() {
         if(animationStartTime == 0) {
-            animationStartTime = System.currentTimeMillis();
+            animationStartTime = AnimationClock.getTime();
             return false;
         }
-        long currentTime = System.currentTimeMillis();
+        long currentTime = AnimationClock.getTime();
         int position = (int)(currentTime - animationStartTime);
         if(loop) {
             position %= totalAnimationTime;
@@ -242,7 +244,7 @@ public class StaticAnimation extends IndexedImage implements Animation {
      * Restarts the animation
      */
     public void restart() {
-        animationStartTime = System.currentTimeMillis();
+        animationStartTime = AnimationClock.getTime();
     }
 
     /**
@@ -270,18 +272,65 @@ public class StaticAnimation extends IndexedImage implements Animation {
         this.loop = loop;
     }
     
+    /**
+     * Sets the number of frames decoded ahead of time into images by every
+     * animation, animations whose frames don't fit within a quarter of the image
+     * cache are drawn from the palette data instead
+     *
+     * @param size number of frames, 0 disables decoding ahead of time
+     */
+    public static void setFrameRingSize(int size) {
+        frameRingSize = Math.max(0, size);
+    }
+
+    /**
+     * Returns the number of frames decoded ahead of time into images
+     *
+     * @return number of frames
+     */
+    public static int getFrameRingSize() {
+        return frameRingSize;
+    }
+
     /**
      * @inheritDoc
      */
     protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
-        if(currentFrame == 0) {
-            super.drawImage(g, nativeGraphics, x, y);
-            return;
+        int frame = currentFrame;
+        int size = getRingSize();
+        if(size > 0) {
+            if(ringKeys == null || ringKeys.length != size) {
+                clearRing();
+                ringKeys = new ImageCache.Key[size];
+                ringFrames = new int[size];
+                for(int iter = 0 ; iter < size ; iter++) {
+                    ringKeys[iter] = new ImageCache.Key(this, new Integer(iter), 0, 0);
+                    ringFrames[iter] = -1;
+                }
+            }
+            Image img = getRingFrame(frame);
+            requestFrames(frame);
+            if(img != null) {
+                g.drawImage(img, x, y);
+                return;
+            }
+        } else {
+            if(ringKeys != null) {
+                clearRing();
+            }
         }
+        drawRows(g, frame, x, y);
+    }
+
+    /**
+     * Draws the visible rows of the given frame in batches of several rows
+     */
+    private void drawRows(Graphics g, int frame, int x, int y) {
         int width = getWidth();
-        
-        if(lineCache == null || lineCache.length < width) {
-            lineCache = new int[width];
+        int height = getHeight();
+        int batch = Math.max(1, Math.min(height, ROW_BATCH_PIXELS / Math.max(1, width)));
+        if(lineCache == null || lineCache.length < width * batch) {
+            lineCache = new int[width * batch];
         }
         
         // for performance we can calculate the visible drawing area so we don't have to
@@ -289,45 +338,191 @@ public class StaticAnimation extends IndexedImage implements Animation {
         int clipY = g.getClipY();
         int clipBottomY = g.getClipHeight() + clipY;
         int firstLine = 0;
-        int lastLine = getHeight();
+        int lastLine = height;
         if(clipY > y) {
             firstLine = clipY - y;
         } 
-        if(clipBottomY < y + getHeight()) {
+        if(clipBottomY < y + height) {
             lastLine = clipBottomY - y;
         }
         
-        Frame f = frames[currentFrame - 1];
-        byte[] imageDataByte = f.getKeyFrame();
+        Frame f = null;
+        byte[] keyFrame = imageDataByte;
+        if(frame > 0) {
+            f = frames[frame - 1];
+            keyFrame = f.getKeyFrame();
+        }
         int[] palette = getPalette();
-        
-        // we draw based on the last keyframe and if a row was modified then we
-        // will draw that row rather than the keyframe
-        for(int line = firstLine ; line < lastLine ; line += 1) {
-            byte[] lineArray = f.getModifiedRow(line);
-            if(lineArray != null) {
-                for(int position = 0 ; position < width ; position++) {
-                    int i = lineArray[position] & 0xff;                
-                    lineCache[position] = palette[i];
+        for(int line = firstLine ; line < lastLine ; line += batch) {
+            int rows = Math.min(batch, lastLine - line);
+            expandRows(f, keyFrame, palette, width, line, rows, lineCache, 0);
+            g.drawRGB(lineCache, 0, x, y + line, width, rows, true);
+        }
+    }
+
+    /**
+     * Expands the given rows of a frame through the palette, rows modified by the
+     * frame are taken from the frame and the rest from its keyframe
+     *
+     * @param f the frame or null for the first frame
+     * @param keyFrame the keyframe of the frame
+     * @param palette the palette of the animation
+     * @param width the width of a row
+     * @param firstRow the first row to expand
+     * @param rows the number of rows to expand
+     * @param dest the destination array
+     * @param destOffset the offset in the destination array of the first row
+     */
+    private static void expandRows(Frame f, byte[] keyFrame, int[] palette, int width, int firstRow, int rows, int[] dest, int destOffset) {
+        for(int line = firstRow ; line < firstRow + rows ; line++) {
+            byte[] source = keyFrame;
+            int sourceOffset = line * width;
+            if(f != null) {
+                byte[] lineArray = f.getModifiedRow(line);
+                if(lineArray != null) {
+                    source = lineArray;
+                    sourceOffset = 0;
                 }
+            }
+            for(int position = 0 ; position < width ; position++) {
+                dest[destOffset + position] = palette[source[sourceOffset + position] & 0xff];
+            }
+            destOffset += width;
+        }
+    }
+
+    /**
+     * Returns the number of frames held in the ring of decoded frames or 0 if
+     * the frames shouldn't be decoded ahead of time
+     */
+    private int getRingSize() {
+        int size = Math.min(frameRingSize, getFrameCount());
+        if(size < 1 || getWidth() < 1 || getHeight() < 1 ||
+                ImageCache.estimateSize(getWidth(), getHeight()) * size > ImageCache.getInstance().getMaxBytes() / 4) {
+            return 0;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the decoded image of the given frame if it is in the ring
+     */
+    private Image getRingFrame(int frame) {
+        for(int iter = 0 ; iter < ringFrames.length ; iter++) {
+            if(ringFrames[iter] == frame) {
+                Image img = (Image)ImageCache.getInstance().get(ringKeys[iter]);
+                if(img == null) {
+                    // evicted by the image cache
+                    ringFrames[iter] = -1;
+                }
+                return img;
+            }
+        }
+        return null;
+    }
+
+    private boolean isInRing(int frame) {
+        for(int iter = 0 ; iter < ringFrames.length ; iter++) {
+            if(ringFrames[iter] == frame) {
+                return ImageCache.getInstance().peek(ringKeys[iter]) != null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the frame is one of the frames that should be in the ring
+     * when the given frame is displayed
+     */
+    private boolean isInWindow(int frame, int displayed) {
+        int distance = frame - displayed;
+        if(distance < 0) {
+            if(!loop) {
+                return false;
+            }
+            distance += getFrameCount();
+        }
+        return distance < ringFrames.length;
+    }
+
+    /**
+     * Starts decoding the frames following the given frame that are missing from
+     * the ring unless a decode is already in progress
+     */
+    private void requestFrames(int frame) {
+        if(decoder != null) {
+            return;
+        }
+        int frameCount = getFrameCount();
+        int first = -1;
+        int count = 0;
+        for(int iter = 0 ; iter < ringFrames.length ; iter++) {
+            int f = frame + iter;
+            if(f >= frameCount) {
+                if(!loop) {
+                    break;
+                }
+                f -= frameCount;
+            }
+            if(first > -1) {
+                count++;
             } else {
-                //if(!f.isDrawPrevious()) {
-                    int currentPos = line * width;
-                    for(int position = 0 ; position < width ; position++) {
-                        int i = imageDataByte[position + currentPos] & 0xff;                
-                        lineCache[position] = palette[i];
-                    }
-                //}
+                if(!isInRing(f)) {
+                    first = f;
+                    count = 1;
+                }
             }
-            g.drawRGB(lineCache, 0, x, y + line, width, 1, true);
         }
-    }    
-    
+        if(first > -1) {
+            decoder = new FrameDecoder(first, count);
+            if(!Display.getInstance().getWorkerPool().submit(decoder)) {
+                // the pool is saturated, we will try again in the next paint
+                decoder = null;
+            }
+        }
+    }
+
+    /**
+     * Places a decoded frame in a ring slot that isn't needed for the frames
+     * about to be displayed
+     */
+    private void storeFrame(int frame, Image img) {
+        int slot = -1;
+        for(int iter = 0 ; iter < ringFrames.length ; iter++) {
+            if(ringFrames[iter] == frame) {
+                slot = iter;
+                break;
+            }
+            if(slot < 0 && (ringFrames[iter] < 0 || !isInWindow(ringFrames[iter], currentFrame))) {
+                slot = iter;
+            }
+        }
+        if(slot > -1) {
+            ringFrames[slot] = frame;
+            ImageCache.getInstance().put(ringKeys[slot], img, ImageCache.estimateSize(getWidth(), getHeight()));
+        }
+    }
+
+    private void clearRing() {
+        if(decoder != null) {
+            decoder.cancel();
+            decoder = null;
+        }
+        if(ringKeys != null) {
+            for(int iter = 0 ; iter < ringKeys.length ; iter++) {
+                ImageCache.getInstance().remove(ringKeys[iter]);
+            }
+            ringKeys = null;
+            ringFrames = null;
+        }
+    }
+
     /**
      * @inheritDoc
      */
     public void scale(int width, int height) {
         StaticAnimation s = (StaticAnimation)scaled(width, height);
+        clearRing();
         super.scale(width, height);
         frames = s.frames;
     }
@@ -434,6 +629,89 @@ public class StaticAnimation extends IndexedImage implements Animation {
         return rect;
     }
     
+    /**
+     * Decodes a sequence of frames into images on the worker pool, frames sharing
+     * a keyframe are decoded from the previous frame by expanding only the rows
+     * modified by either frame
+     */
+    private class FrameDecoder extends BackgroundTask {
+        private int first;
+        private int count;
+        private Frame[] decodedFrames = frames;
+        private byte[] firstKeyFrame = imageDataByte;
+        private int width = getWidth();
+        private int height = getHeight();
+
+        FrameDecoder(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        protected Object execute() {
+            int frameCount = decodedFrames.length + 1;
+            int[] palette = getPalette();
+            Image[] result = new Image[count];
+            int[] previous = null;
+            Frame previousFrame = null;
+            byte[] previousKeyFrame = null;
+            for(int iter = 0 ; iter < count && !isCancelled() ; iter++) {
+                int frame = (first + iter) % frameCount;
+                Frame f = null;
+                byte[] keyFrame = firstKeyFrame;
+                if(frame > 0) {
+                    f = decodedFrames[frame - 1];
+                    keyFrame = f.getKeyFrame();
+                }
+                int[] rgb = new int[width * height];
+                if(previous != null && keyFrame == previousKeyFrame) {
+                    System.arraycopy(previous, 0, rgb, 0, rgb.length);
+                    if(previousFrame != null) {
+                        expandModifiedRows(f, keyFrame, palette, previousFrame.modifiedRowOffsets, rgb);
+                    }
+                    if(f != null) {
+                        expandModifiedRows(f, keyFrame, palette, f.modifiedRowOffsets, rgb);
+                    }
+                } else {
+                    expandRows(f, keyFrame, palette, width, 0, height, rgb, 0);
+                }
+                result[iter] = Image.createImage(rgb, width, height);
+                previous = rgb;
+                previousFrame = f;
+                previousKeyFrame = keyFrame;
+            }
+            return result;
+        }
+
+        private void expandModifiedRows(Frame f, byte[] keyFrame, int[] palette, int[] rows, int[] rgb) {
+            for(int iter = 0 ; iter < rows.length ; iter++) {
+                expandRows(f, keyFrame, palette, width, rows[iter], 1, rgb, rows[iter] * width);
+            }
+        }
+
+        protected void completed(Object result) {
+            if(decoder != this) {
+                return;
+            }
+            decoder = null;
+            if(decodedFrames != frames || ringFrames == null) {
+                // the animation was scaled or the ring was discarded
+                return;
+            }
+            Image[] images = (Image[])result;
+            int frameCount = frames.length + 1;
+            for(int iter = 0 ; iter < images.length ; iter++) {
+                storeFrame((first + iter) % frameCount, images[iter]);
+            }
+        }
+
+        protected void failed(Exception err) {
+            err.printStackTrace();
+            if(decoder == this) {
+                decoder = null;
+            }
+        }
+    }
+
     /**
      * Represents a frame within the animation that is not the first frame
      */
@@ -149,7 +149,8 @@ public class TextArea extends Component {
     
     // problematic  maxSize = 20; //maximum size (number of characters) that can be stored in this TextField.
     
-    private Vector rowStrings;
+    private LineBreaker rowStrings = new LineBreaker();
+    private boolean rowsInvalid = true;
     private int widthForRowCalculations = -1;
 
     private int rowsGap = 2;
@@ -344,7 +345,7 @@ public class TextArea extends Component {
         setScrollY(0);
         
         // special case to make the text field really fast...
-        rowStrings=null; //zero the vector inorder to initialize it on the next paint
+        rowsInvalid = true; //rows are wrapped again on the next paint
         repaint();
     }
 
@@ -590,8 +591,9 @@ public class TextArea extends Component {
         super.initComponentImpl();
     }
     
-    private Vector getRowStrings() {
-        if(rowStrings == null || widthForRowCalculations != getWidth() - getStyle().getPadding(false, RIGHT) - getStyle().getPadding(false, LEFT)){
+    private LineBreaker getRowStrings() {
+        if(rowsInvalid || widthForRowCalculations != getWidth() - getStyle().getPadding(false, RIGHT) - getStyle().getPadding(false, LEFT) ||
+                (rowStrings.getFont() != null && rowStrings.getFont() != getStyle().getFont())){
             initRowString();
             setShouldCalcPreferredSize(true);
         }
@@ -605,10 +607,7 @@ public class TextArea extends Component {
      * @return the number of text lines in the TextArea
      */
     public int getLines(){
-        int retVal;
-        Vector v = getRowStrings();
-        retVal = v.size();
-        return retVal;
+        return getRowStrings().getRowCount();
     }
     
     /**
@@ -618,25 +617,7 @@ public class TextArea extends Component {
      * @return the text of the line
      */
     public String getTextAt(int line){
-        Vector rowsV = getRowStrings();
-        return (String)rowsV.elementAt(line);
-    }
-    
-    private int indexOf(char[] t, char c, int offset, int length) {
-        for(int iter = offset ; iter < t.length && iter < offset+length; iter++) {
-            if(t[iter] == c) {
-                return iter;
-           }
-       }
-       return -1;
-   }
-
-    
-    private boolean fastCharWidthCheck(char[] chrs, int off, int length, int width, int charWidth, Font f) {
-        if(length * charWidth < width) {
-            return true;
-        }
-        return f.charsWidth(chrs, off, length) < width;
+        return getRowStrings().getRow(line);
     }
     
     /**
@@ -653,22 +634,15 @@ public class TextArea extends Component {
     
     private void initRowString() {
         Style style = getStyle();
-        rowStrings= new Vector();
         widthForRowCalculations = getWidth() - style.getPadding(false, RIGHT) - style.getPadding(false, LEFT);
+        rowsInvalid = false;
         // single line text area is essentially a text field, we call the method
         // to allow subclasses to override it
         if(isSingleLineTextArea()) {
-            rowStrings.addElement(getText());
-            return;
-        }
-        if(text == null || text.equals("")){
+            rowStrings.layoutSingleLine(getText());
             return;
         }
         char[] text = preprocess(getText());
-        int rows = this.rows;
-        if(growByContent) {
-            rows = Math.max(rows, getLines());
-        }
         
         Font font = style.getFont();
         int charWidth = font.charWidth(widestChar);
@@ -683,12 +657,7 @@ public class TextArea extends Component {
         }
         
         int minCharactersInRow = Math.max(1, textAreaWidth / charWidth);
-        int rowIndex=0;
-        int from=0;
-        int to=from+minCharactersInRow;
-        int textLength=text.length;
-        String rowText;
-        int i,spaceIndex;
+        int textLength = text.length;
         
         // if there is any possibility of a scrollbar we need to reduce the textArea
         // width to accommodate it
@@ -697,97 +666,17 @@ public class TextArea extends Component {
             textAreaWidth -= charWidth/2;
         }
         String unsupported = getUnsupportedChars();
-        
-        /*
-        iteration over the string using indexes, from - the beginning of the row , to - end of a row
-        for each row we will try to search for a "space" character at the end of the row ( row is text area available width)
-        indorder to improve the efficiency we do not search an entire row but we start from minCharactersInRow which indicates
-        what is the minimum amount of characters that can feet in the text area width.
-        if we dont find we will go backwards and search for the first space available,
-        if there is no space in the entire row we will cut the line inorder to fit in.
-         */
-
-        //Don't rely on the fact that short text has no newline character. we always have to parse the text.
-        to = Math.max( Math.min(textLength-1,to), 0 );
-        while(to<textLength) {
-            if(to>textLength){
-                to=textLength;
-            }
-
-            spaceIndex=-1;
-            rowText="";
-            int maxLength = to;
-
-            // search for "space" character at close as possible to the end of the row
-            for( i=to; i < textLength && fastCharWidthCheck(text, from, i - from, textAreaWidth, charWidth, font)  ; i++){
-                char c = text[i];
-                if(unsupported.indexOf(c) > -1) {
-                    text[i] = ' ';
-                    c = ' ';
-                }
-                if(c == ' ' || c == '\n') {
-                    spaceIndex=i;
-                    // newline has been found. We can end the loop here as the line cannot grow more
-                    if (c == '\n')
-                        break; 
-                }
-                maxLength++;
-            }
-            
-            // if we got to the end of the text use the entire row,
-            // also if space is next character (in the next row) we can cut the line
-            if(i == textLength || text[i] == ' ' || text[i] == '\n') {
-                spaceIndex=i;
-            }
-
-            // if we found space in the limit width of the row (searched only from minCharactersInRow)
-            if(spaceIndex!=-1){
-                // make sure that if we have a newline character before the end of the line we should
-                // break there instead
-                int newLine = indexOf(text, '\n', from, spaceIndex - from);
-                if(newLine > -1 && newLine < spaceIndex) {
-                    spaceIndex = newLine;
-                }
-
-                rowText = new String(text, from, spaceIndex - from);
-                from=spaceIndex+1;
-
-            } // if there is no space from minCharactersInRow to limit need to search backwards
-            else{
-                for( i=to; spaceIndex==-1 && i>=from ; i--){
-                    char chr = text[i];
-                    if(chr == ' ' || chr == '\n' || chr == '\t') {
-                        spaceIndex=i;
-                        
-                        // don't forget to search for line breaks in the
-                        // remaining part. otherwise we overlook possible
-                        // line breaks!
-                        int newLine = indexOf(text, '\n', from, i - from);
-                        if(newLine > -1 && newLine < spaceIndex) {
-                           spaceIndex = newLine;
-                        }
-                        rowText = new String(text, from, spaceIndex - from);
-                        from=spaceIndex+1;
-                    }
-
-                }
-                if(spaceIndex==-1) {
-                    // from = to + 1;
-                    if(maxLength <= 0) {
-                        maxLength = 1;
-                    }
-                    spaceIndex = maxLength;
-                    rowText = new String(text, from, spaceIndex - from);
-                    from = spaceIndex;
+        if(unsupported.length() > 0) {
+            for(int iter = 0 ; iter < textLength ; iter++) {
+                if(unsupported.indexOf(text[iter]) > -1) {
+                    text[iter] = ' ';
                 }
             }
-
-            rowStrings.addElement(rowText); 
-            //adding minCharactersInRow doesn't work if what is left is less
-            //then minCharactersInRow
-            to=from;//+minCharactersInRow;
-            rowIndex++;
         }
+
+        // the line breaker only wraps the modified paragraphs when the width
+        // and font are unchanged since the previous layout
+        rowStrings.layout(text, font, textAreaWidth);
     }
     
     /**
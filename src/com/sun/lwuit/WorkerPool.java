@@ -0,0 +1,285 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Vector;
+
+/**
+ * A small pool of threads owned by the display that performs background tasks
+ * such as decoding images, opening resources or parsing data away from the event
+ * dispatch thread. Threads are started on demand up to the configured maximum and
+ * tasks wait in a bounded queue, a task submitted while the queue is full is
+ * rejected so a burst of requests can't exhaust the memory of the device. The
+ * results of the tasks are delivered on the event dispatch thread.
+ *
+ * @see Display#getWorkerPool()
+ */
+public final class WorkerPool {
+    private Vector queue = new Vector();
+    private int maxThreads = 2;
+    private int maxQueueSize = 64;
+
+    private int threadCount;
+    private int idleThreads;
+    private int threadId;
+    private int active;
+
+    private int completed;
+    private int rejected;
+    private long totalRuntime;
+
+    WorkerPool() {
+    }
+
+    /**
+     * Sets the maximum number of worker threads, idle threads beyond the new
+     * maximum terminate
+     *
+     * @param maxThreads the number of threads, 1 or greater
+     */
+    public synchronized void setMaxThreads(int maxThreads) {
+        if(maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least 1");
+        }
+        this.maxThreads = maxThreads;
+        notifyAll();
+        startThreads();
+    }
+
+    /**
+     * Returns the maximum number of worker threads
+     *
+     * @return the number of threads
+     */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Sets the maximum number of tasks that may wait for a thread, tasks that are
+     * already queued are not affected
+     *
+     * @param maxQueueSize the number of waiting tasks, 0 or greater
+     */
+    public synchronized void setMaxQueueSize(int maxQueueSize) {
+        if(maxQueueSize < 0) {
+            throw new IllegalArgumentException("maxQueueSize can't be negative");
+        }
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Returns the maximum number of tasks that may wait for a thread
+     *
+     * @return the number of waiting tasks
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Queues the task for execution on a worker thread. A task waits in the queue
+     * only while all the threads are busy so a queue size of 0 accepts a task only
+     * when a thread is idle or another thread can be started.
+     *
+     * @param task the task to perform
+     * @return true if the task was queued, false if the queue is full or the task
+     * was cancelled
+     * @throws IllegalStateException if the task was already submitted
+     */
+    public synchronized boolean submit(BackgroundTask task) {
+        if(task.state != BackgroundTask.STATE_NEW) {
+            throw new IllegalStateException("Task was already submitted");
+        }
+        if(task.isCancelled()) {
+            return false;
+        }
+        int capacity = maxQueueSize + idleThreads + Math.max(0, maxThreads - threadCount);
+        if(queue.size() >= capacity) {
+            rejected++;
+            return false;
+        }
+        task.pool = this;
+        task.state = BackgroundTask.STATE_QUEUED;
+        queue.addElement(task);
+        if(idleThreads > 0) {
+            notify();
+        } else {
+            startThreads();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of threads currently executing a task
+     *
+     * @return number of busy threads
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread
+     *
+     * @return number of queued tasks
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of worker threads currently alive
+     *
+     * @return number of threads
+     */
+    public synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the number of tasks executed since the statistics were reset
+     *
+     * @return number of executed tasks
+     */
+    public synchronized int getCompletedCount() {
+        return completed;
+    }
+
+    /**
+     * Returns the number of tasks rejected because the queue was full since the
+     * statistics were reset
+     *
+     * @return number of rejected tasks
+     */
+    public synchronized int getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Returns the average time in milliseconds spent in the execute() method of a
+     * task since the statistics were reset
+     *
+     * @return the average runtime in milliseconds
+     */
+    public synchronized int getAverageRuntime() {
+        if(completed == 0) {
+            return 0;
+        }
+        return (int)(totalRuntime / completed);
+    }
+
+    /**
+     * Resets the completed, rejected and runtime counters
+     */
+    public synchronized void resetStatistics() {
+        completed = 0;
+        rejected = 0;
+        totalRuntime = 0;
+    }
+
+    /**
+     * Invoked by a cancelled task while holding the monitor of the pool
+     */
+    void remove(BackgroundTask task) {
+        queue.removeElement(task);
+    }
+
+    private void startThreads() {
+        int needed = Math.min(queue.size() - idleThreads, maxThreads - threadCount);
+        for(int iter = 0 ; iter < needed ; iter++) {
+            threadCount++;
+            threadId++;
+            new Thread(new Worker(), "Worker" + threadId).start();
+        }
+    }
+
+    /**
+     * Waits for the next task, returns null if the thread should terminate
+     */
+    private synchronized BackgroundTask next() {
+        while(queue.size() == 0 && threadCount <= maxThreads) {
+            idleThreads++;
+            try {
+                wait();
+            } catch(InterruptedException err) {
+                err.printStackTrace();
+            }
+            idleThreads--;
+        }
+        if(threadCount > maxThreads) {
+            threadCount--;
+            return null;
+        }
+        BackgroundTask task = (BackgroundTask)queue.elementAt(0);
+        queue.removeElementAt(0);
+        task.state = BackgroundTask.STATE_RUNNING;
+        active++;
+        return task;
+    }
+
+    /**
+     * Invoked when a worker thread is terminated by an error thrown from a task
+     */
+    private synchronized void terminated() {
+        threadCount--;
+        startThreads();
+    }
+
+    private synchronized void executed(BackgroundTask task, long runtime) {
+        task.state = BackgroundTask.STATE_FINISHED;
+        active--;
+        completed++;
+        totalRuntime += runtime;
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            BackgroundTask task = next();
+            try {
+                while(task != null) {
+                    Object result = null;
+                    Exception error = null;
+                    long start = System.currentTimeMillis();
+                    try {
+                        if(!task.isCancelled()) {
+                            result = task.execute();
+                        }
+                    } catch(Exception err) {
+                        error = err;
+                    } finally {
+                        executed(task, System.currentTimeMillis() - start);
+                    }
+                    task.finish(result, error);
+                    task = next();
+                }
+            } finally {
+                if(task != null) {
+                    terminated();
+                }
+            }
+        }
+    }
+}
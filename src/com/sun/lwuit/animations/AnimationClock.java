@@ -0,0 +1,172 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.animations;
+
+/**
+ * The time line shared by all the animations. The clock is sampled once when
+ * the display starts a frame and every animation asking for the time during that
+ * frame receives the same value, so motions, transitions and image animations
+ * advance in lock step and a frame is never painted with positions computed at
+ * different times. When the application is hidden the clock is paused and
+ * animations resume from the position they had when it was hidden rather than
+ * jumping ahead.
+ * <p>The clock also counts the number of animation ticks (calls to
+ * {@link Animation#animate()} made by forms) in every frame for profiling.
+ */
+public final class AnimationClock {
+    private static long frameTime;
+    private static boolean inFrame;
+
+    private static boolean paused;
+    private static long pauseStart;
+    private static long pausedTime;
+
+    private static int ticks;
+    private static int frameTicks;
+    private static int lastFrameTicks;
+    private static int maxFrameTicks;
+
+    private AnimationClock() {
+    }
+
+    /**
+     * Returns the current animation time in milliseconds. Within a frame this is
+     * the time sampled when the frame started, the value doesn't include the time
+     * during which the clock was paused.
+     *
+     * @return the animation time in milliseconds
+     */
+    public static synchronized long getTime() {
+        if(inFrame) {
+            return frameTime;
+        }
+        return sample();
+    }
+
+    private static long sample() {
+        if(paused) {
+            return pauseStart - pausedTime;
+        }
+        return System.currentTimeMillis() - pausedTime;
+    }
+
+    /**
+     * Invoked by the display when a frame starts, this method shouldn't be
+     * invoked by applications
+     */
+    public static synchronized void beginFrame() {
+        frameTime = sample();
+        inFrame = true;
+        frameTicks = 0;
+    }
+
+    /**
+     * Invoked by the display when a frame ends, this method shouldn't be
+     * invoked by applications
+     */
+    public static synchronized void endFrame() {
+        inFrame = false;
+        lastFrameTicks = frameTicks;
+        if(frameTicks > maxFrameTicks) {
+            maxFrameTicks = frameTicks;
+        }
+        frameTicks = 0;
+    }
+
+    /**
+     * Stops the clock, animations don't advance until the clock is resumed.
+     * The display pauses the clock when the application is hidden.
+     */
+    public static synchronized void pause() {
+        if(!paused) {
+            pauseStart = System.currentTimeMillis();
+            paused = true;
+        }
+    }
+
+    /**
+     * Restarts a paused clock from the time at which it was paused
+     */
+    public static synchronized void resume() {
+        if(paused) {
+            pausedTime += System.currentTimeMillis() - pauseStart;
+            paused = false;
+        }
+    }
+
+    /**
+     * Returns true if the clock is paused
+     *
+     * @return true if the clock is paused
+     */
+    public static synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Invoked whenever an animation is ticked by a form
+     */
+    public static synchronized void tick() {
+        ticks++;
+        frameTicks++;
+    }
+
+    /**
+     * Returns the number of animation ticks since the statistics were reset
+     *
+     * @return number of ticks
+     */
+    public static int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of animation ticks in the last completed frame
+     *
+     * @return number of ticks
+     */
+    public static int getLastFrameTicks() {
+        return lastFrameTicks;
+    }
+
+    /**
+     * Returns the largest number of animation ticks in a single frame since the
+     * statistics were reset
+     *
+     * @return number of ticks
+     */
+    public static int getMaxFrameTicks() {
+        return maxFrameTicks;
+    }
+
+    /**
+     * Resets the tick counters
+     */
+    public static synchronized void resetStatistics() {
+        ticks = 0;
+        lastFrameTicks = 0;
+        maxFrameTicks = 0;
+    }
+}
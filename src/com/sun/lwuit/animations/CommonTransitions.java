@@ -30,9 +30,11 @@ import com.sun.lwuit.Container;
 import com.sun.lwuit.Dialog;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
+import com.sun.lwuit.ImageCache;
 import com.sun.lwuit.Painter;
 import com.sun.lwuit.RGBImage;
 import com.sun.lwuit.plaf.UIManager;
+import java.lang.ref.WeakReference;
 
 /**
  * Contains common transition animations including the following:
@@ -41,6 +43,17 @@ import com.sun.lwuit.plaf.UIManager;
  * <li>Fade - components fade into/out of the screen
  * </ol>
  * <p>Instances of this class are created using factory methods.
+ * <p>The source and destination are rendered into buffers once when the transition
+ * starts and every frame is composed from these buffers, so the component trees
+ * aren't painted while the transition runs. Dialogs are the exception since they
+ * are translucent and are painted over the buffered form. Positions are sampled
+ * from the motion when a frame is painted so a slow device skips the frames it
+ * can't keep up with, and frames that are identical to the previous frame aren't
+ * painted at all. The buffers are kept in a small pool when the transition is
+ * cleaned up so the next transition can reuse them, the pool is separate from the
+ * {@link ImageCache} since screen sized buffers would evict all the other images.
+ * The pool only holds weak references so the buffers are released when memory
+ * is needed.
  * 
  * @author Shai Almog, Chen Fishbein
  */
@@ -69,6 +82,25 @@ public final class CommonTransitions extends Transition {
     private Image buffer;
     private Image secondaryBuffer;
 
+    /**
+     * The snapshot of the destination during a slide
+     */
+    private Image destBuffer;
+
+    /**
+     * Weakly holds a single buffer for each of the two buffer slots of a transition
+     */
+    private static final WeakReference[] bufferPool = new WeakReference[2];
+
+    /**
+     * The alpha of the fade is quantized to this step so the RGB buffer used on
+     * devices without alpha support is only rewritten when the step changes
+     */
+    private static final int FADE_ALPHA_STEP = 8;
+    private int rgbBufferAlpha = -1;
+    private int paintedPosition;
+    private boolean painted;
+
     private static boolean defaultLinearMotion = false;
     private boolean linearMotion = defaultLinearMotion;
     
@@ -162,6 +194,8 @@ public final class CommonTransitions extends Transition {
         Component source = getSource();
         Component destination = getDestination();
         position = 0;
+        painted = false;
+        rgbBufferAlpha = -1;
         int w = source.getWidth();
         int h = source.getHeight();
         
@@ -171,12 +205,12 @@ public final class CommonTransitions extends Transition {
             return;
         }
         if (buffer == null) {
-            buffer = Image.createImage(w, h);
+            buffer = acquireBuffer(0, w, h);
         } else {
             // this might happen when screen orientation changes or a MIDlet moves
             // to an external screen
             if(buffer.getWidth() != w || buffer.getHeight() != h) {
-                buffer = Image.createImage(w, h);
+                buffer = acquireBuffer(0, w, h);
                 rgbBuffer = null;
                 
                 // slide motion might need resetting since screen size is different
@@ -202,7 +236,7 @@ public final class CommonTransitions extends Transition {
             paint(g, getDestination(), 0, 0);
             if(g.isAlphaSupported()) {
                 secondaryBuffer = buffer;
-                buffer = Image.createImage(w, h);
+                buffer = acquireBuffer(1, w, h);
             } else {
                 rgbBuffer = new RGBImage(buffer.getRGBCached(), buffer.getWidth(), buffer.getHeight());
             }
@@ -288,7 +322,12 @@ public final class CommonTransitions extends Transition {
                     if(getDestination() instanceof Dialog) {
                         paint(g, getSource(), 0, 0);
                     } else {
-                        paint(g, source, -source.getAbsoluteX(), -source.getAbsoluteY());
+                        // render both sides once, the frames only draw the snapshots
+                        snapshot(g, source, source);
+                        if(destBuffer == null || destBuffer.getWidth() != w || destBuffer.getHeight() != h) {
+                            destBuffer = acquireBuffer(1, w, h);
+                        }
+                        snapshot(destBuffer.getGraphics(), destination, source);
                     }
                 }
                 motion.start();
@@ -296,6 +335,49 @@ public final class CommonTransitions extends Transition {
         }
     }
 
+    /**
+     * Renders the component into a buffer covering the area of the source, the
+     * backgrounds of the parents are rendered first since the buffer is opaque
+     */
+    private void snapshot(Graphics g, Component cmp, Component area) {
+        int x = area.getAbsoluteX();
+        int y = area.getAbsoluteY();
+        g.setClip(0, 0, area.getWidth(), area.getHeight());
+        g.translate(-x, -y);
+        if(area.getParent() != null) {
+            area.paintBackgrounds(g);
+        }
+        g.translate(x, y);
+        paint(g, cmp, -cmp.getAbsoluteX(), -cmp.getAbsoluteY());
+    }
+
+    /**
+     * Takes the pooled buffer of the given slot if it has the given size or
+     * creates a new one
+     */
+    private static Image acquireBuffer(int index, int w, int h) {
+        WeakReference ref = bufferPool[index];
+        bufferPool[index] = null;
+        Image i = null;
+        if(ref != null) {
+            i = (Image)ref.get();
+        }
+        if(i != null && i.getWidth() == w && i.getHeight() == h) {
+            return i;
+        }
+        return Image.createImage(w, h);
+    }
+
+    /**
+     * Returns a buffer to the pool so following transitions can reuse it, a
+     * buffer of a previous size is dropped
+     */
+    private static void releaseBuffer(int index, Image i) {
+        if(i != null) {
+            bufferPool[index] = new WeakReference(i);
+        }
+    }
+
     /**
      * @inheritDoc
      */
@@ -323,6 +405,12 @@ public final class CommonTransitions extends Transition {
      * @inheritDoc
      */
     public void paint(Graphics g) {
+        // the screen already shows this frame
+        if(painted && paintedPosition == position) {
+            return;
+        }
+        painted = true;
+        paintedPosition = position;
         try {
             switch (transitionType) {
                 case TYPE_SLIDE:
@@ -367,11 +455,17 @@ public final class CommonTransitions extends Transition {
                 graphics.drawImage(secondaryBuffer, x, y);
                 graphics.setAlpha(0xff);
             } else {
-                int alpha = position << 24;
-                int size = w * h;
-                int[] bufferArray = rgbBuffer.getRGB();
-                for (int iter = 0 ; iter < size ; iter++) {
-                    bufferArray[iter] = ((bufferArray[iter] & 0xFFFFFF) | alpha);
+                if(position < 255) {
+                    position -= position % FADE_ALPHA_STEP;
+                }
+                if(position != rgbBufferAlpha) {
+                    rgbBufferAlpha = position;
+                    int alpha = position << 24;
+                    int size = w * h;
+                    int[] bufferArray = rgbBuffer.getRGB();
+                    for (int iter = 0 ; iter < size ; iter++) {
+                        bufferArray[iter] = ((bufferArray[iter] & 0xFFFFFF) | alpha);
+                    }
                 }
                 Component dest = getDestination();                
                 int x = dest.getAbsoluteX();
@@ -387,9 +481,17 @@ public final class CommonTransitions extends Transition {
      */
     public void cleanup() {
         super.cleanup();
+        if(secondaryBuffer != null) {
+            releaseBuffer(0, secondaryBuffer);
+            releaseBuffer(1, buffer);
+        } else {
+            releaseBuffer(0, buffer);
+            releaseBuffer(1, destBuffer);
+        }
         buffer = null;
         rgbBuffer = null;
         secondaryBuffer = null;
+        destBuffer = null;
     }
 
     private void paintSlideAtPosition(Graphics g, int slideX, int slideY) {
@@ -435,14 +537,10 @@ public final class CommonTransitions extends Transition {
         //g.setClip(source.getAbsoluteX(), source.getAbsoluteY(), source.getWidth(), source.getHeight());
        
         //g.clipRect(dest.getAbsoluteX(), dest.getAbsoluteY(), source.getWidth(), source.getHeight());
-        if(source.getParent() != null){
-            source.paintBackgrounds(g);
-            paint(g, source, slideX , slideY );
-        }else{
-            g.drawImage(buffer, slideX, slideY);        
-        }
-        paint(g, dest, slideX + w, slideY + h);
-        
+        int x = source.getAbsoluteX();
+        int y = source.getAbsoluteY();
+        g.drawImage(buffer, x + slideX, y + slideY);
+        g.drawImage(destBuffer, x + slideX + w, y + slideY + h);
     }
 
     private void paint(Graphics g, Component cmp, int x, int y) {
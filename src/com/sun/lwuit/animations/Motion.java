@@ -28,11 +28,16 @@ package com.sun.lwuit.animations;
  * Abstracts the notion of physical motion over time from a numeric location to
  * another. This class can be subclassed to implement any motion equation for
  * appropriate physics effects.
- * <p>This class relies on the System.currentTimeMillis() method to provide
+ * <p>This class relies on the {@link AnimationClock} time line to provide
  * transitions between coordinates. The motion can be subclassed to provide every
  * type of motion feel from parabolic motion to spline and linear motion. The default
  * implementation provides a simple algorithm giving the feel of acceleration and
  * deceleration.
+ * <p>The start time and the time used to compute the value are read from
+ * {@link AnimationClock#getTime()} which doesn't advance while the application is
+ * hidden. Subclasses computing the elapsed time should subtract the start time
+ * from {@link AnimationClock#getTime()} rather than from System.currentTimeMillis()
+ * since the two time bases drift apart whenever the application is hidden.
  *
  * @author Shai Almog
  */
@@ -125,17 +130,17 @@ public class Motion {
      * Sets the start time to the current time
      */
     public void start() {
-        startTime = System.currentTimeMillis();
+        startTime = AnimationClock.getTime();
     }
 
     /**
      * Returns true if the motion has run its course and has finished meaning the current
      * time is greater than startTime + duration.
      * 
-     * @return true if System.currentTimeMillis() > duration + startTime
+     * @return true if AnimationClock.getTime() > duration + startTime
      */
     public boolean isFinished() {
-        return System.currentTimeMillis() > duration + startTime;
+        return AnimationClock.getTime() > duration + startTime;
     }
 
     private int getSplineValue() {
@@ -144,7 +149,7 @@ public class Motion {
             return destinationValue;
         }
         float totalTime = duration;
-        float currentTime = (int) (System.currentTimeMillis() - startTime);
+        float currentTime = (int) (AnimationClock.getTime() - startTime);
         currentTime = Math.min(currentTime, totalTime);
         int p = Math.abs(destinationValue - sourceValue);
         float centerTime = totalTime / 2;
@@ -193,7 +198,7 @@ public class Motion {
             return destinationValue;
         }
         float totalTime = duration;
-        float currentTime = (int) (System.currentTimeMillis() - startTime);
+        float currentTime = (int) (AnimationClock.getTime() - startTime);
         int dis = destinationValue - sourceValue;
         int val = (int)(sourceValue + (currentTime / totalTime * dis));
         
@@ -205,7 +210,7 @@ public class Motion {
     }
     
     private int getFriction() {
-        int time = (int) (System.currentTimeMillis() - startTime);
+        int time = (int) (AnimationClock.getTime() - startTime);
         int retVal = 0;
 
         retVal = (int)((Math.abs(initVelocity) * time) - (friction * (((float)time * time) / 2)));
@@ -235,9 +240,10 @@ public class Motion {
     }
 
     /**
-     * The value of System.currentTimemillis() when motion was started
+     * The value of {@link AnimationClock#getTime()} when motion was started, this
+     * isn't a System.currentTimeMillis() value
      * 
-     * @return the start time
+     * @return the start time on the animation clock time line
      */
     protected long getStartTime() {
         return startTime;
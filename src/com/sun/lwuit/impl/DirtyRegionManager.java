@@ -0,0 +1,245 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl;
+
+import com.sun.lwuit.animations.Animation;
+import java.util.Hashtable;
+
+/**
+ * Keeps track of the animations/components waiting to be painted and of the
+ * screen regions they dirty. Queued elements are deduplicated in constant time
+ * and the queue grows on demand so a repaint is never dropped. The dirty
+ * rectangles are coalesced into a small set of disjoint regions each of which
+ * is flushed separately, when the set grows beyond the configured limit the
+ * regions are merged into their bounding box.
+ * <p>The queue methods must be invoked while holding the display lock, the
+ * region methods are only used by the EDT.
+ */
+class DirtyRegionManager {
+    private Animation[] queue = new Animation[50];
+    private Animation[] queueTemp = new Animation[50];
+    private int queueFill;
+    private Hashtable queued = new Hashtable();
+
+    /**
+     * Regions are stored as x, y, width, height quadruples
+     */
+    private int[] regions;
+    private int regionCount;
+    private int maxRegions;
+    private boolean fullFlush;
+
+    /**
+     * Creates a region manager that flushes at most the given amount of regions
+     *
+     * @param maxRegions the maximum number of disjoint regions before they are
+     * merged into their bounding box
+     */
+    DirtyRegionManager(int maxRegions) {
+        setMaxRegions(maxRegions);
+    }
+
+    /**
+     * Sets the maximum number of disjoint regions flushed separately, the value
+     * takes effect on the next paint cycle
+     *
+     * @param maxRegions number of regions, 1 or greater
+     */
+    void setMaxRegions(int maxRegions) {
+        if (maxRegions < 1) {
+            throw new IllegalArgumentException("maxRegions must be at least 1");
+        }
+        this.maxRegions = maxRegions;
+    }
+
+    /**
+     * Returns the maximum number of disjoint regions flushed separately
+     *
+     * @return number of regions
+     */
+    int getMaxRegions() {
+        return maxRegions;
+    }
+
+    /**
+     * Adds the element to the paint queue unless it is already queued
+     *
+     * @param cmp component or animation
+     * @return true if the element was added, false if it was already pending
+     */
+    boolean add(Animation cmp) {
+        if (queued.containsKey(cmp)) {
+            return false;
+        }
+        if (queueFill >= queue.length) {
+            Animation[] n = new Animation[queue.length * 2];
+            System.arraycopy(queue, 0, n, 0, queueFill);
+            queue = n;
+        }
+        queue[queueFill] = cmp;
+        queueFill++;
+        queued.put(cmp, cmp);
+        return true;
+    }
+
+    /**
+     * Returns true if there are elements waiting to be painted
+     *
+     * @return true if the queue isn't empty
+     */
+    boolean hasPending() {
+        return queueFill != 0;
+    }
+
+    /**
+     * Moves the pending elements into the array returned by getPainting() and
+     * empties the queue so repaint requests arriving during paint are kept
+     *
+     * @return the number of elements to paint
+     */
+    int swap() {
+        int size = queueFill;
+        Animation[] array = queue;
+        queue = queueTemp;
+        queueTemp = array;
+        queueFill = 0;
+        queued.clear();
+        return size;
+    }
+
+    /**
+     * Returns the elements moved aside by the last call to swap(), the caller
+     * should null out the entries once they are painted
+     *
+     * @return array of elements to paint
+     */
+    Animation[] getPainting() {
+        return queueTemp;
+    }
+
+    /**
+     * Discards all the regions collected for the previous flush
+     */
+    void resetRegions() {
+        if (regions == null || regions.length != maxRegions * 4) {
+            regions = new int[maxRegions * 4];
+        }
+        regionCount = 0;
+        fullFlush = false;
+    }
+
+    /**
+     * Marks the whole screen as dirty
+     */
+    void markFullScreen() {
+        fullFlush = true;
+    }
+
+    /**
+     * Adds a dirty rectangle merging it with any region it touches
+     *
+     * @param x position of the region
+     * @param y position of the region
+     * @param w width of the region
+     * @param h height of the region
+     */
+    void addRegion(int x, int y, int w, int h) {
+        if (fullFlush || w <= 0 || h <= 0) {
+            return;
+        }
+        int x2 = x + w;
+        int y2 = y + h;
+
+        // merging two regions can make the union touch a third, keep merging
+        // until the new region is disjoint from all the others
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int iter = 0; iter < regionCount; iter++) {
+                int off = iter * 4;
+                int rx = regions[off];
+                int ry = regions[off + 1];
+                int rx2 = rx + regions[off + 2];
+                int ry2 = ry + regions[off + 3];
+                if (x <= rx2 && rx <= x2 && y <= ry2 && ry <= y2) {
+                    x = Math.min(x, rx);
+                    y = Math.min(y, ry);
+                    x2 = Math.max(x2, rx2);
+                    y2 = Math.max(y2, ry2);
+                    regionCount--;
+                    int last = regionCount * 4;
+                    regions[off] = regions[last];
+                    regions[off + 1] = regions[last + 1];
+                    regions[off + 2] = regions[last + 2];
+                    regions[off + 3] = regions[last + 3];
+                    merged = true;
+                    break;
+                }
+            }
+        }
+
+        if (regionCount * 4 >= regions.length) {
+            // too many disjoint regions, replace them with their bounding box
+            for (int iter = 0; iter < regionCount; iter++) {
+                int off = iter * 4;
+                x = Math.min(x, regions[off]);
+                y = Math.min(y, regions[off + 1]);
+                x2 = Math.max(x2, regions[off] + regions[off + 2]);
+                y2 = Math.max(y2, regions[off + 1] + regions[off + 3]);
+            }
+            regionCount = 0;
+        }
+        int off = regionCount * 4;
+        regions[off] = x;
+        regions[off + 1] = y;
+        regions[off + 2] = x2 - x;
+        regions[off + 3] = y2 - y;
+        regionCount++;
+    }
+
+    /**
+     * Flushes the collected regions clipped to the display bounds
+     *
+     * @param impl the implementation performing the flush
+     * @param displayWidth the width of the display
+     * @param displayHeight the height of the display
+     */
+    void flush(LWUITImplementation impl, int displayWidth, int displayHeight) {
+        if (fullFlush) {
+            impl.flushGraphics();
+            return;
+        }
+        for (int iter = 0; iter < regionCount; iter++) {
+            int off = iter * 4;
+            int x = Math.max(0, regions[off]);
+            int y = Math.max(0, regions[off + 1]);
+            int x2 = Math.min(displayWidth, regions[off] + regions[off + 2]);
+            int y2 = Math.min(displayHeight, regions[off + 1] + regions[off + 3]);
+            if (x2 > x && y2 > y) {
+                impl.flushGraphics(x, y, x2 - x, y2 - y);
+            }
+        }
+    }
+}
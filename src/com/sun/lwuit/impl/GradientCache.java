@@ -0,0 +1,241 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl;
+
+import java.util.Hashtable;
+
+/**
+ * Caches rendered gradients by their content, i.e. the type of the gradient, its
+ * colors, its size and its geometry, regardless of the position in which the
+ * gradient is drawn. Lookups are performed against a reusable key so a cache hit
+ * doesn't allocate. The least recently used gradients are evicted once the byte
+ * budget is exceeded.
+ */
+class GradientCache {
+    static final int LINEAR_HORIZONTAL = 0;
+    static final int LINEAR_VERTICAL = 1;
+    static final int RADIAL = 2;
+
+    /**
+     * Added to the type of gradients whose colors carry an alpha channel
+     */
+    static final int ALPHA = 4;
+
+    private Hashtable entries = new Hashtable();
+    private Entry probe = new Entry();
+
+    /**
+     * Head is the least recently used entry, tail is the most recently used
+     */
+    private Entry head;
+    private Entry tail;
+
+    private int maxBytes = 256 * 1024;
+    private int bytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * Sets the maximum number of bytes held by cached gradients
+     *
+     * @param maxBytes the size of the cache in bytes
+     */
+    synchronized void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    int getMaxBytes() {
+        return maxBytes;
+    }
+
+    int getBytes() {
+        return bytes;
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    int getEvictions() {
+        return evictions;
+    }
+
+    synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Removes all the cached gradients
+     */
+    synchronized void clear() {
+        entries.clear();
+        head = null;
+        tail = null;
+        bytes = 0;
+    }
+
+    /**
+     * Returns true if a gradient of the given size can be cached at all
+     *
+     * @param width the width of the gradient
+     * @param height the height of the gradient
+     * @return true if the gradient fits in the budget
+     */
+    boolean fits(int width, int height) {
+        return width * height * 4 <= maxBytes;
+    }
+
+    /**
+     * Returns the cached native image for the gradient and marks it as the most
+     * recently used
+     *
+     * @return the native image or null
+     */
+    synchronized Object get(int type, int startColor, int endColor, int width, int height, int centerX, int centerY, int size) {
+        probe.set(type, startColor, endColor, width, height, centerX, centerY, size);
+        Entry e = (Entry)entries.get(probe);
+        if(e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(e);
+        link(e);
+        return e.image;
+    }
+
+    /**
+     * Places the native image of a rendered gradient in the cache
+     */
+    synchronized void put(Object image, int type, int startColor, int endColor, int width, int height, int centerX, int centerY, int size) {
+        Entry e = new Entry();
+        e.set(type, startColor, endColor, width, height, centerX, centerY, size);
+        Entry old = (Entry)entries.remove(e);
+        if(old != null) {
+            unlink(old);
+            bytes -= old.bytes;
+        }
+        e.image = image;
+        e.bytes = width * height * 4;
+        entries.put(e, e);
+        bytes += e.bytes;
+        link(e);
+        evict();
+    }
+
+    private void evict() {
+        while(bytes > maxBytes && head != null) {
+            Entry e = head;
+            entries.remove(e);
+            unlink(e);
+            bytes -= e.bytes;
+            evictions++;
+        }
+    }
+
+    private void link(Entry e) {
+        e.prev = tail;
+        e.next = null;
+        if(tail != null) {
+            tail.next = e;
+        } else {
+            head = e;
+        }
+        tail = e;
+    }
+
+    private void unlink(Entry e) {
+        if(e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            head = e.next;
+        }
+        if(e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            tail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+
+    /**
+     * Serves both as the key and the value of a cached gradient
+     */
+    private static class Entry {
+        int type;
+        int startColor;
+        int endColor;
+        int width;
+        int height;
+        int centerX;
+        int centerY;
+        int size;
+        int hash;
+
+        Object image;
+        int bytes;
+        Entry prev;
+        Entry next;
+
+        void set(int type, int startColor, int endColor, int width, int height, int centerX, int centerY, int size) {
+            this.type = type;
+            this.startColor = startColor;
+            this.endColor = endColor;
+            this.width = width;
+            this.height = height;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.size = size;
+            int h = type;
+            h = h * 31 + startColor;
+            h = h * 31 + endColor;
+            h = h * 31 + width;
+            h = h * 31 + height;
+            h = h * 31 + centerX;
+            h = h * 31 + centerY;
+            hash = h * 31 + size;
+        }
+
+        public boolean equals(Object o) {
+            Entry e = (Entry)o;
+            return type == e.type && startColor == e.startColor && endColor == e.endColor &&
+                    width == e.width && height == e.height && centerX == e.centerX &&
+                    centerY == e.centerY && size == e.size;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -24,16 +24,19 @@
  */
 package com.sun.lwuit.impl;
 
-import com.sun.lwuit.impl.midp.GameCanvasImplementation;
-
 /**
  * Generic class allowing 3rd parties to replace the underlying implementation in
  * LWUIT seamlessly. The factory can be replaced by 3rd parties to install a new
  * underlying implementation using elaborate logic. 
+ * <p>The default factory loads the MIDP implementation by name so the core
+ * compiles without the MIDP API, an obfuscator must keep the name of
+ * com.sun.lwuit.impl.midp.GameCanvasImplementation.
  *
  * @author Shai Almog
  */
 public class ImplementationFactory {
+    private static final String DEFAULT_IMPLEMENTATION = "com.sun.lwuit.impl.midp.GameCanvasImplementation";
+
     private static ImplementationFactory instance = new ImplementationFactory();
     
     /**
@@ -67,6 +70,10 @@ public class ImplementationFactory {
      * @return a newly created implementation instance
      */
     public LWUITImplementation createImplementation() {
-        return new GameCanvasImplementation();
+        try {
+            return (LWUITImplementation)Class.forName(DEFAULT_IMPLEMENTATION).newInstance();
+        } catch (Exception err) {
+            throw new RuntimeException("Can't create " + DEFAULT_IMPLEMENTATION + ": " + err);
+        }
     }
 }
@@ -30,9 +30,6 @@ import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.geom.Rectangle;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
-import java.util.Enumeration;
-import java.util.Hashtable;
 
 /**
  * Represents a vendor extension mechanizm for LWUIT, <b>WARNING: this class is for internal
@@ -51,8 +48,13 @@ public abstract class LWUITImplementation {
     private static final char RTL_RANGE_BEGIN = 0x590;
     private static final char RTL_RANGE_END = 0x7BF;
 
-    private Hashtable linearGradientCache;
-    private Hashtable radialGradientCache;
+    /**
+     * The number of pixels rasterized at once when drawing a gradient that isn't cached
+     */
+    private static final int GRADIENT_BAND_PIXELS = 4096;
+
+    private GradientCache gradientCache = new GradientCache();
+    private int[] gradientBand;
 
     private int dragActivationCounter = 0;
     private int dragActivationX = 0;
@@ -60,9 +62,7 @@ public abstract class LWUITImplementation {
     private int dragStartPercentage = 3;
     private Form currentForm;
     private static Object displayLock;
-    private Animation[] paintQueue = new Animation[50];
-    private Animation[] paintQueueTemp = new Animation[50];
-    private int paintQueueFill = 0;
+    private DirtyRegionManager dirtyRegions = new DirtyRegionManager(4);
     private Graphics lwuitGraphics;
 
     private boolean bidi;
@@ -165,7 +165,7 @@ public abstract class LWUITImplementation {
      * @return false by default
      */
     public boolean hasPendingPaints() {
-        return paintQueueFill != 0;
+        return dirtyRegions.hasPending();
     }
 
     /**
@@ -211,24 +211,21 @@ public abstract class LWUITImplementation {
      */
     public void paintDirty() {
         int size = 0;
+        Animation[] painting;
         synchronized (displayLock) {
-            size = paintQueueFill;
-            Animation[] array = paintQueue;
-            paintQueue = paintQueueTemp;
-            paintQueueTemp = array;
-            paintQueueFill = 0;
+            size = dirtyRegions.swap();
+            painting = dirtyRegions.getPainting();
         }
         if (size > 0) {
             Graphics wrapper = getLWUITGraphics();
-            int topX = getDisplayWidth();
-            int topY = getDisplayHeight();
-            int bottomX = 0;
-            int bottomY = 0;
+            int displayWidth = getDisplayWidth();
+            int displayHeight = getDisplayHeight();
+            dirtyRegions.resetRegions();
             for (int iter = 0; iter < size; iter++) {
-                Animation ani = paintQueueTemp[iter];
-                paintQueueTemp[iter] = null;
+                Animation ani = painting[iter];
+                painting[iter] = null;
                 wrapper.translate(-wrapper.getTranslateX(), -wrapper.getTranslateY());
-                wrapper.setClip(0, 0, getDisplayWidth(), getDisplayHeight());
+                wrapper.setClip(0, 0, displayWidth, displayHeight);
                 if (ani instanceof Component) {
                     Component cmp = (Component) ani;
                     Rectangle dirty = cmp.getDirtyRegion();
@@ -238,27 +235,45 @@ public abstract class LWUITImplementation {
                     }
 
                     cmp.paintComponent(wrapper);
-                    int cmpAbsX = cmp.getAbsoluteX() + cmp.getScrollX();
-                    topX = Math.min(cmpAbsX, topX);
-                    bottomX = Math.max(cmpAbsX + cmp.getWidth(), bottomX);
-                    int cmpAbsY = cmp.getAbsoluteY() + cmp.getScrollY();
-                    topY = Math.min(cmpAbsY, topY);
-                    bottomY = Math.max(cmpAbsY + cmp.getHeight(), bottomY);
+                    if (dirty != null) {
+                        dirtyRegions.addRegion(dirty.getX(), dirty.getY(), dirty.getSize().getWidth(), dirty.getSize().getHeight());
+                    } else {
+                        dirtyRegions.addRegion(cmp.getAbsoluteX() + cmp.getScrollX(), cmp.getAbsoluteY() + cmp.getScrollY(),
+                                cmp.getWidth(), cmp.getHeight());
+                    }
                 } else {
-                    bottomX = getDisplayWidth();
-                    bottomY = getDisplayHeight();
-                    topX = 0;
-                    topY = 0;
+                    dirtyRegions.markFullScreen();
                     ani.paint(wrapper);
                 }
             }
 
             paintOverlay(wrapper);
 
-            flushGraphics(topX, topY, bottomX - topX, bottomY - topY);
+            dirtyRegions.flush(this, displayWidth, displayHeight);
         }
     }
 
+    /**
+     * Sets the maximum number of disjoint dirty regions flushed separately
+     * after a paint, when more regions are dirty they are merged into a single
+     * bounding box.
+     *
+     * @param maxRegions the number of regions, 1 flushes a single bounding box
+     * covering all the painted components
+     */
+    public void setMaxFlushRegions(int maxRegions) {
+        dirtyRegions.setMaxRegions(maxRegions);
+    }
+
+    /**
+     * Returns the maximum number of disjoint dirty regions flushed separately
+     *
+     * @return the number of regions
+     */
+    public int getMaxFlushRegions() {
+        return dirtyRegions.getMaxRegions();
+    }
+
     /**
      * This method is a callback from the edt before the edt enters to an idle 
      * state
@@ -329,21 +344,9 @@ public abstract class LWUITImplementation {
      */
     public void repaint(Animation cmp) {
         synchronized (displayLock) {
-            for (int iter = 0; iter < paintQueueFill; iter++) {
-                Animation ani = paintQueue[iter];
-                if (ani == cmp) {
-                    return;
-                }
-            }
-            // overcrowding the queue don't try to grow the array!
-            if (paintQueueFill >= paintQueue.length) {
-                System.out.println("Warning paint queue size exceeded, please watch the amount of repaint calls");
-                return;
+            if (dirtyRegions.add(cmp)) {
+                displayLock.notify();
             }
-
-            paintQueue[paintQueueFill] = cmp;
-            paintQueueFill++;
-            displayLock.notify();
         }
     }
 
@@ -1411,46 +1414,6 @@ public abstract class LWUITImplementation {
         Display.getInstance().showNotify();
     }
 
-    private Object findCachedGradient(Hashtable cache, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal, int centerX, int centerY, int size) {
-        if(cache != null) {
-            Enumeration e = cache.keys();
-            while(e.hasMoreElements()) {
-                int[] current = (int[])e.nextElement();
-                WeakReference currentRef = (WeakReference)cache.get(current);
-                Object currentImage = currentRef.get();
-                if(currentImage == null) {
-                    cache.remove(current);
-                    e = cache.keys();
-                    continue;
-                }
-                if(current[0] == startColor &&
-                        current[1] == endColor &&
-                        current[2] == x &&
-                        current[3] == y &&
-                        current[5] == centerX &&
-                        current[6] == centerY &&
-                        current[7] == size &&
-                        getImageWidth(currentImage) == width &&
-                        getImageHeight(currentImage) == height) {
-                    if((horizontal && current[4] == 1) || ((!horizontal) && current[4] == 0)) {
-                        return currentImage;
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
-    private void storeCachedGradient(Object img, Hashtable cache, int startColor, int endColor, int x, int y, boolean horizontal, int centerX, int centerY, int size) {
-        int[] key;
-        if(horizontal) {
-            key = new int[] {startColor, endColor, x, y, 1, centerX, centerY, size};
-        } else {
-            key = new int[] {startColor, endColor, x, y, 0, centerX, centerY, size};
-        }
-        cache.put(key, new WeakReference(img));
-    }
-
     /**
      * Draws a radial gradient in the given coordinates with the given colors,
      * doesn't take alpha into consideration when drawing the gradient.
@@ -1469,34 +1432,115 @@ public abstract class LWUITImplementation {
      * @param relativeSize  indicates the relative size of the gradient within the drawing region
      */
     public void fillRectRadialGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, float relativeX, float relativeY, float relativeSize) {
+        fillRectRadialGradient(graphics, startColor, endColor, x, y, width, height, relativeX, relativeY, relativeSize, false);
+    }
+
+    /**
+     * Draws a radial gradient within a rectangle in the given coordinates with the
+     * given colors, when processAlpha is true the alpha channel of the colors is
+     * interpolated as well.
+     *
+     * @param graphics the graphics context
+     * @param startColor the starting color
+     * @param endColor  the ending color
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param width the width of the region to be filled
+     * @param height the height of the region to be filled
+     * @param relativeX indicates the relative position of the gradient within the drawing region
+     * @param relativeY indicates the relative position of the gradient within the drawing region
+     * @param relativeSize  indicates the relative size of the gradient within the drawing region
+     * @param processAlpha true if the highest byte of the colors is an alpha channel,
+     * false if the gradient is opaque
+     */
+    public void fillRectRadialGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, float relativeX, float relativeY, float relativeSize, boolean processAlpha) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
         int centerX = (int) (width * (1 - relativeX));
         int centerY = (int) (height * (1 - relativeY));
-        int x2 = width / 2 - centerX;
-        int y2 = height / 2 - centerY;
-
         int size = (int)(Math.min(width, height) * relativeSize);
-
+        int type = GradientCache.RADIAL;
+        if(processAlpha) {
+            type |= GradientCache.ALPHA;
+        } else {
+            startColor |= 0xff000000;
+            endColor |= 0xff000000;
+        }
         if(cacheRadialGradients()) {
-            Object r = findCachedGradient(radialGradientCache, startColor, endColor, x, y, width, height, true, centerX, centerY, size);
+            Object r = gradientCache.get(type, startColor, endColor, width, height, centerX, centerY, size);
+            if(r == null && gradientCache.fits(width, height)) {
+                int[] rgb = new int[width * height];
+                rasterizeRadialGradient(rgb, startColor, endColor, width, height, centerX, centerY, size, 0, height);
+                r = createImage(rgb, width, height);
+                gradientCache.put(r, type, startColor, endColor, width, height, centerX, centerY, size);
+            }
             if(r != null) {
                 drawImage(graphics, r, x, y);
-            } else {
-                r = createMutableImage(width, height, 0xffffffff);
-                Object imageGraphics = getNativeGraphics(r);
-                setColor(imageGraphics, endColor);
-                fillRect(imageGraphics, 0, 0, width, height);
-                fillRadialGradientImpl(imageGraphics, startColor, endColor, x2, y2, size, size);
-                drawImage(graphics, r, x, y);
-                if(radialGradientCache == null) {
-                    radialGradientCache = new Hashtable();
-                }
-                storeCachedGradient(r, radialGradientCache, startColor, endColor, x, y, true, centerX, centerY, size);
+                return;
             }
-        } else {
-            setColor(graphics, endColor);
-            fillRect(graphics, x, y, width, height);
+        }
+        int rows = getGradientBandRows(width, height);
+        for(int row = 0 ; row < height ; row += rows) {
+            int count = Math.min(rows, height - row);
+            rasterizeRadialGradient(gradientBand, startColor, endColor, width, height, centerX, centerY, size, row, count);
+            drawRGB(graphics, gradientBand, 0, x, y + row, width, count, processAlpha);
+        }
+    }
 
-            fillRadialGradientImpl(graphics, startColor, endColor, x + x2, y + y2, size, size);
+    /**
+     * Returns the number of rows that fit in the band used to draw gradients that
+     * aren't cached, allocating the band if necessary
+     */
+    private int getGradientBandRows(int width, int height) {
+        int rows = Math.max(1, Math.min(height, GRADIENT_BAND_PIXELS / width));
+        if(gradientBand == null || gradientBand.length < rows * width) {
+            gradientBand = new int[Math.max(GRADIENT_BAND_PIXELS, width)];
+        }
+        return rows;
+    }
+
+    /**
+     * Writes rows of a rectangular radial gradient into the given array, the
+     * gradient is made of concentric rings whose colors move from the end color at
+     * the outer ring to the start color at the center
+     */
+    private void rasterizeRadialGradient(int[] rgb, int startColor, int endColor, int width, int height, int centerX, int centerY, int size, int firstRow, int rows) {
+        int rings = (size + 1) / 2;
+        int[] ringSquare = new int[rings];
+        int[] ringColor = new int[rings];
+        for(int iter = 0 ; iter < rings ; iter++) {
+            int diameter = size - 2 * iter;
+            ringSquare[iter] = diameter * diameter;
+            ringColor[iter] = calculateGradientColor(startColor, endColor, size, diameter);
+        }
+
+        // the rings are bounded by a square of the given size, coordinates are
+        // doubled so the centers of the pixels and the rings are integers
+        int ringX = 2 * (width / 2 - centerX) + size;
+        int ringY = 2 * (height / 2 - centerY) + size;
+        int lastRow = firstRow + rows;
+        int offset = 0;
+        for(int row = firstRow ; row < lastRow ; row++) {
+            int dy = 2 * row + 1 - ringY;
+            int dySquare = dy * dy;
+            int ring = -1;
+            for(int iter = 0 ; iter < width ; iter++) {
+                int dx = 2 * iter + 1 - ringX;
+                int d = dx * dx + dySquare;
+                while(ring < rings - 1 && ringSquare[ring + 1] >= d) {
+                    ring++;
+                }
+                while(ring >= 0 && ringSquare[ring] < d) {
+                    ring--;
+                }
+                if(ring < 0) {
+                    rgb[offset] = endColor;
+                } else {
+                    rgb[offset] = ringColor[ring];
+                }
+                offset++;
+            }
         }
     }
 
@@ -1580,46 +1624,169 @@ public abstract class LWUITImplementation {
      * @param horizontal indicating wheter it is a horizontal fill or vertical
      */
     public void fillLinearGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal) {
+        fillLinearGradient(graphics, startColor, endColor, x, y, width, height, horizontal, false);
+    }
+
+    /**
+     * Draws a linear gradient in the given coordinates with the given colors, when
+     * processAlpha is true the alpha channel of the colors is interpolated as well
+     *
+     * @param graphics the graphics context
+     * @param startColor the starting color
+     * @param endColor  the ending color
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param width the width of the region to be filled
+     * @param height the height of the region to be filled
+     * @param horizontal indicating wheter it is a horizontal fill or vertical
+     * @param processAlpha true if the highest byte of the colors is an alpha channel,
+     * false if the gradient is opaque
+     */
+    public void fillLinearGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal, boolean processAlpha) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        int type;
+        if(horizontal) {
+            type = GradientCache.LINEAR_HORIZONTAL;
+        } else {
+            type = GradientCache.LINEAR_VERTICAL;
+        }
+        if(processAlpha) {
+            type |= GradientCache.ALPHA;
+        } else {
+            startColor |= 0xff000000;
+            endColor |= 0xff000000;
+        }
         if(cacheLinearGradients()) {
-            Object r = findCachedGradient(linearGradientCache, startColor, endColor, x, y, width, height, horizontal, 0, 0, 0);
+            Object r = gradientCache.get(type, startColor, endColor, width, height, 0, 0, 0);
+            if(r == null && gradientCache.fits(width, height)) {
+                int[] rgb = new int[width * height];
+                rasterizeLinearGradient(rgb, startColor, endColor, width, height, 0, height, horizontal);
+                r = createImage(rgb, width, height);
+                gradientCache.put(r, type, startColor, endColor, width, height, 0, 0, 0);
+            }
             if(r != null) {
                 drawImage(graphics, r, x, y);
-            } else {
-                r = createMutableImage(width, height, 0xffffffff);
-                fillLinearGradientImpl(getNativeGraphics(r), startColor, endColor, 0, 0, width, height, horizontal);
-                drawImage(graphics, r, x, y);
-                if(linearGradientCache == null) {
-                    linearGradientCache = new Hashtable();
-                }
-                storeCachedGradient(r, linearGradientCache, startColor, endColor, x, y, horizontal, 0, 0, 0);
+                return;
             }
-        } else {
-            fillLinearGradientImpl(graphics, startColor, endColor, x, y, width, height, horizontal);
+        }
+        int rows = getGradientBandRows(width, height);
+        for(int row = 0 ; row < height ; row += rows) {
+            int count = Math.min(rows, height - row);
+
+            // the rows of a horizontal gradient are identical
+            if(!horizontal || row == 0) {
+                rasterizeLinearGradient(gradientBand, startColor, endColor, width, height, row, count, horizontal);
+            }
+            drawRGB(graphics, gradientBand, 0, x, y + row, width, count, processAlpha);
         }
     }
 
-    private void fillLinearGradientImpl(Object graphics, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal) {
-        int sourceR = startColor >> 16 & 0xff;
-        int sourceG = startColor >> 8 & 0xff;
-        int sourceB = startColor & 0xff;
-        int destR = endColor >> 16 & 0xff;
-        int destG = endColor >> 8 & 0xff;
-        int destB = endColor & 0xff;
-        int oldColor = getColor(graphics);
-        if (horizontal) {
-            for (int iter = 0; iter < width; iter++) {
-                updateGradientColor(graphics, sourceR, sourceG, sourceB, destR,
-                        destG, destB, width, iter);
-                drawLine(graphics, x + iter, y, x + iter, y + height);
+    /**
+     * Writes rows of a linear gradient into the given array
+     */
+    private void rasterizeLinearGradient(int[] rgb, int startColor, int endColor, int width, int height, int firstRow, int rows, boolean horizontal) {
+        if(horizontal) {
+            for(int iter = 0 ; iter < width ; iter++) {
+                rgb[iter] = calculateGradientColor(startColor, endColor, width, iter);
+            }
+            for(int row = 1 ; row < rows ; row++) {
+                System.arraycopy(rgb, 0, rgb, row * width, width);
             }
         } else {
-            for (int iter = 0; iter < height; iter++) {
-                updateGradientColor(graphics, sourceR, sourceG, sourceB, destR,
-                        destG, destB, height, iter);
-                drawLine(graphics, x, y + iter, x + width, y + iter);
+            int offset = 0;
+            for(int row = 0 ; row < rows ; row++) {
+                int color = calculateGradientColor(startColor, endColor, height, firstRow + row);
+                for(int iter = 0 ; iter < width ; iter++) {
+                    rgb[offset] = color;
+                    offset++;
+                }
             }
         }
-        setColor(graphics, oldColor);
+    }
+
+    /**
+     * Returns the ARGB color at the given offset within the distance of a gradient
+     */
+    private int calculateGradientColor(int startColor, int endColor, int distance, int offset) {
+        int a = calculateGraidentChannel(startColor >>> 24, endColor >>> 24, distance, offset);
+        int r = calculateGraidentChannel(startColor >> 16 & 0xff, endColor >> 16 & 0xff, distance, offset);
+        int g = calculateGraidentChannel(startColor >> 8 & 0xff, endColor >> 8 & 0xff, distance, offset);
+        int b = calculateGraidentChannel(startColor & 0xff, endColor & 0xff, distance, offset);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Sets the maximum number of bytes held by rendered gradients cached for
+     * drawing, the least recently used gradients are evicted beyond this size
+     *
+     * @param maxBytes the size of the gradient cache in bytes
+     */
+    public void setGradientCacheSize(int maxBytes) {
+        gradientCache.setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Returns the maximum number of bytes held by cached gradients
+     *
+     * @return the size of the gradient cache in bytes
+     */
+    public int getGradientCacheSize() {
+        return gradientCache.getMaxBytes();
+    }
+
+    /**
+     * Returns the number of bytes currently held by cached gradients
+     *
+     * @return size in bytes
+     */
+    public int getGradientCacheBytes() {
+        return gradientCache.getBytes();
+    }
+
+    /**
+     * Returns the number of gradients drawn from the cache since the statistics
+     * were reset
+     *
+     * @return number of cache hits
+     */
+    public int getGradientCacheHits() {
+        return gradientCache.getHits();
+    }
+
+    /**
+     * Returns the number of gradients that weren't found in the cache since the
+     * statistics were reset
+     *
+     * @return number of cache misses
+     */
+    public int getGradientCacheMisses() {
+        return gradientCache.getMisses();
+    }
+
+    /**
+     * Returns the number of gradients evicted from the cache since the statistics
+     * were reset
+     *
+     * @return number of evictions
+     */
+    public int getGradientCacheEvictions() {
+        return gradientCache.getEvictions();
+    }
+
+    /**
+     * Resets the gradient cache hit, miss and eviction counters
+     */
+    public void resetGradientCacheStatistics() {
+        gradientCache.resetStatistics();
+    }
+
+    /**
+     * Removes all the rendered gradients from the cache
+     */
+    public void clearGradientCache() {
+        gradientCache.clear();
     }
 
     private boolean checkIntersection(Object g, int y0, int x1, int x2, int y1, int y2, int[] intersections, int intersectionsCount) {
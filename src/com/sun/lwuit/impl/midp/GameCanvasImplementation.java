@@ -259,6 +259,9 @@ public class GameCanvasImplementation extends LWUITImplementation {
             flushGraphicsBug = true;
             Display.getInstance().setTransitionYield(-1);
         }
+        // with the bug every partial flush is a full flush, there is no point in
+        // flushing several regions
+        setMaxFlushRegions(flushGraphicsBug ? 1 : 4);
         display = javax.microedition.lcdui.Display.getDisplay((MIDlet) m);
         setSoftKeyCodes((MIDlet) m);
     }
@@ -525,6 +528,7 @@ public class GameCanvasImplementation extends LWUITImplementation {
      */
     public void setFlashGraphicsBug(boolean flushGraphicsBug) {
         this.flushGraphicsBug = flushGraphicsBug;
+        setMaxFlushRegions(flushGraphicsBug ? 1 : 4);
     }
 
     /**
@@ -0,0 +1,621 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.list;
+
+import com.sun.lwuit.BackgroundTask;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.events.DataChangedListener;
+import com.sun.lwuit.events.SelectionListener;
+import com.sun.lwuit.util.EventDispatcher;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * A list model for large data sets whose items are loaded in fixed size pages
+ * on the worker pool of the display rather than kept in memory. Only a window of
+ * the most recently used pages is kept, items of pages that aren't loaded yet are
+ * returned as a placeholder and the rows of a page are updated when it arrives.
+ * <p>Pages ahead of the visible rows are prefetched in the direction in which
+ * the list is scrolling, the faster the list scrolls the further ahead pages are
+ * loaded. The list reports its visible rows through setVisibleRange() when it
+ * paints, accessing an item through getItemAt() only loads the page of that item.
+ * Subclasses implement loadPage() which is invoked on a worker thread.
+ * <p>The model is read only, addItem() and removeItem() throw an exception. Use
+ * setSize() or refresh() when the underlying data changes.
+ */
+public abstract class PagingListModel implements ListModel {
+    /**
+     * Interval in milliseconds over which the position of the first visible
+     * row is sampled to determine the scrolling velocity
+     */
+    private static final int SAMPLE_INTERVAL = 100;
+
+    /**
+     * Time in milliseconds before a page that failed to load is requested again
+     */
+    private static final int RETRY_DELAY = 2000;
+
+    private int size;
+    private int pageSize;
+    private int maxPages = 8;
+    private int prefetchPages = 1;
+    private int prefetchTime = 500;
+    private Object placeholder = "";
+
+    /**
+     * Maps page numbers to loaded pages, pages are also linked from the least
+     * (head) to the most (tail) recently used
+     */
+    private Hashtable pages = new Hashtable();
+    private Page head;
+    private Page tail;
+
+    /**
+     * Page accessed last, avoids a lookup for consecutive items of a page
+     */
+    private Page lastPage;
+
+    /**
+     * Maps page numbers to the tasks loading them
+     */
+    private Hashtable loading = new Hashtable();
+
+    /**
+     * Maps page numbers of pages that failed to load to the failure time
+     */
+    private Hashtable failed = new Hashtable();
+
+    private int selectedIndex;
+    private EventDispatcher dataListener = new EventDispatcher();
+    private EventDispatcher selectionListener = new EventDispatcher();
+
+    /**
+     * Scrolling is tracked by sampling the first visible row in every interval
+     */
+    private long sampleStart;
+    private int sampleFirst = -1;
+    private int direction = 1;
+    private int velocity;
+
+    /**
+     * Visible pages and direction of the last prefetch, -1 when the next
+     * visible range should prefetch again
+     */
+    private int prefetchedFrom = -1;
+    private int prefetchedTo = -1;
+    private int prefetchedDirection;
+
+    /**
+     * Pages kept for the visible rows, one page behind them and the pages ahead,
+     * pages outside of this window are evicted first and their prefetches cancelled
+     */
+    private int windowFrom = -1;
+    private int windowTo = -1;
+
+    /**
+     * Creates a paging model
+     *
+     * @param size the number of items in the model
+     * @param pageSize the number of items loaded at once
+     */
+    public PagingListModel(int size, int pageSize) {
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        this.size = size;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Loads the items of a page, this method is invoked on a worker thread and
+     * may block
+     *
+     * @param offset the index of the first item in the page
+     * @param count the number of items in the page
+     * @return the items of the page, an array shorter than count indicates
+     * the remaining items aren't available
+     * @throws Exception to indicate the page couldn't be loaded, the page is
+     * requested again when it is accessed after a short delay
+     */
+    protected abstract Object[] loadPage(int offset, int count) throws Exception;
+
+    /**
+     * Invoked on the EDT when a page couldn't be loaded, the default
+     * implementation prints the stack trace
+     *
+     * @param offset the index of the first item in the page
+     * @param err the exception thrown by loadPage
+     */
+    protected void loadFailed(int offset, Exception err) {
+        err.printStackTrace();
+    }
+
+    /**
+     * Sets the item returned for items whose page isn't loaded
+     *
+     * @param placeholder the placeholder item
+     */
+    public void setPlaceholder(Object placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Returns the item returned for items whose page isn't loaded
+     *
+     * @return the placeholder item
+     */
+    public Object getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * Sets the maximum number of pages kept in memory, the least recently used
+     * pages are discarded when exceeded
+     *
+     * @param maxPages number of pages, at least 2
+     */
+    public void setMaxPages(int maxPages) {
+        if(maxPages < 2) {
+            throw new IllegalArgumentException("maxPages must be at least 2");
+        }
+        this.maxPages = maxPages;
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of pages kept in memory
+     *
+     * @return number of pages
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Sets the number of pages loaded ahead of the visible rows in the scrolling
+     * direction when the list isn't moving
+     *
+     * @param prefetchPages number of pages
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        this.prefetchPages = Math.max(0, prefetchPages);
+    }
+
+    /**
+     * Returns the number of pages loaded ahead of the visible rows
+     *
+     * @return number of pages
+     */
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * Sets the time in milliseconds the prefetch should cover when the list is
+     * scrolling, rows the list would reach at its current velocity within this
+     * time are loaded ahead. This should roughly match the time it takes to load
+     * a page.
+     *
+     * @param prefetchTime time in milliseconds
+     */
+    public void setPrefetchTime(int prefetchTime) {
+        this.prefetchTime = Math.max(0, prefetchTime);
+    }
+
+    /**
+     * Returns the time in milliseconds the prefetch covers when the list is scrolling
+     *
+     * @return time in milliseconds
+     */
+    public int getPrefetchTime() {
+        return prefetchTime;
+    }
+
+    /**
+     * Returns the number of items in a page
+     *
+     * @return number of items
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Indicates whether the item at the given index is loaded
+     *
+     * @param index the index of the item
+     * @return true if getItemAt() returns the actual item
+     */
+    public boolean isLoaded(int index) {
+        return pages.get(new Integer(index / pageSize)) != null;
+    }
+
+    /**
+     * Changes the number of items in the model, loaded pages are discarded
+     * and the listeners are notified
+     *
+     * @param size the number of items
+     */
+    public void setSize(int size) {
+        this.size = size;
+        refresh();
+    }
+
+    /**
+     * Discards all the loaded pages and cancels pending loads so items are loaded
+     * again when they are accessed, the listeners are notified
+     */
+    public void refresh() {
+        Enumeration e = loading.elements();
+        while(e.hasMoreElements()) {
+            ((PageLoader)e.nextElement()).cancel();
+        }
+        loading.clear();
+        failed.clear();
+        pages.clear();
+        head = null;
+        tail = null;
+        lastPage = null;
+        prefetchedFrom = -1;
+        windowFrom = -1;
+        windowTo = -1;
+        if(selectedIndex >= size) {
+            setSelectedIndex(Math.max(0, size - 1));
+        }
+        dataListener.fireDataChangeEvent(-1, DataChangedListener.CHANGED);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getItemAt(int index) {
+        if(index < 0 || index >= size) {
+            return null;
+        }
+        int number = index / pageSize;
+        Page p = lastPage;
+        if(p == null || p.number != number) {
+            p = (Page)pages.get(new Integer(number));
+            if(p != null) {
+                unlink(p);
+                link(p);
+                lastPage = p;
+            }
+        }
+        if(p == null) {
+            requestPage(number, false);
+            return placeholder;
+        }
+        int offset = index - number * pageSize;
+        if(offset >= p.items.length) {
+            return placeholder;
+        }
+        return p.items[offset];
+    }
+
+    /**
+     * Informs the model of the rows visible in the list, the list invokes this
+     * method whenever it paints its rows. The scrolling direction and velocity are
+     * derived from the movement of the first visible row, the visible pages and
+     * the pages ahead of them are requested and loads of pages that are no longer
+     * near the visible rows are cancelled.
+     *
+     * @param first the index of the first visible row
+     * @param last the index of the last visible row
+     */
+    public void setVisibleRange(int first, int last) {
+        if(size == 0 || last < first) {
+            return;
+        }
+        first = Math.max(0, Math.min(first, size - 1));
+        last = Math.max(first, Math.min(last, size - 1));
+        trackScrolling(first);
+        int from = first / pageSize;
+        int to = last / pageSize;
+        if(from != prefetchedFrom || to != prefetchedTo || direction != prefetchedDirection) {
+            prefetch(from, to);
+        }
+    }
+
+    /**
+     * Samples the first visible row once every interval, the change in that row
+     * between samples reflects the scrolling direction and velocity
+     */
+    private void trackScrolling(int first) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - sampleStart;
+        if(elapsed < SAMPLE_INTERVAL) {
+            return;
+        }
+        if(sampleFirst > -1) {
+            int delta = first - sampleFirst;
+            if(delta != 0 && elapsed < SAMPLE_INTERVAL * 4) {
+                direction = delta > 0 ? 1 : -1;
+                velocity = (int)(Math.abs(delta) * 1000 / elapsed);
+            } else {
+                velocity = 0;
+            }
+        }
+        sampleFirst = first;
+        sampleStart = now;
+    }
+
+    /**
+     * Requests the visible pages and the pages ahead of them in the scrolling
+     * direction, prefetched loads of pages that are no longer near are cancelled
+     */
+    private void prefetch(int from, int to) {
+        prefetchedFrom = from;
+        prefetchedTo = to;
+        prefetchedDirection = direction;
+        int lastPageNumber = (size - 1) / pageSize;
+        int leading = direction > 0 ? to : from;
+
+        // leave room for a page behind the visible pages and for a page accessed
+        // outside of the window, e.g. the first row the list uses for its renderer
+        int ahead = prefetchPages + (velocity * prefetchTime / 1000 + pageSize - 1) / pageSize;
+        ahead = Math.min(ahead, Math.max(0, maxPages - 3 - (to - from)));
+        if(direction > 0) {
+            windowFrom = from - 1;
+            windowTo = to + ahead;
+        } else {
+            windowFrom = from - ahead;
+            windowTo = to + 1;
+        }
+
+        Enumeration e = loading.elements();
+        while(e.hasMoreElements()) {
+            PageLoader l = (PageLoader)e.nextElement();
+            if(l.prefetched && (l.number < windowFrom || l.number > windowTo)) {
+                l.cancel();
+                loading.remove(new Integer(l.number));
+            }
+        }
+
+        for(int iter = from ; iter <= to ; iter++) {
+            requestPage(iter, true);
+        }
+        for(int iter = 1 ; iter <= ahead ; iter++) {
+            int page = leading + iter * direction;
+            if(page < 0 || page > lastPageNumber) {
+                break;
+            }
+            requestPage(page, true);
+        }
+    }
+
+    /**
+     * Submits a load of the given page unless it is loaded or loading, loads
+     * requested by getItemAt() aren't prefetched and are never cancelled by
+     * a change in the visible rows
+     */
+    private void requestPage(int number, boolean prefetched) {
+        Integer key = new Integer(number);
+        if(pages.get(key) != null) {
+            return;
+        }
+        PageLoader pending = (PageLoader)loading.get(key);
+        if(pending != null) {
+            if(!prefetched) {
+                pending.prefetched = false;
+            }
+            return;
+        }
+        Long failure = (Long)failed.get(key);
+        if(failure != null) {
+            if(System.currentTimeMillis() - failure.longValue() < RETRY_DELAY) {
+                return;
+            }
+            failed.remove(key);
+        }
+        PageLoader l = new PageLoader(number, prefetched);
+        if(Display.getInstance().getWorkerPool().submit(l)) {
+            loading.put(key, l);
+        } else {
+            // the pool is saturated, the page is requested again when the list paints
+            prefetchedFrom = -1;
+        }
+    }
+
+    /**
+     * Places a loaded page in the window and notifies the listeners of its items
+     */
+    private void pageLoaded(int number, Object[] items) {
+        Page p = new Page();
+        p.number = number;
+        p.items = items;
+        pages.put(new Integer(number), p);
+        link(p);
+        evict();
+        int first = number * pageSize;
+        int last = Math.min(size, first + items.length);
+        for(int iter = first ; iter < last ; iter++) {
+            dataListener.fireDataChangeEvent(iter, DataChangedListener.CHANGED);
+        }
+    }
+
+    /**
+     * Discards the least recently used pages outside of the prefetch window until
+     * the page limit is met, pages within the window are discarded last
+     */
+    private void evict() {
+        while(pages.size() > maxPages && head != null) {
+            Page p = head;
+            while(p != null && p.number >= windowFrom && p.number <= windowTo) {
+                p = p.next;
+            }
+            if(p == null) {
+                p = head;
+            }
+            unlink(p);
+            pages.remove(new Integer(p.number));
+            if(lastPage == p) {
+                lastPage = null;
+            }
+        }
+    }
+
+    private void link(Page p) {
+        p.prev = tail;
+        p.next = null;
+        if(tail != null) {
+            tail.next = p;
+        } else {
+            head = p;
+        }
+        tail = p;
+    }
+
+    private void unlink(Page p) {
+        if(p.prev != null) {
+            p.prev.next = p.next;
+        } else {
+            head = p.next;
+        }
+        if(p.next != null) {
+            p.next.prev = p.prev;
+        } else {
+            tail = p.prev;
+        }
+        p.prev = null;
+        p.next = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setSelectedIndex(int index) {
+        int oldIndex = selectedIndex;
+        selectedIndex = index;
+        if(index != oldIndex) {
+            direction = index > oldIndex ? 1 : -1;
+        }
+        selectionListener.fireSelectionEvent(oldIndex, selectedIndex);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void addDataChangedListener(DataChangedListener l) {
+        dataListener.addListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void removeDataChangedListener(DataChangedListener l) {
+        dataListener.removeListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void addSelectionListener(SelectionListener l) {
+        selectionListener.addListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void removeSelectionListener(SelectionListener l) {
+        selectionListener.removeListener(l);
+    }
+
+    /**
+     * The model is read only, this method throws an exception
+     *
+     * @param item ignored
+     */
+    public void addItem(Object item) {
+        throw new IllegalStateException("PagingListModel is read only");
+    }
+
+    /**
+     * The model is read only, this method throws an exception
+     *
+     * @param index ignored
+     */
+    public void removeItem(int index) {
+        throw new IllegalStateException("PagingListModel is read only");
+    }
+
+    private static class Page {
+        int number;
+        Object[] items;
+        Page prev;
+        Page next;
+    }
+
+    private class PageLoader extends BackgroundTask {
+        int number;
+        boolean prefetched;
+
+        PageLoader(int number, boolean prefetched) {
+            this.number = number;
+            this.prefetched = prefetched;
+        }
+
+        protected Object execute() throws Exception {
+            int offset = number * pageSize;
+            Object[] items = loadPage(offset, Math.min(pageSize, size - offset));
+            if(items == null) {
+                items = new Object[0];
+            }
+            return items;
+        }
+
+        protected void completed(Object result) {
+            if(loading.get(new Integer(number)) != this) {
+                return;
+            }
+            loading.remove(new Integer(number));
+            pageLoaded(number, (Object[])result);
+        }
+
+        protected void failed(Exception err) {
+            if(loading.get(new Integer(number)) != this) {
+                return;
+            }
+            loading.remove(new Integer(number));
+            failed.put(new Integer(number), new Long(System.currentTimeMillis()));
+            prefetchedFrom = -1;
+            loadFailed(number * pageSize, err);
+        }
+    }
+}
@@ -27,10 +27,10 @@ package com.sun.lwuit.plaf;
 import com.sun.lwuit.Component;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
+import com.sun.lwuit.ImageCache;
 import com.sun.lwuit.Painter;
 import com.sun.lwuit.RGBImage;
 import com.sun.lwuit.geom.Rectangle;
-import java.lang.ref.WeakReference;
 
 /**
  * Base class that allows us to render a border for a component, a border is drawn before
@@ -41,6 +41,11 @@ import java.lang.ref.WeakReference;
  * <p>A border can optionally paint the background of the component, this depends on
  * the border type and is generally required for rounded borders that "know" the area
  * that should be filled.
+ * <p>Rounded borders that paint an image or painter background and image borders are
+ * composited once into a raster that is kept in the {@link ImageCache}. The raster is
+ * keyed by the border instance (which also distinguishes the pressed and focused
+ * versions), the size and the background of the style, so components of the same size
+ * sharing a border and a background draw the same raster.
  *
  * @author Shai Almog
  */
@@ -520,12 +525,9 @@ public class Border {
                 Style s = c.getStyle();
                 if((s.getBgImage() != null && s.getBackgroundType() == Style.BACKGROUND_IMAGE_SCALED) ||
                     s.getBackgroundType() > 1) {
-                    WeakReference w = (WeakReference)s.roundRectCache;
-                    Image i = null;
-                    if(w != null) {
-                        i = (Image)w.get();
-                    }
-                    if(i != null && i.getWidth() == width && i.getHeight() == height) {
+                    ImageCache.Key key = getRasterKey(s, width, height);
+                    Image i = (Image)ImageCache.getInstance().get(key);
+                    if(i != null) {
                         g.drawImage(i, x, y);
                     } else {
                         // we need to draw a background image!
@@ -555,7 +557,7 @@ public class Border {
                             }
                         }
                         i = Image.createImage(imageRGB, width, height);
-                        s.roundRectCache = new WeakReference(i);
+                        ImageCache.getInstance().put(key, i, ImageCache.estimateSize(width, height));
                         g.drawImage(i, x, y);
                     }
                 } else {
@@ -613,6 +615,16 @@ public class Border {
                 }
                 break;
             case TYPE_IMAGE:
+                if(isRasterCacheable(width, height)) {
+                    ImageCache.Key key = getRasterKey(c.getStyle(), width, height);
+                    Image i = (Image)ImageCache.getInstance().get(key);
+                    if(i == null) {
+                        i = createImageBorderRaster(width, height);
+                        ImageCache.getInstance().put(key, i, ImageCache.estimateSize(width, height));
+                    }
+                    g.drawImage(i, x, y);
+                    break;
+                }
                 int clipX = g.getClipX();
                 int clipY = g.getClipY();
                 int clipWidth = g.getClipWidth();
@@ -797,6 +809,144 @@ public class Border {
         g.setColor(originalColor);
     }
 
+    /**
+     * Rasters larger than a quarter of the image cache would evict most of its
+     * content and are drawn directly instead
+     */
+    private static boolean isRasterCacheable(int width, int height) {
+        return width > 0 && height > 0 &&
+                ImageCache.estimateSize(width, height) <= ImageCache.getInstance().getMaxBytes() / 4;
+    }
+
+    /**
+     * Returns the image cache key of the raster of this border for the given style
+     * and size, the key last used by the style is reused to avoid allocations
+     */
+    private ImageCache.Key getRasterKey(Style s, int width, int height) {
+        RasterRef ref = (RasterRef)s.borderRaster;
+        if(ref != null && ref.border == this && ref.width == width && ref.height == height) {
+            return ref.key;
+        }
+        Object id;
+        if(type == TYPE_IMAGE) {
+            // the raster of an image border doesn't depend on the style
+            id = "imageBorder";
+        } else {
+            id = new BackgroundId(type, s);
+        }
+        ref = new RasterRef();
+        ref.border = this;
+        ref.width = width;
+        ref.height = height;
+        ref.key = new ImageCache.Key(this, id, width, height);
+        s.borderRaster = ref;
+        return ref.key;
+    }
+
+    /**
+     * Composites the images of an image border into a single translucent raster
+     * following the same layout as the tiled drawing
+     */
+    private Image createImageBorderRaster(int width, int height) {
+        int[] rgb = new int[width * height];
+        Image top = images[0];
+        Image bottom = images[1];
+        Image left = images[2];
+        Image right = images[3];
+        Image topLeft = images[4];
+        Image topRight = images[5];
+        Image bottomLeft = images[6];
+        Image bottomRight = images[7];
+        Image center = images[8];
+
+        if(center != null) {
+            int cx = topLeft.getWidth();
+            int cy = topLeft.getHeight();
+            int cw = width - topLeft.getWidth() - topRight.getWidth();
+            int ch = height - topLeft.getHeight() - bottomLeft.getHeight();
+            tile(rgb, width, height, center, cx, cy, cw, ch);
+        }
+        compose(rgb, width, height, topLeft, 0, 0, 0, 0, width, height);
+        compose(rgb, width, height, bottomLeft, 0, height - bottomLeft.getHeight(), 0, 0, width, height);
+        compose(rgb, width, height, topRight, width - topRight.getWidth(), 0, 0, 0, width, height);
+        compose(rgb, width, height, bottomRight, width - bottomRight.getWidth(),
+                height - bottomRight.getHeight(), 0, 0, width, height);
+
+        int lineWidth = width - topRight.getWidth() - topLeft.getWidth();
+        tile(rgb, width, height, top, topLeft.getWidth(), 0, lineWidth, top.getHeight());
+        lineWidth = width - bottomRight.getWidth() - bottomLeft.getWidth();
+        tile(rgb, width, height, bottom, bottomLeft.getWidth(), height - bottom.getHeight(), lineWidth, bottom.getHeight());
+        int columnHeight = height - bottomLeft.getHeight() - topLeft.getHeight();
+        tile(rgb, width, height, left, 0, topLeft.getHeight(), left.getWidth(), columnHeight);
+        columnHeight = height - bottomRight.getHeight() - topRight.getHeight();
+        tile(rgb, width, height, right, width - right.getWidth(), topRight.getHeight(), right.getWidth(), columnHeight);
+        return Image.createImage(rgb, width, height);
+    }
+
+    /**
+     * Tiles the image across the given region of the raster
+     */
+    private static void tile(int[] rgb, int width, int height, Image img, int x, int y, int w, int h) {
+        if(w <= 0 || h <= 0) {
+            return;
+        }
+        int imageWidth = img.getWidth();
+        int imageHeight = img.getHeight();
+        for(int yCount = y ; yCount < y + h ; yCount += imageHeight) {
+            for(int xCount = x ; xCount < x + w ; xCount += imageWidth) {
+                compose(rgb, width, height, img, xCount, yCount, x, y, w, h);
+            }
+        }
+    }
+
+    /**
+     * Draws the image over the raster at the given position within the clip
+     */
+    private static void compose(int[] rgb, int width, int height, Image img, int x, int y,
+            int clipX, int clipY, int clipW, int clipH) {
+        int imageWidth = img.getWidth();
+        int imageHeight = img.getHeight();
+        int x1 = Math.max(Math.max(x, clipX), 0);
+        int y1 = Math.max(Math.max(y, clipY), 0);
+        int x2 = Math.min(Math.min(x + imageWidth, clipX + clipW), width);
+        int y2 = Math.min(Math.min(y + imageHeight, clipY + clipH), height);
+        if(x2 <= x1 || y2 <= y1) {
+            return;
+        }
+        int[] src = img.getRGBCached();
+        for(int row = y1 ; row < y2 ; row++) {
+            int srcOffset = (row - y) * imageWidth + x1 - x;
+            int destOffset = row * width + x1;
+            for(int column = x1 ; column < x2 ; column++) {
+                int s = src[srcOffset];
+                int alpha = s >>> 24;
+                if(alpha == 0xff || rgb[destOffset] == 0) {
+                    rgb[destOffset] = s;
+                } else if(alpha != 0) {
+                    rgb[destOffset] = blend(s, rgb[destOffset]);
+                }
+                srcOffset++;
+                destOffset++;
+            }
+        }
+    }
+
+    /**
+     * Blends a translucent source pixel over a destination pixel
+     */
+    private static int blend(int s, int d) {
+        int sa = s >>> 24;
+        int da = (d >>> 24) * (0xff - sa) / 0xff;
+        int a = sa + da;
+        if(a == 0) {
+            return 0;
+        }
+        int r = (((s >> 16) & 0xff) * sa + ((d >> 16) & 0xff) * da) / a;
+        int g = (((s >> 8) & 0xff) * sa + ((d >> 8) & 0xff) * da) / a;
+        int b = ((s & 0xff) * sa + (d & 0xff) * da) / a;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
     private int getBackgroundColor(Component c) {
         return c.getStyle().getBgColor();
     }
@@ -844,4 +994,72 @@ public class Border {
     public static Border getDefaultBorder() {
         return defaultBorder;
     }
+
+    /**
+     * The raster key last used by a style
+     */
+    static class RasterRef {
+        Border border;
+        int width;
+        int height;
+        ImageCache.Key key;
+    }
+
+    /**
+     * Identifies the background painted within a rounded border by a snapshot of
+     * the background fields of the style. Painters are mutable and are compared
+     * by identity, they are only part of the snapshot when the background is
+     * drawn by the painter.
+     */
+    static class BackgroundId {
+        private int type;
+        private int backgroundType;
+        private Image bgImage;
+        private Painter bgPainter;
+        private int bgColor;
+        private int bgTransparency;
+        private int alignment;
+        private int startColor;
+        private int endColor;
+        private float relativeX;
+        private float relativeY;
+        private float relativeSize;
+
+        BackgroundId(int type, Style s) {
+            this.type = type;
+            backgroundType = s.getBackgroundType();
+            bgImage = s.getBgImage();
+            if(backgroundType != Style.BACKGROUND_IMAGE_SCALED) {
+                bgPainter = s.getBgPainter();
+            }
+            bgColor = s.getBgColor();
+            bgTransparency = s.getBgTransparency();
+            alignment = s.getBackgroundAlignment();
+            startColor = s.getBackgroundGradientStartColor();
+            endColor = s.getBackgroundGradientEndColor();
+            relativeX = s.getBackgroundGradientRelativeX();
+            relativeY = s.getBackgroundGradientRelativeY();
+            relativeSize = s.getBackgroundGradientRelativeSize();
+        }
+
+        public boolean equals(Object o) {
+            if(!(o instanceof BackgroundId)) {
+                return false;
+            }
+            BackgroundId b = (BackgroundId)o;
+            return type == b.type && backgroundType == b.backgroundType && bgImage == b.bgImage &&
+                    bgPainter == b.bgPainter && bgColor == b.bgColor && bgTransparency == b.bgTransparency &&
+                    alignment == b.alignment && startColor == b.startColor && endColor == b.endColor &&
+                    relativeX == b.relativeX && relativeY == b.relativeY && relativeSize == b.relativeSize;
+        }
+
+        public int hashCode() {
+            int h = type * 31 + backgroundType;
+            h = h * 31 + System.identityHashCode(bgImage);
+            h = h * 31 + System.identityHashCode(bgPainter);
+            h = h * 31 + bgColor;
+            h = h * 31 + startColor;
+            return h * 31 + endColor;
+        }
+    }
 }
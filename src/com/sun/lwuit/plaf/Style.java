@@ -27,7 +27,6 @@ package com.sun.lwuit.plaf;
 import com.sun.lwuit.*;
 import com.sun.lwuit.events.StyleListener;
 import com.sun.lwuit.util.EventDispatcher;
-import java.lang.ref.WeakReference;
 import java.util.Vector;
 
 /**
@@ -254,7 +253,10 @@ public class Style {
 
     private EventDispatcher listeners;
 
-    WeakReference roundRectCache;
+    /**
+     * The key of the border raster last drawn for this style in the image cache
+     */
+    Object borderRaster;
 
     /**
      * Each component when it draw itself uses this Object 
@@ -1153,7 +1155,7 @@ public class Style {
 
     
     private void firePropertyChanged(String propertName) {
-        roundRectCache = null;
+        borderRaster = null;
         if (listeners == null) {
             return;
         }
@@ -57,13 +57,6 @@ public class UIManager {
      */
     static boolean accessible = true;
     
-    /**
-     * Useful for caching theme images so they are not loaded twice in case 
-     * an image reference is used it two places in the theme (e.g. same background
-     * to title and menu bar).
-     */
-    private Hashtable imageCache = new Hashtable();
-    
     /**
      * The resource bundle allows us to implicitly localize the UI on the fly, once its
      * installed all internal application strings query the resource bundle and extract
@@ -359,7 +352,7 @@ public class UIManager {
         resetThemeProps();
         styles.clear();
         selectedStyles.clear();
-        imageCache.clear();
+        ImageCache.getInstance().removeOwner(this);
         if(themelisteners != null){
             themelisteners.fireActionEvent(new ActionEvent(themeProps));
         }
@@ -455,15 +448,15 @@ public class UIManager {
                 if(bgImage instanceof String){
                     try {
                         String bgImageStr = (String)bgImage;
-                        if(imageCache.contains(bgImageStr)) {
-                            im = (Image)imageCache.get(bgImageStr);
-                        } else { 
+                        ImageCache.Key key = new ImageCache.Key(this, bgImageStr, 0, 0);
+                        im = (Image)ImageCache.getInstance().get(key);
+                        if(im == null) { 
                             if(bgImageStr.startsWith("/")) {
                                 im = Image.createImage(bgImageStr);
                             } else {
                                 im = parseImage((String)bgImage);
                             }
-                            imageCache.put(bgImageStr, im);
+                            ImageCache.getInstance().put(key, im, ImageCache.estimateSize(im.getWidth(), im.getHeight()));
                         }
                         themeProps.put(id + Style.BG_IMAGE, im);
                     } catch (IOException ex) {
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.table;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.plaf.Style;
+
+/**
+ * Default implementation of the table renderer based on labels styled like the
+ * cells of a non virtualized table, see {@link TableCellRenderer} for more details.
+ */
+public class DefaultTableCellRenderer implements TableCellRenderer {
+    private Label header = new RendererLabel("TableHeader");
+    private Label cell = new RendererLabel("TableCell");
+
+    /**
+     * @inheritDoc
+     */
+    public Component getTableCellRendererComponent(Table table, Object value, boolean isSelected, int row, int column) {
+        Label l;
+        if(row == -1) {
+            l = header;
+            l.setAlignment(table.getTitleAlignment());
+        } else {
+            l = cell;
+            l.setAlignment(table.getCellAlignment());
+        }
+        l.setFocus(isSelected);
+        if(value != null) {
+            l.setText(value.toString());
+        } else {
+            l.setText("");
+        }
+        return l;
+    }
+
+    /**
+     * Refreshes the styles of the renderer components after a theme change
+     */
+    public void refreshTheme() {
+        header.refreshTheme();
+        cell.refreshTheme();
+        initStyle(header);
+        initStyle(cell);
+    }
+
+    static void initStyle(Component c) {
+        Style s = c.getSelectedStyle();
+        s.setMargin(0, 0, 0, 0);
+        s.setBgTransparency(0);
+        s = c.getUnselectedStyle();
+        s.setMargin(0, 0, 0, 0);
+        s.setBgTransparency(0);
+    }
+
+    /**
+     * Label whose repaint is a no-op since the renderer state changes for every cell
+     */
+    static class RendererLabel extends Label {
+        RendererLabel(String uiid) {
+            super("");
+            setUIID(uiid);
+            setCellRenderer(true);
+            initStyle(this);
+        }
+
+        /**
+         * Overriden to do nothing and remove a performance issue where renderer changes
+         * perform needless repaint calls
+         */
+        public void repaint() {
+        }
+    }
+}
@@ -26,28 +26,67 @@ package com.sun.lwuit.table;
 
 import com.sun.lwuit.Component;
 import com.sun.lwuit.Container;
+import com.sun.lwuit.Display;
 import com.sun.lwuit.Form;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Label;
+import com.sun.lwuit.Painter;
 import com.sun.lwuit.TextArea;
 import com.sun.lwuit.TextField;
 import com.sun.lwuit.events.ActionEvent;
 import com.sun.lwuit.events.ActionListener;
 import com.sun.lwuit.events.DataChangedListener;
+import com.sun.lwuit.events.FocusListener;
+import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.geom.Rectangle;
+import com.sun.lwuit.layouts.Layout;
 import com.sun.lwuit.plaf.Border;
 import com.sun.lwuit.plaf.Style;
 
 /**
  * The table class represents a grid of data that can be used for rendering a grid
  * of components/labels. The table reflects and updates the underlying model data.
+ * <p>By default every cell is a component within the table, a virtualized table
+ * instead draws only the visible cells using a {@link TableCellRenderer} (similarly
+ * to the way a list draws its entries) and creates an editor component only for
+ * the cell being edited. This keeps the memory use of the table flat regardless of
+ * the size of the model.
  *
  * @author Shai Almog
  */
 public class Table extends Container {
+    /**
+     * The number of rows measured to determine the column widths and row height
+     * of a virtualized table
+     */
+    private static final int SAMPLE_ROWS = 20;
+
     private TableModel model;
     private Listener listener = new Listener();
     private boolean drawBorder = true;
 
+    private boolean virtualized;
+    private TableCellRenderer renderer;
+    private int rowHeight = -1;
+    private int selectedRow;
+    private int selectedColumn;
+    private Component editor;
+    private int editingRow = -1;
+    private int editingColumn = -1;
+    private boolean pointerDragged;
+
+    /**
+     * Cached geometry of a virtualized table: the measured width of every column,
+     * the column offsets for the current layout width and the measured heights
+     */
+    private int[] columnWidths;
+    private int[] columnOffsets;
+    private int offsetsWidth = -1;
+    private int cachedRowHeight;
+    private int headerHeight;
+    private int renderedRowCount;
+    private Rectangle cellBounds = new Rectangle(0, 0, new Dimension());
+
     /**
      * Indicates the alignment of the title see label alignment for details
      * 
@@ -68,12 +107,29 @@ public class Table extends Container {
      * @param model the model underlying this table
      */
     public Table(TableModel model) {
+        this(model, false);
+    }
+
+    /**
+     * Create a table with a new model
+     *
+     * @param model the model underlying this table
+     * @param virtualized true to render only the visible cells instead of
+     * creating a component for every cell
+     * @see #setVirtualized(boolean)
+     */
+    public Table(TableModel model, boolean virtualized) {
         this.model = model;
+        this.virtualized = virtualized;
         updateModel();
         setUIID("Table");
     }
 
     private void updateModel() {
+        if(virtualized) {
+            updateVirtualModel();
+            return;
+        }
         int selectionRow = -1, selectionColumn = -1;
         Form f = getComponentForm();
         if(f != null) {
@@ -84,6 +140,7 @@ public class Table extends Container {
             }
         }
         removeAll();
+        setFocusable(false);
         int columnCount = model.getColumnCount();
 
         // another row for the table header
@@ -177,6 +234,564 @@ public class Table extends Container {
         return cell;
     }
 
+    private void updateVirtualModel() {
+        removeAll();
+        editor = null;
+        editingRow = -1;
+        editingColumn = -1;
+        setLayout(new VirtualLayout());
+        setFocusable(true);
+        renderedRowCount = model.getRowCount();
+        selectedRow = Math.max(0, Math.min(selectedRow, renderedRowCount - 1));
+        selectedColumn = Math.max(0, Math.min(selectedColumn, model.getColumnCount() - 1));
+        columnWidths = null;
+        columnOffsets = null;
+    }
+
+    /**
+     * Indicates whether the table renders only the visible cells through a
+     * {@link TableCellRenderer} rather than creating a component per cell
+     *
+     * @param virtualized true to virtualize the table
+     */
+    public void setVirtualized(boolean virtualized) {
+        if(this.virtualized != virtualized) {
+            this.virtualized = virtualized;
+            updateModel();
+            revalidate();
+        }
+    }
+
+    /**
+     * Indicates whether the table renders only the visible cells through a
+     * {@link TableCellRenderer} rather than creating a component per cell
+     *
+     * @return true if the table is virtualized
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * Sets the renderer used to draw the cells of a virtualized table
+     *
+     * @param renderer the cell renderer
+     */
+    public void setCellRenderer(TableCellRenderer renderer) {
+        this.renderer = renderer;
+        setShouldCalcPreferredSize(true);
+        repaint();
+    }
+
+    /**
+     * Returns the renderer used to draw the cells of a virtualized table
+     *
+     * @return the cell renderer
+     */
+    public TableCellRenderer getCellRenderer() {
+        if(renderer == null) {
+            renderer = new DefaultTableCellRenderer();
+        }
+        return renderer;
+    }
+
+    /**
+     * Sets a fixed height for the rows of a virtualized table, by default the row
+     * height is measured from the renderer
+     *
+     * @param rowHeight the height of a row in pixels or -1 to measure the rows
+     */
+    public void setRowHeight(int rowHeight) {
+        this.rowHeight = rowHeight;
+        setShouldCalcPreferredSize(true);
+        repaint();
+    }
+
+    /**
+     * Returns the fixed height for the rows of a virtualized table
+     *
+     * @return the height of a row in pixels or -1 if the rows are measured
+     */
+    public int getRowHeight() {
+        return rowHeight;
+    }
+
+    /**
+     * Returns the selected row of a virtualized table
+     *
+     * @return the selected row
+     */
+    public int getSelectedRow() {
+        return selectedRow;
+    }
+
+    /**
+     * Returns the selected column of a virtualized table
+     *
+     * @return the selected column
+     */
+    public int getSelectedColumn() {
+        return selectedColumn;
+    }
+
+    /**
+     * Selects a cell of a virtualized table and scrolls it into view
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     */
+    public void setSelectedCell(int row, int column) {
+        if(row == editingRow && column == editingColumn) {
+            return;
+        }
+        stopEditing();
+        repaintCell(selectedRow, selectedColumn);
+        selectedRow = row;
+        selectedColumn = column;
+        repaintCell(row, column);
+        int[] offsets = getColumnOffsets();
+        if(row < model.getRowCount() && column < offsets.length - 1) {
+            scrollRectToVisible(getCellX(column), getCellY(row), offsets[column + 1] - offsets[column],
+                    cachedRowHeight, this);
+        }
+    }
+
+    /**
+     * Creates an editor for the given cell of a virtualized table and places it
+     * on top of the cell, the editor is removed when it loses focus or the value
+     * is committed.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     */
+    public void editCell(int row, int column) {
+        if(!virtualized || !model.isCellEditable(row, column)) {
+            return;
+        }
+        stopEditing();
+        selectedRow = row;
+        selectedColumn = column;
+        editingRow = row;
+        editingColumn = column;
+        editor = createCellImpl(model.getValueAt(row, column), row, column, true);
+        editor.addFocusListener(listener);
+        addComponent(editor);
+        revalidate();
+        editor.requestFocus();
+    }
+
+    /**
+     * Commits the value of the editor of a virtualized table to the model and
+     * removes the editor
+     */
+    public void stopEditing() {
+        Component e = editor;
+        if(e == null) {
+            return;
+        }
+        int row = editingRow;
+        int column = editingColumn;
+        editor = null;
+        editingRow = -1;
+        editingColumn = -1;
+        e.removeFocusListener(listener);
+        boolean focused = e.hasFocus();
+        removeComponent(e);
+        if(e instanceof TextArea) {
+            String text = ((TextArea)e).getText();
+            Object value = model.getValueAt(row, column);
+            if(value == null || !text.equals(value.toString())) {
+                model.setValueAt(row, column, text);
+            }
+        }
+        if(focused) {
+            requestFocus();
+        }
+        repaintCell(row, column);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void setShouldCalcPreferredSize(boolean shouldCalcPreferredSize) {
+        super.setShouldCalcPreferredSize(shouldCalcPreferredSize);
+        if(shouldCalcPreferredSize) {
+            columnWidths = null;
+            columnOffsets = null;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void refreshTheme() {
+        super.refreshTheme();
+        if(renderer instanceof DefaultTableCellRenderer) {
+            ((DefaultTableCellRenderer)renderer).refreshTheme();
+        }
+    }
+
+    /**
+     * Measures the header and the first rows to determine the column widths and
+     * the row height of a virtualized table
+     */
+    private void calcCellSizes() {
+        int columns = model.getColumnCount();
+        int rows = Math.min(SAMPLE_ROWS, model.getRowCount());
+        TableCellRenderer r = getCellRenderer();
+        columnWidths = new int[columns];
+        headerHeight = 0;
+        int height = 0;
+        for(int c = 0 ; c < columns ; c++) {
+            Component cmp = r.getTableCellRendererComponent(this, model.getColumnName(c), false, -1, c);
+            columnWidths[c] = getOuterWidth(cmp);
+            headerHeight = Math.max(headerHeight, getOuterHeight(cmp));
+            for(int row = 0 ; row < rows ; row++) {
+                cmp = r.getTableCellRendererComponent(this, model.getValueAt(row, c), false, row, c);
+                columnWidths[c] = Math.max(columnWidths[c], getOuterWidth(cmp));
+                height = Math.max(height, getOuterHeight(cmp));
+            }
+        }
+        if(rowHeight > 0) {
+            cachedRowHeight = rowHeight;
+        } else {
+            cachedRowHeight = Math.max(1, height);
+        }
+    }
+
+    private static int getOuterWidth(Component cmp) {
+        Style s = cmp.getStyle();
+        return cmp.getPreferredW() + s.getMargin(false, LEFT) + s.getMargin(false, RIGHT);
+    }
+
+    private static int getOuterHeight(Component cmp) {
+        Style s = cmp.getStyle();
+        return cmp.getPreferredH() + s.getMargin(false, TOP) + s.getMargin(false, BOTTOM);
+    }
+
+    /**
+     * Returns the offsets of the columns within the table content area, extra
+     * width is distributed between the columns proportionally to their size.
+     * The array contains an additional entry for the end of the last column.
+     */
+    private int[] getColumnOffsets() {
+        if(columnWidths == null) {
+            calcCellSizes();
+        }
+        Style s = getStyle();
+        int width = getWidth() - s.getPadding(false, LEFT) - s.getPadding(false, RIGHT);
+        if(columnOffsets == null || offsetsWidth != width) {
+            offsetsWidth = width;
+            int columns = columnWidths.length;
+            int total = 0;
+            for(int c = 0 ; c < columns ; c++) {
+                total += columnWidths[c];
+            }
+            int extra = Math.max(0, width - total);
+            columnOffsets = new int[columns + 1];
+            int x = 0;
+            for(int c = 0 ; c < columns ; c++) {
+                columnOffsets[c] = x;
+                x += columnWidths[c];
+                if(total > 0) {
+                    x += extra * columnWidths[c] / total;
+                }
+            }
+            if(extra > 0) {
+                x = width;
+            }
+            columnOffsets[columns] = x;
+        }
+        return columnOffsets;
+    }
+
+    /**
+     * Returns the x position of the column relative to the table
+     */
+    private int getCellX(int column) {
+        int[] offsets = getColumnOffsets();
+        int x = getStyle().getPadding(isRTL(), LEFT);
+        if(isRTL()) {
+            return x + offsets[offsets.length - 1] - offsets[column + 1];
+        }
+        return x + offsets[column];
+    }
+
+    /**
+     * Returns the y position of the row relative to the table, -1 for the header
+     */
+    private int getCellY(int row) {
+        int y = getStyle().getPadding(false, TOP);
+        if(row < 0) {
+            return y;
+        }
+        return y + headerHeight + row * cachedRowHeight;
+    }
+
+    private void repaintCell(int row, int column) {
+        if(!virtualized || row >= model.getRowCount() || column >= model.getColumnCount()) {
+            return;
+        }
+        int[] offsets = getColumnOffsets();
+        repaint(getAbsoluteX() + getCellX(column), getAbsoluteY() + getCellY(row),
+                offsets[column + 1] - offsets[column], cachedRowHeight);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void paint(Graphics g) {
+        if(virtualized) {
+            paintCells(g);
+        }
+        super.paint(g);
+    }
+
+    /**
+     * Draws the header and the rows of a virtualized table that intersect the clip
+     */
+    private void paintCells(Graphics g) {
+        int[] offsets = getColumnOffsets();
+        int columns = offsets.length - 1;
+        int rowCount = model.getRowCount();
+        TableCellRenderer r = getCellRenderer();
+        int tx = getX();
+        int ty = getY();
+        g.translate(tx, ty);
+        int clipY = g.getClipY();
+        int clipHeight = g.getClipHeight();
+
+        int y = getCellY(-1);
+        if(y + headerHeight > clipY && y < clipY + clipHeight) {
+            for(int c = 0 ; c < columns ; c++) {
+                Component cmp = r.getTableCellRendererComponent(this, model.getColumnName(c), false, -1, c);
+                paintCell(g, cmp, -1, c, y, headerHeight, offsets, rowCount);
+            }
+        }
+
+        // the rows have a fixed height so the visible range is computed directly
+        y = getCellY(0);
+        int first = Math.max(0, (clipY - y) / cachedRowHeight);
+        int last = Math.min(rowCount - 1, (clipY + clipHeight - y) / cachedRowHeight);
+        boolean focused = hasFocus();
+        for(int row = first ; row <= last ; row++) {
+            int rowY = y + row * cachedRowHeight;
+            for(int c = 0 ; c < columns ; c++) {
+                if(row == editingRow && c == editingColumn) {
+                    continue;
+                }
+                boolean selected = focused && row == selectedRow && c == selectedColumn;
+                Component cmp = r.getTableCellRendererComponent(this, model.getValueAt(row, c), selected, row, c);
+                paintCell(g, cmp, row, c, rowY, cachedRowHeight, offsets, rowCount);
+            }
+        }
+        g.translate(-tx, -ty);
+    }
+
+    private void paintCell(Graphics g, Component cmp, int row, int column, int y, int height, int[] offsets, int rowCount) {
+        int x = getCellX(column);
+        int width = offsets[column + 1] - offsets[column];
+        int oX = g.getClipX();
+        int oY = g.getClipY();
+        int oWidth = g.getClipWidth();
+        int oHeight = g.getClipHeight();
+        if(!Rectangle.intersects(x, y, width, height, oX, oY, oWidth, oHeight)) {
+            return;
+        }
+        Style s = cmp.getStyle();
+        int left = s.getMargin(isRTL(), LEFT);
+        int top = s.getMargin(false, TOP);
+        cmp.setX(x + left);
+        cmp.setY(y + top);
+        cmp.setWidth(width - left - s.getMargin(isRTL(), RIGHT));
+        cmp.setHeight(height - top - s.getMargin(false, BOTTOM));
+        g.clipRect(cmp.getX(), cmp.getY(), cmp.getWidth(), cmp.getHeight());
+
+        Border b = s.getBorder();
+        boolean border = cmp.isBorderPainted() && b != null;
+        if(border && b.isBackgroundPainter()) {
+            b.paintBorderBackground(g, cmp);
+        } else {
+            Painter p = s.getBgPainter();
+            if(p != null) {
+                cellBounds.setX(cmp.getX());
+                cellBounds.setY(cmp.getY());
+                cellBounds.getSize().setWidth(cmp.getWidth());
+                cellBounds.getSize().setHeight(cmp.getHeight());
+                p.paint(g, cellBounds);
+            }
+        }
+        cmp.paint(g);
+        if(border) {
+            g.setColor(s.getFgColor());
+            b.paint(g, cmp);
+        }
+        g.setClip(oX, oY, oWidth, oHeight);
+
+        if(drawBorder) {
+            g.setColor(getUnselectedStyle().getFgColor());
+            int bw = width;
+            int bh = height;
+            if(column == offsets.length - 2) {
+                bw--;
+            }
+            if(row == rowCount - 1) {
+                bh--;
+            }
+            g.drawRect(x, y, bw, bh);
+        }
+    }
+
+    /**
+     * Returns the row at the given position relative to the table, -1 for the
+     * header or -2 if the position is outside of the table
+     */
+    private int getRowAt(int y) {
+        int top = getCellY(-1);
+        if(y < top) {
+            return -2;
+        }
+        if(y < top + headerHeight) {
+            return -1;
+        }
+        int row = (y - top - headerHeight) / cachedRowHeight;
+        if(row >= model.getRowCount()) {
+            return -2;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the column at the given position relative to the table or -1
+     */
+    private int getColumnAt(int x) {
+        int[] offsets = getColumnOffsets();
+        int columns = offsets.length - 1;
+        for(int c = 0 ; c < columns ; c++) {
+            int cellX = getCellX(c);
+            if(x >= cellX && x < cellX + offsets[c + 1] - offsets[c]) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void focusGained() {
+        super.focusGained();
+        if(virtualized) {
+            setHandlesInput(true);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setHandlesInput(boolean b) {
+        Form f = getComponentForm();
+        if(virtualized && f != null) {
+            // prevent the table from losing focus if its the only element
+            super.setHandlesInput(b || f.isSingleFocusMode());
+        } else {
+            super.setHandlesInput(b);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void keyPressed(int keyCode) {
+        if(!virtualized) {
+            super.keyPressed(keyCode);
+            return;
+        }
+        if(!handlesInput()) {
+            return;
+        }
+        int row = selectedRow;
+        int column = selectedColumn;
+        int forward = 1;
+        if(isRTL()) {
+            forward = -1;
+        }
+        switch(Display.getInstance().getGameAction(keyCode)) {
+            case Display.GAME_UP:
+                row--;
+                break;
+            case Display.GAME_DOWN:
+                row++;
+                break;
+            case Display.GAME_LEFT:
+                column -= forward;
+                break;
+            case Display.GAME_RIGHT:
+                column += forward;
+                break;
+            default:
+                return;
+        }
+        if(row < 0 || row >= model.getRowCount() || column < 0 || column >= model.getColumnCount()) {
+            setHandlesInput(false);
+            return;
+        }
+        setSelectedCell(row, column);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void keyReleased(int keyCode) {
+        if(virtualized && handlesInput() && Display.getInstance().getGameAction(keyCode) == Display.GAME_FIRE) {
+            editCell(selectedRow, selectedColumn);
+            return;
+        }
+        super.keyReleased(keyCode);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void pointerPressed(int x, int y) {
+        pointerDragged = false;
+        if(editor != null && editor.contains(x, y)) {
+            editor.pointerPressed(x, y);
+            return;
+        }
+        super.pointerPressed(x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void pointerDragged(int x, int y) {
+        pointerDragged = true;
+        super.pointerDragged(x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void pointerReleased(int x, int y) {
+        if(virtualized && !pointerDragged) {
+            if(editor != null && editor.contains(x, y)) {
+                editor.pointerReleased(x, y);
+                return;
+            }
+            int row = getRowAt(y - getAbsoluteY());
+            int column = getColumnAt(x - getAbsoluteX());
+            if(row >= 0 && column >= 0) {
+                if(row == selectedRow && column == selectedColumn) {
+                    editCell(row, column);
+                } else {
+                    setSelectedCell(row, column);
+                }
+            }
+        }
+        super.pointerReleased(x, y);
+    }
+
     /**
      * @inheritDoc
      */
@@ -298,11 +913,27 @@ public class Table extends Container {
     }
 
 
-    class Listener implements DataChangedListener, ActionListener {
+    class Listener implements DataChangedListener, ActionListener, FocusListener {
         /**
          * @inheritDoc
          */
         public final void dataChanged(int row, int column) {
+            if(virtualized) {
+                if(model.getRowCount() != renderedRowCount) {
+                    renderedRowCount = model.getRowCount();
+                    if(selectedRow >= renderedRowCount) {
+                        selectedRow = Math.max(0, renderedRowCount - 1);
+                    }
+                    if(editingRow >= renderedRowCount) {
+                        stopEditing();
+                    }
+                    setShouldCalcPreferredSize(true);
+                    revalidate();
+                } else {
+                    repaintCell(row, column);
+                }
+                return;
+            }
             Object value = model.getValueAt(row, column);
             boolean e = model.isCellEditable(row, column);
             Component cell = createCellImpl(value, row, column, e);
@@ -320,6 +951,53 @@ public class Table extends Container {
             int row = getCellRow(t);
             int column = getCellColumn(t);
             getModel().setValueAt(row, column, t.getText());
+            if(t == editor) {
+                stopEditing();
+            }
+        }
+
+        public void focusGained(Component cmp) {
+        }
+
+        public void focusLost(Component cmp) {
+            if(cmp == editor) {
+                stopEditing();
+            }
+        }
+    }
+
+    /**
+     * Places the editor of a virtualized table on top of the edited cell, the
+     * preferred size of the table is computed from the cached row and column sizes
+     */
+    class VirtualLayout extends Layout {
+        /**
+         * @inheritDoc
+         */
+        public void layoutContainer(Container parent) {
+            if(editor != null) {
+                int[] offsets = getColumnOffsets();
+                editor.setX(getCellX(editingColumn));
+                editor.setY(getCellY(editingRow));
+                editor.setWidth(offsets[editingColumn + 1] - offsets[editingColumn]);
+                editor.setHeight(cachedRowHeight);
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public Dimension getPreferredSize(Container parent) {
+            if(columnWidths == null) {
+                calcCellSizes();
+            }
+            int width = 0;
+            for(int c = 0 ; c < columnWidths.length ; c++) {
+                width += columnWidths[c];
+            }
+            Style s = getStyle();
+            return new Dimension(width + s.getPadding(false, LEFT) + s.getPadding(false, RIGHT),
+                    headerHeight + model.getRowCount() * cachedRowHeight + s.getPadding(false, TOP) + s.getPadding(false, BOTTOM));
         }
     }
 }
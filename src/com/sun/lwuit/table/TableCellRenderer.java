@@ -0,0 +1,50 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.table;
+
+import com.sun.lwuit.Component;
+
+/**
+ * A "rubber stamp" used by a virtualized {@link Table} to draw its cells, similar
+ * to the {@link com.sun.lwuit.list.ListCellRenderer} used by the list. The returned
+ * component (often the same instance for all invocations) is initialized to the
+ * value of the cell, drawn on the table and discarded. Only the cells that are
+ * visible are rendered so the memory used by the table doesn't grow with the model.
+ *
+ * @see Table#setVirtualized(boolean)
+ */
+public interface TableCellRenderer {
+    /**
+     * Returns a component instance that is already set to render "value"
+     *
+     * @param table the table component
+     * @param value the value to render
+     * @param isSelected whether the cell is selected
+     * @param row the row of the cell, -1 for the table header
+     * @param column the column of the cell
+     * @return a component to paint within the table
+     */
+    public Component getTableCellRendererComponent(Table table, Object value, boolean isSelected, int row, int column);
+}
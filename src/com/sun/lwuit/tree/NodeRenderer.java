@@ -0,0 +1,89 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.tree;
+
+import com.sun.lwuit.Button;
+import com.sun.lwuit.Component;
+import com.sun.lwuit.List;
+import com.sun.lwuit.list.ListCellRenderer;
+
+/**
+ * Default renderer of the rows of a virtualized tree, draws a node the same
+ * way as the buttons of a non virtualized tree indenting it by its depth
+ */
+class NodeRenderer extends Button implements ListCellRenderer {
+    private Tree tree;
+    private int indent = -1;
+
+    /**
+     * Creates a renderer for the given tree
+     *
+     * @param tree the tree whose rows are rendered
+     */
+    NodeRenderer(Tree tree) {
+        super("");
+        this.tree = tree;
+        setUIID("TreeNode");
+        setCellRenderer(true);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Component getListCellRendererComponent(List list, Object value, int index, boolean isSelected) {
+        setFocus(isSelected);
+        if(value == null || index >= list.getModel().getSize()) {
+            return this;
+        }
+        if(tree.isVisibleNodeLoading(index)) {
+            setText(value.toString());
+            setIcon(null);
+        } else {
+            setText(tree.childToDisplayLabel(value));
+            setIcon(tree.getVisibleNodeIcon(index));
+        }
+        int i = tree.getVisibleNodeDepth(index) * tree.getDepthIndent();
+        if(i != indent) {
+            indent = i;
+            getSelectedStyle().setMargin(LEFT, i);
+            getUnselectedStyle().setMargin(LEFT, i);
+        }
+        return this;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Component getListFocusComponent(List list) {
+        return null;
+    }
+
+    /**
+     * Overriden to do nothing and remove a performance issue where renderer changes
+     * perform needless repaint calls
+     */
+    public void repaint() {
+    }
+}
@@ -24,18 +24,21 @@
  */
 package com.sun.lwuit.tree;
 
+import com.sun.lwuit.BackgroundTask;
 import com.sun.lwuit.Button;
 import com.sun.lwuit.Component;
 import com.sun.lwuit.Container;
 import com.sun.lwuit.Display;
 import com.sun.lwuit.Image;
 import com.sun.lwuit.Label;
+import com.sun.lwuit.List;
 import com.sun.lwuit.animations.CommonTransitions;
 import com.sun.lwuit.events.ActionEvent;
 import com.sun.lwuit.events.ActionListener;
 import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.layouts.BorderLayout;
 import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.list.ListCellRenderer;
 import com.sun.lwuit.plaf.Style;
 import com.sun.lwuit.util.EventDispatcher;
 import java.util.Vector;
@@ -45,6 +48,10 @@ import java.util.Vector;
  * with no limit. The tree is bound to a model that can provide data with free form depth such as file system
  * or similarly structured data.
  * To customize the look of the tree the component can be derived and component creation can be replaced.
+ * <p>A virtualized tree doesn't create components for its nodes, it keeps a flattened
+ * array of the visible nodes which is displayed by a list and rendered through a
+ * {@link ListCellRenderer}. The children of a node are only requested from the model
+ * when the node is expanded, optionally on a separate thread.
  *
  * @author Shai Almog
  */
@@ -62,19 +69,186 @@ public class Tree extends Container {
     private static Image nodeImage;
     private int depthIndent = 15;
 
+    private boolean virtualized;
+    private boolean asyncLoading = true;
+    private List nodeList;
+    private VisibleNodeModel visibleNodes;
+
     /**
      * Construct a tree with the given tree model
      *
      * @param model represents the contents of the tree
      */
     public Tree(TreeModel model) {
+        this(model, false);
+    }
+
+    /**
+     * Construct a tree with the given tree model
+     *
+     * @param model represents the contents of the tree
+     * @param virtualized true to display the visible nodes in a list rather than
+     * creating a component for every node
+     */
+    public Tree(TreeModel model, boolean virtualized) {
         this.model = model;
-        setLayout(new BoxLayout(BoxLayout.Y_AXIS));
-        buildBranch(null, 0, this);
-        setScrollableY(true);
+        this.virtualized = virtualized;
+        if(virtualized) {
+            setLayout(new BorderLayout());
+            visibleNodes = new VisibleNodeModel(model.getChildren(null));
+            nodeList = new List(visibleNodes);
+            nodeList.setListCellRenderer(new NodeRenderer(this));
+            nodeList.addActionListener(expansionListener);
+            addComponent(BorderLayout.CENTER, nodeList);
+        } else {
+            setLayout(new BoxLayout(BoxLayout.Y_AXIS));
+            buildBranch(null, 0, this);
+            setScrollableY(true);
+        }
         setUIID("Tree");
     }
 
+    /**
+     * Indicates whether the tree displays its visible nodes in a list rather than
+     * creating a component for every node
+     *
+     * @return true if the tree is virtualized
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * Indicates whether a virtualized tree requests the children of an expanded
+     * node on a thread of the display worker pool, a placeholder row is shown
+     * while they load. This is useful for models whose getChildren() method is slow such as a
+     * file system.
+     *
+     * @param asyncLoading true to load the children on a separate thread
+     */
+    public void setAsyncLoading(boolean asyncLoading) {
+        this.asyncLoading = asyncLoading;
+    }
+
+    /**
+     * Indicates whether a virtualized tree requests the children of an expanded
+     * node on a separate thread
+     *
+     * @return true if the children are loaded on a separate thread
+     */
+    public boolean isAsyncLoading() {
+        return asyncLoading;
+    }
+
+    /**
+     * Sets the renderer for the rows of a virtualized tree, the renderer receives
+     * the node as the value and the visible row as the index
+     *
+     * @param renderer the row renderer
+     * @see #getVisibleNodeDepth(int)
+     * @see #isVisibleNodeExpanded(int)
+     * @throws IllegalStateException if the tree isn't virtualized
+     */
+    public void setNodeRenderer(ListCellRenderer renderer) {
+        checkVirtualized();
+        nodeList.setListCellRenderer(renderer);
+    }
+
+    /**
+     * Returns the depth of the node displayed in the given row of a virtualized tree
+     *
+     * @param index the visible row
+     * @return the depth of the node where the roots have a depth of 0
+     * @throws IllegalStateException if the tree isn't virtualized
+     */
+    public int getVisibleNodeDepth(int index) {
+        checkVirtualized();
+        return visibleNodes.getDepth(index);
+    }
+
+    /**
+     * Returns true if the node displayed in the given row of a virtualized tree is expanded
+     *
+     * @param index the visible row
+     * @return true if the node is expanded
+     * @throws IllegalStateException if the tree isn't virtualized
+     */
+    public boolean isVisibleNodeExpanded(int index) {
+        checkVirtualized();
+        return visibleNodes.isExpanded(index);
+    }
+
+    /**
+     * Returns true if the given row of a virtualized tree is a placeholder for
+     * children that are still loading
+     *
+     * @param index the visible row
+     * @return true if the row is a placeholder
+     * @throws IllegalStateException if the tree isn't virtualized
+     */
+    public boolean isVisibleNodeLoading(int index) {
+        checkVirtualized();
+        return visibleNodes.getItemAt(index) instanceof Loader;
+    }
+
+    private void checkVirtualized() {
+        if(!virtualized) {
+            throw new IllegalStateException("The visible rows are only available in a virtualized tree");
+        }
+    }
+
+    /**
+     * Returns the icon for the node displayed in the given row of a virtualized tree
+     */
+    Image getVisibleNodeIcon(int index) {
+        Object node = visibleNodes.getItemAt(index);
+        if(model.isLeaf(node)) {
+            return nodeImage;
+        }
+        if(visibleNodes.isExpanded(index)) {
+            return openFolder;
+        }
+        return folder;
+    }
+
+    int getDepthIndent() {
+        return depthIndent;
+    }
+
+    /**
+     * Expands or collapses the node in the given row of a virtualized tree or
+     * fires the leaf listener if the node is a leaf
+     */
+    private void toggleRow(int index) {
+        if(index < 0 || index >= visibleNodes.getSize() || isVisibleNodeLoading(index)) {
+            return;
+        }
+        Object node = visibleNodes.getItemAt(index);
+        if(model.isLeaf(node)) {
+            leafListener.fireActionEvent(new ActionEvent(node));
+            return;
+        }
+        if(visibleNodes.isExpanded(index)) {
+            // the rows of the descendants directly follow the node
+            visibleNodes.setExpanded(index, false);
+            visibleNodes.replace(index + 1, visibleNodes.getDescendantCount(index), null, 0);
+        } else {
+            visibleNodes.setExpanded(index, true);
+            int depth = visibleNodes.getDepth(index) + 1;
+            if(asyncLoading) {
+                Loader l = new Loader(node, depth, index + 1);
+                if(Display.getInstance().getWorkerPool().submit(l)) {
+                    visibleNodes.insert(index + 1, l, depth);
+                    return;
+                }
+                // the pool is saturated, load the children synchronously
+                visibleNodes.replace(index + 1, 0, model.getChildren(node), depth);
+            } else {
+                visibleNodes.replace(index + 1, 0, model.getChildren(node), depth);
+            }
+        }
+    }
+
     /**
      * Sets the icon for a tree folder 
      * 
@@ -136,6 +310,12 @@ public class Tree extends Container {
      * @return the object selected within the tree
      */
     public Object getSelectedItem() {
+        if(virtualized) {
+            if(isVisibleNodeLoading(nodeList.getSelectedIndex())) {
+                return null;
+            }
+            return nodeList.getSelectedItem();
+        }
         Component c = getComponentForm().getFocused();
         if(c != null) {
             return c.getClientProperty(KEY_OBJECT);
@@ -229,14 +409,19 @@ public class Tree extends Container {
         Dimension d = super.calcPreferredSize();
 
         // if the tree is entirely collapsed try to reserve at least 6 rows for the content
-        int count = getComponentCount();
-        for(int iter = 0 ; iter < count ; iter++) {
-            if(getComponentAt(iter) instanceof Container) {
-                return d;
+        int size;
+        if(virtualized) {
+            size = visibleNodes.getSize();
+        } else {
+            int count = getComponentCount();
+            for(int iter = 0 ; iter < count ; iter++) {
+                if(getComponentAt(iter) instanceof Container) {
+                    return d;
+                }
             }
+            size = model.getChildren(null).size();
         }
-        int size = model.getChildren(null).size();
-        if(size < 6) {
+        if(size > 0 && size < 6) {
             return new Dimension(Math.max(d.getWidth(), Display.getInstance().getDisplayWidth() / 4 * 3),
                     d.getHeight() / size * 6);
         }
@@ -256,6 +441,10 @@ public class Tree extends Container {
         }
 
         public void actionPerformed(ActionEvent evt) {
+            if(evt.getSource() == nodeList) {
+                toggleRow(nodeList.getSelectedIndex());
+                return;
+            }
             if(current != null) {
                 leafListener.fireActionEvent(new ActionEvent(current));
                 return;
@@ -269,4 +458,46 @@ public class Tree extends Container {
             }
         }
     }
+
+    /**
+     * Requests the children of a node on a separate thread and replaces the
+     * placeholder row with them on the EDT. The loader itself is the placeholder
+     * item of the row, if the node is collapsed while loading the placeholder is
+     * gone and the result is discarded.
+     */
+    private class Loader extends BackgroundTask {
+        private Object node;
+        private int depth;
+        private int row;
+
+        public Loader(Object node, int depth, int row) {
+            this.node = node;
+            this.depth = depth;
+            this.row = row;
+        }
+
+        protected Object execute() {
+            return model.getChildren(node);
+        }
+
+        protected void completed(Object children) {
+            replacePlaceholder((Vector)children);
+        }
+
+        protected void failed(Exception err) {
+            err.printStackTrace();
+            replacePlaceholder(null);
+        }
+
+        private void replacePlaceholder(Vector children) {
+            int index = visibleNodes.indexOf(this, row);
+            if(index > -1) {
+                visibleNodes.replace(index, 1, children, depth);
+            }
+        }
+
+        public String toString() {
+            return "...";
+        }
+    }
 }
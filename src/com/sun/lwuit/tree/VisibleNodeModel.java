@@ -0,0 +1,345 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.tree;
+
+import com.sun.lwuit.events.DataChangedListener;
+import com.sun.lwuit.events.SelectionListener;
+import com.sun.lwuit.list.ListModel;
+import com.sun.lwuit.util.EventDispatcher;
+import java.util.Vector;
+
+/**
+ * List model of a virtualized tree holding the flattened array of the visible
+ * nodes in display order along with their depth and expansion state. Expanding
+ * a node inserts its children right after it and collapsing it removes the
+ * consecutive rows of greater depth that follow it, so neither operation walks
+ * the rest of the tree.
+ * <p>A change spanning several rows fires an event per row. While the events are
+ * fired the rows that weren't reported yet are hidden from the listeners so the
+ * model always matches the events received so far.
+ */
+class VisibleNodeModel implements ListModel {
+    private Object[] nodes;
+    private int[] depths;
+    private boolean[] expanded;
+    private int size;
+    private int selectedIndex;
+
+    /**
+     * Rows starting at hiddenIndex are offset by hiddenCount while the events of
+     * a change are fired
+     */
+    private int hiddenIndex;
+    private int hiddenCount;
+
+    private EventDispatcher dataListener = new EventDispatcher();
+    private EventDispatcher selectionListener = new EventDispatcher();
+
+    /**
+     * Creates a model showing the given root nodes
+     *
+     * @param roots the roots of the tree
+     */
+    VisibleNodeModel(Vector roots) {
+        int count = roots.size();
+        nodes = new Object[Math.max(16, count)];
+        depths = new int[nodes.length];
+        expanded = new boolean[nodes.length];
+        for(int iter = 0 ; iter < count ; iter++) {
+            nodes[iter] = roots.elementAt(iter);
+        }
+        size = count;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getItemAt(int index) {
+        if(index < 0 || index >= getSize()) {
+            return null;
+        }
+        return nodes[row(index)];
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSize() {
+        return size - hiddenCount;
+    }
+
+    /**
+     * Maps a row as seen by the listeners to the position in the arrays
+     */
+    private int row(int index) {
+        if(index >= hiddenIndex) {
+            return index + hiddenCount;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the depth of the row, roots have a depth of 0
+     *
+     * @param index the row
+     * @return the depth of the node
+     */
+    int getDepth(int index) {
+        return depths[row(index)];
+    }
+
+    /**
+     * Returns true if the node in the given row is expanded
+     *
+     * @param index the row
+     * @return true if the node is expanded
+     */
+    boolean isExpanded(int index) {
+        return expanded[row(index)];
+    }
+
+    /**
+     * Marks the node in the given row as expanded or collapsed
+     *
+     * @param index the row
+     * @param e true for expanded
+     */
+    void setExpanded(int index, boolean e) {
+        expanded[index] = e;
+        dataListener.fireDataChangeEvent(index, DataChangedListener.CHANGED);
+    }
+
+    /**
+     * Returns the number of rows following the given row that are its descendants
+     *
+     * @param index the row
+     * @return the number of visible descendants
+     */
+    int getDescendantCount(int index) {
+        int depth = depths[index];
+        int iter = index + 1;
+        while(iter < size && depths[iter] > depth) {
+            iter++;
+        }
+        return iter - index - 1;
+    }
+
+    /**
+     * Finds the row of the given item searching outwards from the given row
+     *
+     * @param item the item to look for, compared by identity
+     * @param hint the row in which the item is expected
+     * @return the row of the item or -1
+     */
+    int indexOf(Object item, int hint) {
+        hint = Math.max(0, Math.min(hint, size - 1));
+        for(int offset = 0 ; hint - offset >= 0 || hint + offset < size ; offset++) {
+            if(hint - offset >= 0 && nodes[hint - offset] == item) {
+                return hint - offset;
+            }
+            if(hint + offset < size && nodes[hint + offset] == item) {
+                return hint + offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces a range of rows with the given items, the items are collapsed
+     *
+     * @param index the first row to replace
+     * @param count the number of rows to remove
+     * @param items the items to insert in place of the removed rows
+     * @param depth the depth of the inserted items
+     */
+    void replace(int index, int count, Vector items, int depth) {
+        int added = 0;
+        if(items != null) {
+            added = items.size();
+        }
+        int delta = added - count;
+
+        // keep the selection on the same node when rows are added or removed above
+        // it, the selection is moved once all the events were fired since listeners
+        // such as the list clamp a selection beyond the size they see
+        int selection = selectedIndex;
+        if(selection >= index + count) {
+            selection += delta;
+        } else if(selection >= index + added) {
+            selection = Math.max(0, index - 1);
+        }
+        replaceRows(index, count, items, depth, added);
+        selectedIndex = selection;
+    }
+
+    private void replaceRows(int index, int count, Vector items, int depth, int added) {
+        int delta = added - count;
+
+        // rows replaced in place are reported as changed
+        int changed = Math.min(count, added);
+        for(int iter = 0 ; iter < changed ; iter++) {
+            nodes[index + iter] = items.elementAt(iter);
+            depths[index + iter] = depth;
+            expanded[index + iter] = false;
+            dataListener.fireDataChangeEvent(index + iter, DataChangedListener.CHANGED);
+        }
+        if(delta == 0) {
+            return;
+        }
+
+        int start = index + changed;
+        int end = index + Math.max(count, added);
+        if(delta < 0) {
+            // report the removal from the last row so every event index is valid,
+            // the removed rows stay in place until all the events are fired
+            for(int iter = end - 1 ; iter >= start ; iter--) {
+                hiddenIndex = iter;
+                hiddenCount = end - iter;
+                dataListener.fireDataChangeEvent(iter, DataChangedListener.REMOVED);
+            }
+            hiddenIndex = 0;
+            hiddenCount = 0;
+            System.arraycopy(nodes, end, nodes, start, size - end);
+            System.arraycopy(depths, end, depths, start, size - end);
+            System.arraycopy(expanded, end, expanded, start, size - end);
+            int oldSize = size;
+            size += delta;
+            for(int iter = size ; iter < oldSize ; iter++) {
+                nodes[iter] = null;
+            }
+            return;
+        }
+
+        ensureCapacity(size + delta);
+        System.arraycopy(nodes, start, nodes, end, size - start);
+        System.arraycopy(depths, start, depths, end, size - start);
+        System.arraycopy(expanded, start, expanded, end, size - start);
+        for(int iter = start ; iter < end ; iter++) {
+            nodes[iter] = items.elementAt(iter - index);
+            depths[iter] = depth;
+            expanded[iter] = false;
+        }
+        size += delta;
+        for(int iter = start ; iter < end ; iter++) {
+            hiddenIndex = iter + 1;
+            hiddenCount = end - 1 - iter;
+            dataListener.fireDataChangeEvent(iter, DataChangedListener.ADDED);
+        }
+        hiddenIndex = 0;
+        hiddenCount = 0;
+    }
+
+    /**
+     * Inserts a single row
+     *
+     * @param index the position of the row
+     * @param item the item to insert
+     * @param depth the depth of the item
+     */
+    void insert(int index, Object item, int depth) {
+        Vector v = new Vector(1);
+        v.addElement(item);
+        replace(index, 0, v, depth);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > nodes.length) {
+            int newSize = Math.max(capacity, nodes.length * 2);
+            Object[] n = new Object[newSize];
+            int[] d = new int[newSize];
+            boolean[] e = new boolean[newSize];
+            System.arraycopy(nodes, 0, n, 0, size);
+            System.arraycopy(depths, 0, d, 0, size);
+            System.arraycopy(expanded, 0, e, 0, size);
+            nodes = n;
+            depths = d;
+            expanded = e;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setSelectedIndex(int index) {
+        int oldIndex = selectedIndex;
+        this.selectedIndex = index;
+        selectionListener.fireSelectionEvent(oldIndex, selectedIndex);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void addDataChangedListener(DataChangedListener l) {
+        dataListener.addListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void removeDataChangedListener(DataChangedListener l) {
+        dataListener.removeListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void addSelectionListener(SelectionListener l) {
+        selectionListener.addListener(l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void removeSelectionListener(SelectionListener l) {
+        selectionListener.removeListener(l);
+    }
+
+    /**
+     * Adds a root node at the end of the tree
+     *
+     * @param item the new root
+     */
+    public void addItem(Object item) {
+        insert(size, item, 0);
+    }
+
+    /**
+     * Removes the node at the given row along with its visible descendants
+     *
+     * @param index the row to remove
+     */
+    public void removeItem(int index) {
+        if(index >= 0 && index < size) {
+            replace(index, getDescendantCount(index) + 1, null, 0);
+        }
+    }
+}
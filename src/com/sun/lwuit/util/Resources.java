@@ -44,6 +44,11 @@ import java.util.Vector;
  * A resource is loaded entirely into memory since random file access is not supported
  * in Java ME, any other approach would be inefficient. This means that memory must
  * be made available to accommodate the resource file. 
+ * <p>Alternatively a resource file can be opened lazily using {@link #openLazy(java.lang.String)}
+ * or {@link #openLazy(byte[])}, in which case only an index of the file is built when
+ * it is opened and every resource is decoded on first access. Decoded resources
+ * are kept in a bounded cache from which they are evicted when the cache is full
+ * or memory runs low, an evicted resource is decoded again when it is next requested.
  * 
  * @author Shai Almog
  */
@@ -105,6 +110,29 @@ public class Resources {
     private Hashtable resources = new Hashtable();
     
     private DataInputStream input; 
+
+    /**
+     * Maps the id of a lazily loaded resource to an int array containing the magic
+     * number, the offset and the length of the resource within the file
+     */
+    private Hashtable lazyIndex;
+
+    /**
+     * The ids of the decoded lazy resources from least to most recently used
+     */
+    private Vector lazyOrder;
+
+    /**
+     * The maximum number of decoded lazy resources kept in the cache
+     */
+    private int lazyCacheSize = 16;
+
+    /**
+     * The source of the lazy resources, either a byte array or a path
+     * within the jar that can be reopened
+     */
+    private byte[] lazyData;
+    private String lazyPath;
     
     // for internal use by the resource editor, creates an empty resource
     Resources() {
@@ -120,6 +148,8 @@ public class Resources {
         resourceTypes.clear();
         resources.clear();
         input = null;
+        lazyIndex = null;
+        lazyOrder = null;
     }
     
     /**
@@ -139,50 +169,338 @@ public class Resources {
             byte magic = this.input.readByte();
             String id = this.input.readUTF();
             startingEntry(id, magic);
+            readEntry(id, magic);
+        }
+    }
+
+    /**
+     * Decodes a single entry from the input and places it in the resources
+     */
+    private void readEntry(String id, byte magic) throws IOException {
+        switch(magic) {
+            case MAGIC_HEADER:
+                readHeader();
+                return;
+            case MAGIC_THEME:
+                setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
+                return;
+            case MAGIC_IMAGE:
+                setResource(id, magic, createImage());
+                return;
+            case MAGIC_FONT:
+                setResource(id, magic, loadFont(this.input, id, false));
+                return;
+            case MAGIC_DATA:
+                setResource(id, magic, createData());
+                return;
+            case MAGIC_L10N:
+                setResource(id, magic, loadL10N());
+                return;
+
+            // legacy file support to be removed
+            case MAGIC_IMAGE_LEGACY:
+                setResource(id, MAGIC_IMAGE, createImage());
+                return;
+            case MAGIC_INDEXED_IMAGE_LEGACY:
+                setResource(id, MAGIC_IMAGE, createPackedImage8());
+                return;
+            case MAGIC_THEME_LEGACY:
+                setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
+                return;
+            case MAGIC_FONT_LEGACY:
+                setResource(id, MAGIC_FONT, loadFont(this.input, id, false));
+                return;
+            case MAGIC_INDEXED_FONT_LEGACY:
+                setResource(id, MAGIC_FONT, loadFont(this.input, id, true));
+                return;
+            case MAGIC_ANIMATION_LEGACY:
+                setResource(id, MAGIC_IMAGE, loadAnimation(this.input));
+                return;
+            default:
+                throw new IOException("Corrupt theme file unrecognized magic number: " + Integer.toHexString(magic & 0xff));
+        }
+    }
+
+    /**
+     * Builds the index of a lazily loaded file, themes are decoded since their
+     * length is only known once they are parsed and so are the entries of legacy
+     * files which are always loaded eagerly.
+     */
+    private void indexFile(InputStream input) throws IOException {
+        clear();
+        CountingInputStream counter = new CountingInputStream(input);
+        this.input = new DataInputStream(counter);
+        lazyIndex = new Hashtable();
+        lazyOrder = new Vector();
+        int resourceCount = this.input.readShort();
+        if(resourceCount < 0) {
+            throw new IOException("Invalid resource file!");
+        }
+        for(int iter = 0 ; iter < resourceCount ; iter++) {
+            byte magic = this.input.readByte();
+            String id = this.input.readUTF();
+            if(magic == MAGIC_HEADER || (majorVersion == 0 && minorVersion == 0)) {
+                readEntry(id, magic);
+                continue;
+            }
+            int offset = counter.getPosition();
             switch(magic) {
-                case MAGIC_HEADER:
-                    readHeader();
-                    continue;
                 case MAGIC_THEME:
-                    setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
-                    continue;
+                    resources.put(id, loadTheme(id, true));
+                    lazyOrder.addElement(id);
+                    break;
                 case MAGIC_IMAGE:
-                    setResource(id, magic, createImage());
-                    continue;
+                    skipImage();
+                    break;
                 case MAGIC_FONT:
-                    setResource(id, magic, loadFont(this.input, id, false));
-                    continue;
+                    skipFont();
+                    break;
                 case MAGIC_DATA:
-                    setResource(id, magic, createData());
-                    continue;
+                    skipFully(this.input.readInt());
+                    break;
                 case MAGIC_L10N:
-                    setResource(id, magic, loadL10N());
+                    skipL10N();
+                    break;
+                default:
+                    // legacy entries are only expected in legacy files
+                    readEntry(id, magic);
                     continue;
+            }
+            resourceTypes.put(id, new Byte(magic));
+            lazyIndex.put(id, new int[] {magic, offset, counter.getPosition() - offset});
+        }
+        this.input = null;
+    }
 
-                // legacy file support to be removed
-                case MAGIC_IMAGE_LEGACY:
-                    setResource(id, MAGIC_IMAGE, createImage());
-                    continue;
-                case MAGIC_INDEXED_IMAGE_LEGACY:
-                    setResource(id, MAGIC_IMAGE, createPackedImage8());
-                    continue;
-                case MAGIC_THEME_LEGACY:
-                    setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
-                    continue;
-                case MAGIC_FONT_LEGACY:
-                    setResource(id, MAGIC_FONT, loadFont(this.input, id, false));
-                    continue;
-                case MAGIC_INDEXED_FONT_LEGACY:
-                    setResource(id, MAGIC_FONT, loadFont(this.input, id, true));
-                    continue;
-                case MAGIC_ANIMATION_LEGACY:
-                    setResource(id, MAGIC_IMAGE, loadAnimation(this.input));
-                    continue;
-                default:
-                    throw new IOException("Corrupt theme file unrecognized magic number: " + Integer.toHexString(magic & 0xff));
+    private void skipFully(long length) throws IOException {
+        while(length > 0) {
+            long skipped = input.skip(length);
+            if(skipped <= 0) {
+                // some streams don't support skip, read will throw an EOFException
+                // at the end of the stream
+                input.readByte();
+                skipped = 1;
             }
+            length -= skipped;
         }
     }
+
+    private void skipUTF() throws IOException {
+        skipFully(input.readUnsignedShort());
+    }
+
+    private void skipImage() throws IOException {
+        int type = input.readByte() & 0xff;
+        switch(type) {
+            // PNG file
+            case 0xf1:
+
+            // JPEG File
+            case 0xf2:
+                skipFully(input.readInt());
+                return;
+
+            // Indexed image
+            case 0xf3:
+                int size = input.readByte() & 0xff;
+                if(size == 0) {
+                    size = 256;
+                }
+                skipFully(size * 4);
+                int width = input.readShort();
+                int height = input.readShort();
+                skipFully(width * height);
+                return;
+
+            // animation
+            case 0xf4:
+                skipAnimation();
+                return;
+
+            // SVG
+            case 0xf5:
+                skipFully(input.readInt());
+                input.readUTF();
+                input.readBoolean();
+                loadSVGRatios(input);
+                skipFully(input.readInt());
+                return;
+
+            default:
+                throw new IOException("Illegal type while creating image: " + Integer.toHexString(type));
+        }
+    }
+
+    private void skipAnimation() throws IOException {
+        skipFully((input.readByte() & 0xff) * 4);
+        int width = input.readShort();
+        int height = input.readShort();
+        int numberOfFrames = input.readByte() & 0xff;
+        input.readInt();
+        input.readBoolean();
+        skipFully(width * height);
+        for(int iter = 1 ; iter < numberOfFrames ; iter++) {
+            input.readInt();
+            if(input.readBoolean()) {
+                skipFully(width * height);
+            } else {
+                input.readBoolean();
+                int nextRow = input.readShort();
+                while(nextRow != -1) {
+                    skipFully(width);
+                    nextRow = input.readShort();
+                }
+            }
+        }
+    }
+
+    private void skipFont() throws IOException {
+        input.readByte();
+        if(input.readBoolean()) {
+            skipFully(input.readInt());
+        }
+        if(input.readBoolean()) {
+            skipUTF();
+        }
+        if(input.readBoolean()) {
+            skipImage();
+            int charCount = input.readShort();
+            skipFully(charCount * 3);
+            skipUTF();
+            readRenderingHint(input);
+        }
+    }
+
+    private void skipL10N() throws IOException {
+        int keys = input.readShort();
+        int languages = input.readShort();
+        for(int iter = 0 ; iter < keys ; iter++) {
+            skipUTF();
+        }
+        for(int iter = 0 ; iter < languages ; iter++) {
+            skipUTF();
+            for(int valueIter = 0 ; valueIter < keys ; valueIter++) {
+                skipUTF();
+            }
+        }
+    }
+
+    /**
+     * Decodes a lazily loaded resource and places it in the cache
+     */
+    private synchronized Object loadLazy(String id) {
+        Object o = resources.get(id);
+        if(o != null) {
+            return o;
+        }
+        int[] entry = (int[])lazyIndex.get(id);
+        if(entry == null) {
+            return null;
+        }
+        InputStream is = null;
+        try {
+            if(lazyData != null) {
+                is = new ByteArrayInputStream(lazyData, entry[1], entry[2]);
+                input = new DataInputStream(is);
+            } else {
+                is = Display.getInstance().getResourceAsStream(classLoader, lazyPath);
+                input = new DataInputStream(is);
+                skipFully(entry[1]);
+            }
+            switch((byte)entry[0]) {
+                case MAGIC_THEME:
+                    o = loadTheme(id, true);
+                    break;
+                case MAGIC_IMAGE:
+                    o = createImage();
+                    break;
+                case MAGIC_FONT:
+                    o = loadFont(input, id, false);
+                    break;
+                case MAGIC_DATA:
+                    o = createData();
+                    break;
+                case MAGIC_L10N:
+                    o = loadL10N();
+                    break;
+            }
+        } catch(IOException err) {
+            err.printStackTrace();
+            return null;
+        } finally {
+            input = null;
+            if(is != null) {
+                try {
+                    is.close();
+                } catch(IOException ignor) {}
+            }
+        }
+        if(o != null) {
+            resources.put(id, o);
+            lazyOrder.addElement(id);
+            evictLazy(lazyCacheSize);
+        }
+        return o;
+    }
+
+    /**
+     * Evicts least recently used lazy resources until at most the given number of
+     * resources is cached, when memory runs low everything but the most recently
+     * used resource is evicted.
+     */
+    private void evictLazy(int size) {
+        Runtime r = Runtime.getRuntime();
+        if(r.freeMemory() < r.totalMemory() / 10) {
+            size = Math.min(size, 1);
+        }
+        while(lazyOrder.size() > size) {
+            resources.remove(lazyOrder.elementAt(0));
+            lazyOrder.removeElementAt(0);
+        }
+    }
+
+    /**
+     * Sets the maximum number of decoded resources kept in memory for a lazily
+     * opened resource file, this has no effect on resource files opened eagerly
+     *
+     * @param lazyCacheSize the number of resources to cache
+     */
+    public synchronized void setLazyCacheSize(int lazyCacheSize) {
+        this.lazyCacheSize = lazyCacheSize;
+        if(lazyOrder != null) {
+            evictLazy(lazyCacheSize);
+        }
+    }
+
+    /**
+     * Returns the maximum number of decoded resources kept in memory for a lazily
+     * opened resource file
+     *
+     * @return the number of resources to cache
+     */
+    public int getLazyCacheSize() {
+        return lazyCacheSize;
+    }
+
+    /**
+     * Discards all the decoded resources of a lazily opened resource file, they
+     * will be decoded again when requested. This has no effect on resource files
+     * opened eagerly.
+     */
+    public synchronized void clearLazyCache() {
+        if(lazyOrder != null) {
+            evictLazy(0);
+        }
+    }
+
+    /**
+     * Returns true if this resource file was opened lazily
+     *
+     * @return true if resources are decoded on first access
+     */
+    public boolean isLazy() {
+        return lazyIndex != null;
+    }
     
     /**
      * Reads the header of the resource file
@@ -456,6 +774,46 @@ public class Resources {
         }
     }
 
+    /**
+     * Opens a resource file lazily from the local JAR resource identifier, only an index
+     * of the file is built and resources are decoded when they are first requested. The
+     * resource is reopened to decode entries that aren't cached.
+     * 
+     * @param resource a local reference to a resource using the syntax of Class.getResourceAsStream(String)
+     * @return a resource object
+     * @throws java.io.IOException if opening/reading the resource fails
+     */
+    public static Resources openLazy(String resource) throws IOException {
+        try {
+            InputStream is = Display.getInstance().getResourceAsStream(classLoader, resource);
+            Resources r = new Resources();
+            r.indexFile(is);
+            r.lazyPath = resource;
+            is.close();
+            return r;
+        } catch(RuntimeException err) {
+            // intercept exceptions since user code might not deal well with runtime exceptions 
+            err.printStackTrace();
+            throw new IOException(err.getMessage());
+        }
+    }
+
+    /**
+     * Opens a resource file lazily from the given byte array, only an index
+     * of the file is built and resources are decoded when they are first requested.
+     * The array is referenced by the resource object and must not be modified.
+     * 
+     * @param resource the content of the resource file
+     * @return a resource object
+     * @throws java.io.IOException if reading the resource fails
+     */
+    public static Resources openLazy(byte[] resource) throws IOException {
+        Resources r = new Resources();
+        r.indexFile(new ByteArrayInputStream(resource));
+        r.lazyData = resource;
+        return r;
+    }
+
     StaticAnimation loadAnimation(DataInputStream input) throws IOException {
         return StaticAnimation.createAnimation(input);
     }
@@ -478,7 +836,7 @@ public class Resources {
      * @return cached image instance
      */
     public Image getImage(String id) {
-        return (Image)resources.get(id);
+        return (Image)getResourceObject(id);
     }
 
     /**
@@ -489,7 +847,7 @@ public class Resources {
      * @deprecated use getImage(String) instead
      */
     public StaticAnimation getAnimation(String id) {
-        return (StaticAnimation)resources.get(id);
+        return (StaticAnimation)getResourceObject(id);
     }
     
     /**
@@ -499,7 +857,7 @@ public class Resources {
      * @return newly created input stream that allows reading the data of the resource
      */
     public InputStream getData(String id) {
-        return new ByteArrayInputStream((byte[])resources.get(id));
+        return new ByteArrayInputStream((byte[])getResourceObject(id));
     }
     
     /**
@@ -510,7 +868,7 @@ public class Resources {
      * @return Hashtable containing key value pairs for localized data
      */
     public Hashtable getL10N(String id, String locale) {
-        return (Hashtable)((Hashtable)resources.get(id)).get(locale);
+        return (Hashtable)((Hashtable)getResourceObject(id)).get(locale);
     }
 
     /**
@@ -520,7 +878,7 @@ public class Resources {
      * @return enumeration of strings containing bundle names
      */
     public Enumeration listL10NLocales(String id) {
-        return ((Hashtable)resources.get(id)).keys();
+        return ((Hashtable)getResourceObject(id)).keys();
     }
 
     /**
@@ -530,7 +888,7 @@ public class Resources {
      * @return cached font instance
      */
     public Font getFont(String id) {
-        return (Font)resources.get(id);
+        return (Font)getResourceObject(id);
     }
     
     /**
@@ -540,7 +898,7 @@ public class Resources {
      * @return cached theme instance
      */
     public Hashtable getTheme(String id) {
-        Hashtable h = (Hashtable)resources.get(id);
+        Hashtable h = (Hashtable)getResourceObject(id);
         
         // theme can be null in valid use cases such as the resource editor
         if(h != null && h.containsKey("uninitialized")) {
@@ -556,7 +914,7 @@ public class Resources {
                     // the resource was not already loaded when we loaded the theme
                     // it must be loaded now so we can resolve the temporary name
                     if(value instanceof String) {
-                        Object o = resources.get(value);
+                        Object o = getResourceObject((String)value);
                         if(o == null) {
                             throw new IllegalArgumentException("Theme entry for " + key + " could not be found: " + value);
                         }
@@ -604,7 +962,7 @@ public class Resources {
     private Border createImageBorder(String[] value) {
         Image[] images = new Image[value.length];
         for(int iter = 0 ; iter < value.length ; iter++) {
-            images[iter] = (Image)resources.get(value[iter]);
+            images[iter] = (Image)getResourceObject(value[iter]);
         }
         switch(images.length) {
             case 2:
@@ -621,6 +979,19 @@ public class Resources {
     }
     
     Object getResourceObject(String res) {
+        if(lazyIndex != null) {
+            synchronized(this) {
+                Object o = resources.get(res);
+                if(o == null) {
+                    return loadLazy(res);
+                }
+                // move to the end of the list as the most recently used
+                if(lazyOrder.removeElement(res)) {
+                    lazyOrder.addElement(res);
+                }
+                return o;
+            }
+        }
         return resources.get(res);
     }
     
@@ -1157,4 +1528,52 @@ public class Resources {
         input.readFully(data, 0, data.length);
         return Image.createIndexed(width, height, palette, data);
     }
+
+    /**
+     * Tracks the position within the stream to build the index of a lazy resource file
+     */
+    private static class CountingInputStream extends InputStream {
+        private InputStream internal;
+        private int position;
+
+        public CountingInputStream(InputStream internal) {
+            this.internal = internal;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int read() throws IOException {
+            int r = internal.read();
+            if(r > -1) {
+                position++;
+            }
+            return r;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int r = internal.read(b, off, len);
+            if(r > 0) {
+                position += r;
+            }
+            return r;
+        }
+
+        public long skip(long n) throws IOException {
+            long r = internal.skip(n);
+            if(r > 0) {
+                position += r;
+            }
+            return r;
+        }
+
+        public int available() throws IOException {
+            return internal.available();
+        }
+
+        public void close() throws IOException {
+            internal.close();
+        }
+    }
 }